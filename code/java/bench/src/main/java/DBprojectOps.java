@@ -0,0 +1,205 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * This class exposes the DBproject operations to the benchmarks.  JMH
+ * benchmarks cannot live in the default package and a named package
+ * cannot see DBproject, so the operations are handed out as JDK
+ * functional interfaces: each one takes a unique id and returns the
+ * number of rows it touched.
+ *
+ * Rows written by the benchmarks use ids from ID_BASE upwards and are
+ * removed again by close(); bookings are made for BENCH_PATIENTS patients
+ * of their own, so no real patient's row is touched.
+ *
+ * The listings take the path of the menu: a first page of
+ * DBproject.PAGE_SIZE rows through the keyset pagers when paging is on,
+ * the counts of doctor_status_summary when it is installed, and option 6
+ * from the availability index, which is built before the first call
+ * unless -Ddbproject.availability=false.
+ *
+ */
+
+public class DBprojectOps implements Function<String, LongUnaryOperator>, AutoCloseable{
+	//first id used for rows written by the benchmarks
+	public static final int ID_BASE = 1500000000;
+	//patients the bookings are made for, far above the ids handed out by the benchmarks
+	static final int PATIENT_BASE = ID_BASE + 600000000;
+	static final int BENCH_PATIENTS = 1000;
+	//longest wait for the availability index before option 6 is measured
+	static final long INDEX_WAIT_MS = 120000L;
+
+	private final DBproject _esql;
+	private final int _doctors;
+	private final java.sql.Date _from = java.sql.Date.valueOf("2020-01-01");
+	private final java.sql.Date _to = java.sql.Date.valueOf("2021-12-31");
+
+	public DBprojectOps(String dbname, String dbport, String user, String dataDir) throws SQLException {
+		this._esql = new DBproject(dbname, dbport, user, "");
+		if (this._esql.count("SELECT 1 FROM Hospital") == 0){
+			String scale = System.getProperty("db.scale");
+			if (scale != null){
+				// synthetic data of the given scale, see SyntheticDataGenerator
+				new BulkLoader(this._esql.getPool()).load(new SyntheticDataGenerator(166L, Double.parseDouble(scale)).asSources());
+			}else if (dataDir != null){
+				new BulkLoader(this._esql.getPool()).loadDirectory(new File(dataDir));
+			}//end if
+		}//end if
+		removeBenchmarkRows();
+		this._doctors = (int) this._esql.scalarLong("SELECT MAX(doctor_ID) + 1 FROM Doctor", 1);
+		this._esql.executeUpdate("INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) SELECT g, 'Bench Patient', 'M', 40, '1 Bench Street', 0 FROM generate_series(?, ?) g",
+			PATIENT_BASE, PATIENT_BASE + BENCH_PATIENTS - 1);
+		this._esql.startAvailabilityIndex();
+		AvailabilityIndex index = this._esql.getAvailabilityIndex();
+		long deadline = System.currentTimeMillis() + INDEX_WAIT_MS;
+		while (index != null && !index.isReady() && System.currentTimeMillis() < deadline){
+			try{
+				Thread.sleep(50);
+			}catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				break;
+			}//end try
+		}//end while
+	}
+
+	/**
+	 * Method to look up an operation by the name of its menu entry.
+	 *
+	 * @param name one of addDoctor, addPatient, addAppointment,
+	 *        makeAppointment, listAppointmentsOfDoctor,
+	 *        listAvailableAppointmentsOfDepartment, listStatusPerDoctor,
+	 *        findPatientsCountWithStatus
+	 * @return the operation
+	 */
+	public LongUnaryOperator apply(String name) {
+		switch (name){
+			case "addDoctor":
+				return wrap(id -> {
+					this._esql.executeUpdate(MenuQueries.ADD_DOCTOR, (int) id, "Bench Doctor", "Allergist", 0);
+					return 1;
+				});
+			case "addPatient":
+				return wrap(id -> {
+					this._esql.executeUpdate(MenuQueries.ADD_PATIENT, (int) id, "Bench Patient", "F", 40, "1 Bench Street", 0);
+					return 1;
+				});
+			case "addAppointment":
+				return wrap(id -> {
+					this._esql.executeUpdate(MenuQueries.ADD_APPOINTMENT, (int) id, this._from, "8:00-10:00", "AV");
+					return 1;
+				});
+			case "makeAppointment":
+				return wrap(id -> {
+					BookingEngine.Request r = new BookingEngine.Request();
+					r.patientId = PATIENT_BASE + random(BENCH_PATIENTS);
+					r.patientName = "Bench Patient";
+					r.gender = "M";
+					r.age = 40;
+					r.address = "1 Bench Street";
+					r.prevAppointments = 0;
+					r.doctorId = random(this._doctors);
+					r.doctorName = "Bench Doctor";
+					r.specialty = "Allergist";
+					r.deptId = 0;
+					r.appointmentId = (int) id;
+					r.date = this._from;
+					r.timeSlot = "8:00-10:00";
+					r.status = "AV";
+					this._esql.getBookingEngine().book(r);
+					return 1;
+				});
+			case "listAppointmentsOfDoctor":
+				return wrap(id -> {
+					int doctor = random(this._doctors);
+					if (DBproject.PAGE_SIZE > 0) return firstPage(this._esql.pageAppointmentsOfDoctor(doctor, this._from, this._to, DBproject.PAGE_SIZE));
+					return this._esql.executeQueryAndStream(MenuQueries.APPOINTMENTS_OF_DOCTOR, row -> row.getInt(1), doctor, this._from, this._to);
+				});
+			case "listAvailableAppointmentsOfDepartment":
+				return wrap(id -> {
+					if (DBproject.PAGE_SIZE > 0) return firstPage(this._esql.pageAvailable("Cardiology", this._from, DBproject.PAGE_SIZE));
+					return this._esql.listAvailable("Cardiology", this._from).size();
+				});
+			case "listStatusPerDoctor":
+				return wrap(id -> {
+					final StatusCounts counts = new StatusCounts();
+					return this._esql.executeQueryAndStream(this._esql.usesStatusSummary() ? MenuQueries.STATUS_PER_DOCTOR_SUMMARY : MenuQueries.STATUS_PER_DOCTOR, row -> {
+						int doctor = row.getInt(1);
+						if (counts.isEmpty() || counts.getDoctorId() != doctor){
+							if (!counts.isEmpty()) counts.format();
+							counts.reset(doctor);
+						}//end if
+						counts.add(row.getString(2), row.getInt(3));
+					});
+				});
+			case "findPatientsCountWithStatus":
+				return wrap(id -> {
+					String status = StatusCounts.STATUSES[random(StatusCounts.STATUSES.length)];
+					if (DBproject.PAGE_SIZE > 0) return firstPage(this._esql.pagePatientCounts(status, DBproject.PAGE_SIZE));
+					return this._esql.executeQueryAndStream(this._esql.usesStatusSummary() ? MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY : MenuQueries.PATIENTS_PER_DOCTOR, row -> row.getInt(3), status);
+				});
+			default:
+				throw new IllegalArgumentException("Unknown operation " + name);
+		}//end switch
+	}
+
+	/**
+	 * Method to delete the rows written by the benchmarks and close the
+	 * connections.
+	 */
+	public void close() throws SQLException {
+		try{
+			removeBenchmarkRows();
+		}finally{
+			this._esql.cleanup();
+		}
+	}
+
+	private void removeBenchmarkRows() throws SQLException {
+		this._esql.executeUpdate("DELETE FROM has_appointment WHERE appt_id >= ? OR doctor_id >= ?", ID_BASE, ID_BASE);
+		if (this._esql.usesWaitlist()) this._esql.executeUpdate("DELETE FROM waitlist WHERE appt_id >= ? OR patient_id >= ?", ID_BASE, ID_BASE);
+		this._esql.executeUpdate("DELETE FROM Appointment WHERE appnt_ID >= ?", ID_BASE);
+		this._esql.executeUpdate("DELETE FROM Doctor WHERE doctor_ID >= ?", ID_BASE);
+		this._esql.executeUpdate("DELETE FROM Patient WHERE patient_ID >= ?", ID_BASE);
+	}
+
+	//an operation that may fail with a database error
+	private interface SqlOperation{
+		long run(long id) throws SQLException;
+	}
+
+	private static LongUnaryOperator wrap(SqlOperation op) {
+		return id -> {
+			try{
+				return op.run(id);
+			}catch (SQLException e){
+				throw new IllegalStateException(e.getMessage(), e);
+			}//end try
+		};
+	}
+
+	//rows of the first page, as the menu shows it
+	private static long firstPage(KeysetPager pager) throws SQLException {
+		pager.first();
+		return pager.getRows().size();
+	}
+
+	private static int random(int bound) {
+		return ThreadLocalRandom.current().nextInt(Math.max(1, bound));
+	}
+}//end DBprojectOps
@@ -0,0 +1,133 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of every DBproject menu operation against a local
+ * Postgres.  Throughput mode reports operations per second and sample
+ * time mode reports the latency percentiles (p50, p90, p99, ...).
+ *
+ * The database is chosen with -Ddb.name, -Ddb.port and -Ddb.user (default
+ * $USER_DB on $PGPORT).  When Hospital is empty the CSV files of
+ * -Ddb.data (default ../../data) are loaded first, or synthetic data of
+ * scale -Ddb.scale when that is set.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DBprojectBenchmark{
+	private AutoCloseable _ops;
+	private final AtomicLong _ids = new AtomicLong();
+
+	private LongUnaryOperator _addDoctor;
+	private LongUnaryOperator _addPatient;
+	private LongUnaryOperator _addAppointment;
+	private LongUnaryOperator _makeAppointment;
+	private LongUnaryOperator _listAppointmentsOfDoctor;
+	private LongUnaryOperator _listAvailableAppointmentsOfDepartment;
+	private LongUnaryOperator _listStatusPerDoctor;
+	private LongUnaryOperator _findPatientsCountWithStatus;
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void connect() throws Exception {
+		String user = System.getProperty("db.user", System.getenv("USER"));
+		String name = System.getProperty("db.name", user + "_DB");
+		String port = System.getProperty("db.port", System.getenv().getOrDefault("PGPORT", "5432"));
+		String data = System.getProperty("db.data", "../../data");
+
+		// DBprojectOps lives in the default package next to DBproject
+		Class<?> type = Class.forName("DBprojectOps");
+		Object ops = type.getConstructor(String.class, String.class, String.class, String.class).newInstance(name, port, user, data);
+		this._ops = (AutoCloseable) ops;
+		this._ids.set(type.getField("ID_BASE").getInt(null));
+
+		Function<String, LongUnaryOperator> lookup = (Function<String, LongUnaryOperator>) ops;
+		this._addDoctor = lookup.apply("addDoctor");
+		this._addPatient = lookup.apply("addPatient");
+		this._addAppointment = lookup.apply("addAppointment");
+		this._makeAppointment = lookup.apply("makeAppointment");
+		this._listAppointmentsOfDoctor = lookup.apply("listAppointmentsOfDoctor");
+		this._listAvailableAppointmentsOfDepartment = lookup.apply("listAvailableAppointmentsOfDepartment");
+		this._listStatusPerDoctor = lookup.apply("listStatusPerDoctor");
+		this._findPatientsCountWithStatus = lookup.apply("findPatientsCountWithStatus");
+	}
+
+	@TearDown(Level.Trial)
+	public void disconnect() throws Exception {
+		this._ops.close();
+	}
+
+	@Benchmark
+	public long addDoctor() {//1
+		return this._addDoctor.applyAsLong(this._ids.getAndIncrement());
+	}
+
+	@Benchmark
+	public long addPatient() {//2
+		return this._addPatient.applyAsLong(this._ids.getAndIncrement());
+	}
+
+	@Benchmark
+	public long addAppointment() {//3
+		return this._addAppointment.applyAsLong(this._ids.getAndIncrement());
+	}
+
+	@Benchmark
+	public long makeAppointment() {//4
+		return this._makeAppointment.applyAsLong(this._ids.getAndIncrement());
+	}
+
+	@Benchmark
+	public long listAppointmentsOfDoctor() {//5
+		return this._listAppointmentsOfDoctor.applyAsLong(0);
+	}
+
+	@Benchmark
+	public long listAvailableAppointmentsOfDepartment() {//6
+		return this._listAvailableAppointmentsOfDepartment.applyAsLong(0);
+	}
+
+	@Benchmark
+	public long listStatusPerDoctor() {//7
+		return this._listStatusPerDoctor.applyAsLong(0);
+	}
+
+	@Benchmark
+	public long findPatientsCountWithStatus() {//8
+		return this._findPatientsCountWithStatus.applyAsLong(0);
+	}
+}//end DBprojectBenchmark
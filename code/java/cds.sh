@@ -0,0 +1,14 @@
+#! /bin/bash
+# Builds a class data sharing archive (JDK 13 or later) that run.sh starts with,
+# so the JVM maps the program's and the driver's classes instead of loading them.
+# The archive holds the classes one run loaded, so train it with the command the
+# cron job runs, e.g. ./cds.sh batch ops.jsonl (default: explain).
+# compile.sh deletes it, rerun this after compiling.
+DBNAME=$USER"_DB"
+PORT=$PGPORT
+USER=$USER
+
+# archived classes must come from jar files, not from bin/
+rm -f lib/dbproject.jar lib/dbproject.jsa
+jar cf lib/dbproject.jar -C bin .
+java -XX:ArchiveClassesAtExit=lib/dbproject.jsa -Ddbproject.fastStart=true -cp lib/postgresql-42.1.4.jar:lib/dbproject.jar DBproject $DBNAME $PORT $USER ${@:-explain}
@@ -1,3 +1,5 @@
 #! /bin/bash
 rm -rf bin/*.class
-javac -cp ".;lib/postgresql-42.1.4.jar;" src/DBproject.java -d bin/
+# the class data sharing archive of cds.sh holds the old classes
+rm -f lib/dbproject.jar lib/dbproject.jsa
+javac -cp "lib/postgresql-42.1.4.jar" src/*.java -d bin/
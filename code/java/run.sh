@@ -4,4 +4,9 @@ PORT=$PGPORT
 USER=$USER
 
 # Example: source ./run.sh
-java -cp lib/*:bin/ DBproject $DBNAME $PORT $USER
+if [ -f lib/dbproject.jsa ]; then
+	# built by cds.sh, which trains it in fast start mode
+	java -XX:SharedArchiveFile=lib/dbproject.jsa -Ddbproject.fastStart=true -cp lib/postgresql-42.1.4.jar:lib/dbproject.jar DBproject $DBNAME $PORT $USER
+else
+	java -cp lib/*:bin/ DBproject $DBNAME $PORT $USER
+fi
@@ -0,0 +1,81 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This class maintains the monthly partitions of Appointment and its links
+ * that sql/partition.sql sets up: maintain() adds the months ahead so new
+ * appointments always have a partition, archive() detaches the past ones.
+ * Without partition.sql both report that there is nothing to do.
+ *
+ */
+
+public final class AppointmentPartitions{
+	static final String IS_INSTALLED_SQL = "SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('appointment')";
+	static final String MAINTAIN_SQL = "SELECT create_appointment_partitions(current_date, (current_date + make_interval(months => ?))::date)";
+	static final String ARCHIVE_SQL = "SELECT month_partition, appointments, outcome FROM archive_appointment_partitions(?, ?)";
+
+	private AppointmentPartitions() {
+	}
+
+	/**
+	 * Method to tell whether Appointment is partitioned.
+	 *
+	 * @param esql the database session
+	 * @return true after sql/partition.sql
+	 * @throws java.sql.SQLException when the catalog could not be read
+	 */
+	public static boolean isInstalled(DBproject esql) throws SQLException {
+		return esql.exists(IS_INSTALLED_SQL);
+	}
+
+	/**
+	 * Method to create the missing partitions from this month through
+	 * monthsAhead months from now.
+	 *
+	 * @param esql the database session
+	 * @param monthsAhead how many months ahead must be ready
+	 * @return the number of months created, -1 when Appointment is not
+	 *         partitioned
+	 * @throws java.sql.SQLException when a partition could not be created
+	 */
+	public static long maintain(DBproject esql, int monthsAhead) throws SQLException {
+		if (!isInstalled(esql)) return -1;
+		return esql.scalarLong(MAINTAIN_SQL, 0, monthsAhead);
+	}
+
+	/**
+	 * Method to detach the months that end on or before a date and hold
+	 * only past appointments, printing what happened to each month.
+	 *
+	 * @param esql the database session
+	 * @param cutoff the last day that may be archived
+	 * @param drop true to drop the months instead of moving them to schema
+	 *        appointment_archive
+	 * @return the number of months archived or dropped
+	 * @throws java.sql.SQLException when Appointment is not partitioned or
+	 *         a month could not be detached
+	 */
+	public static int archive(DBproject esql, java.sql.Date cutoff, boolean drop) throws SQLException {
+		if (!isInstalled(esql)) throw new SQLException("Appointment is not partitioned, run sql/partition.sql first");
+		// autocommit, unlike the cursor of executeQueryAndStream, so the detaches stay
+		int archived = 0;
+		for (List<String> month : esql.executeQueryAndReturnResult(ARCHIVE_SQL, cutoff, drop)){
+			System.out.println(month.get(0) + ": " + month.get(1) + " appointments, " + month.get(2));
+			if (!month.get(2).startsWith("kept")) archived++;
+		}//end for
+		return archived;
+	}
+}//end AppointmentPartitions
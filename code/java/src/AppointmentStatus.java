@@ -0,0 +1,72 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * The statuses of an appointment, in the order of the _STATUS domain and of
+ * the appointment_status enum that sql/compact.sql stores them as.  The
+ * database keeps the two-letter codes, so name() is the stored value.
+ *
+ */
+
+public enum AppointmentStatus{
+	/** Past */
+	PA,
+	/** Active, i.e. booked */
+	AC,
+	/** Available */
+	AV,
+	/** Waitlisted */
+	WL;
+
+	private static final AppointmentStatus[] VALUES = values();
+
+	/**
+	 * Method to look a stored code up without an exception.
+	 *
+	 * @param code the two-letter code, may be null
+	 * @return the status, or null when code is null or unknown
+	 */
+	public static AppointmentStatus of(String code) {
+		if (code == null || code.length() != 2) return null;
+		for (AppointmentStatus s : VALUES){
+			if (s.name().equals(code)) return s;
+		}//end for
+		return null;
+	}
+
+	/**
+	 * Method to read a status typed by a clerk or given in a request.
+	 *
+	 * @param text the code in either case, e.g. "ac"
+	 * @return the status
+	 * @throws IllegalArgumentException when text is not one of the codes
+	 */
+	public static AppointmentStatus parse(String text) {
+		AppointmentStatus s = text == null ? null : of(text.trim().toUpperCase());
+		if (s == null) throw new IllegalArgumentException("invalid appointment status: " + text + " (PA, AC, AV or WL)");
+		return s;
+	}
+
+	/**
+	 * @return the status a booking request moves this one to: AV to AC, AC
+	 *         and WL to WL, or null for a past appointment
+	 */
+	public AppointmentStatus afterBooking() {
+		switch (this){
+			case AV: return AC;
+			case AC:
+			case WL: return WL;
+			default: return null;
+		}//end switch
+	}
+}//end AppointmentStatus
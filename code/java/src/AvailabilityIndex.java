@@ -0,0 +1,312 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps the available (AV) appointments of every department and
+ * date in memory, so option 6 is answered without a query.  It is built in
+ * the background at startup and rebuilt every refreshMs to pick up changes
+ * made by other clients.  In between, the booking path reports every status
+ * change of this process: booked appointments leave the index at once and
+ * appointments freed by a cancellation enter it at once.
+ *
+ * Until the first build finishes isReady() is false and callers should
+ * run the query instead.
+ *
+ */
+
+public class AvailabilityIndex implements BookingEngine.Listener, AutoCloseable{
+	static final String BUILD_SQL = "SELECT D.did, A.adate, A.appnt_ID, A.time_slot FROM Appointment A, has_appointment H, Doctor D WHERE H.appt_ID = A.appnt_ID AND D.doctor_ID = H.doctor_ID AND A.status = 'AV'";
+
+	/**
+	 * One available appointment.
+	 */
+	public static final class Slot{
+		public final int appointmentId;
+		public final String timeSlot;
+
+		Slot(int appointmentId, String timeSlot) {
+			this.appointmentId = appointmentId;
+			this.timeSlot = timeSlot;
+		}
+	}//end Slot
+
+	private final DBproject _esql;
+	private final long _refreshMs;
+	private ScheduledExecutorService _refresher = null;
+
+	//guarded by this: (dept_ID, date) -> appnt_ID -> time_slot, and appnt_ID -> its keys
+	private Map<Long, TreeMap<Integer, String>> _slots = new HashMap<Long, TreeMap<Integer, String>>();
+	private Map<Integer, long[]> _keys = new HashMap<Integer, long[]>();
+	//appointments removed or freed while a build was running, null when none runs
+	private Set<Integer> _removedDuringBuild = null;
+	private Map<Integer, Object[]> _freedDuringBuild = null;
+	private boolean _ready = false;
+	private long _builds = 0;
+	private long _lookups = 0;
+
+	public AvailabilityIndex(DBproject esql) {
+		this(esql, Long.getLong("dbproject.availability.refreshMs", 60000L));
+	}
+
+	public AvailabilityIndex(DBproject esql, long refreshMs) {
+		this._esql = esql;
+		this._refreshMs = Math.max(1000L, refreshMs);
+	}
+
+	/**
+	 * Method to build the index in the background now and every refreshMs.
+	 */
+	public synchronized void start() {
+		if (this._refresher != null) return;
+		this._refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "availability-index");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this._refresher.scheduleWithFixedDelay(new Runnable(){
+			public void run() {
+				try{
+					rebuild();
+				}catch (SQLException e){
+					System.err.println("Availability index not rebuilt: " + e.getMessage());
+				}//end try
+			}
+		}, 0, this._refreshMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to read every available appointment and replace the index.
+	 *
+	 * @throws java.sql.SQLException when the appointments could not be read
+	 */
+	public void rebuild() throws SQLException {
+		synchronized (this){
+			this._removedDuringBuild = new HashSet<Integer>();
+			this._freedDuringBuild = new HashMap<Integer, Object[]>();
+		}
+		final Map<Long, TreeMap<Integer, String>> slots = new HashMap<Long, TreeMap<Integer, String>>();
+		final Map<Integer, long[]> keys = new HashMap<Integer, long[]>();
+		try{
+			this._esql.executeQueryAndStream(BUILD_SQL, row -> {
+				long key = key(row.getInt(1), row.getDate(2));
+				int appointment = row.getInt(3);
+				TreeMap<Integer, String> day = slots.get(key);
+				if (day == null){
+					day = new TreeMap<Integer, String>();
+					slots.put(key, day);
+				}//end if
+				day.put(appointment, row.getString(4));
+				keys.put(appointment, append(keys.get(appointment), key));
+			});
+		}catch (SQLException e){
+			synchronized (this){
+				this._removedDuringBuild = null;
+				this._freedDuringBuild = null;
+			}
+			throw e;
+		}//end try
+		synchronized (this){
+			this._slots = slots;
+			this._keys = keys;
+			// bookings and cancellations that committed after the snapshot was taken
+			for (Integer appointment : this._removedDuringBuild) removeLocked(appointment);
+			for (Map.Entry<Integer, Object[]> e : this._freedDuringBuild.entrySet()){
+				Object[] f = e.getValue();
+				addLocked(e.getKey(), (java.sql.Date) f[0], (String) f[1], (Integer[]) f[2]);
+			}//end for
+			this._removedDuringBuild = null;
+			this._freedDuringBuild = null;
+			this._ready = true;
+			this._builds++;
+		}
+	}
+
+	/**
+	 * @return true once the index was built
+	 */
+	public synchronized boolean isReady() {
+		return this._ready;
+	}
+
+	/**
+	 * Method to list the available appointments of some departments on a
+	 * date, e.g. all departments with one name.
+	 *
+	 * @param deptIds the dept_IDs
+	 * @param date the appointment date
+	 * @return the appointments ordered by appnt_ID
+	 */
+	public synchronized List<Slot> available(Integer[] deptIds, java.sql.Date date) {
+		this._lookups++;
+		TreeMap<Integer, String> merged = new TreeMap<Integer, String>();
+		for (Integer dept : deptIds){
+			TreeMap<Integer, String> day = this._slots.get(key(dept, date));
+			if (day != null) merged.putAll(day);
+		}//end for
+		List<Slot> result = new ArrayList<Slot>(merged.size());
+		for (Map.Entry<Integer, String> e : merged.entrySet()) result.add(new Slot(e.getKey(), e.getValue()));
+		return result;
+	}
+
+	/**
+	 * Method to list one page of available appointments, seeking from an
+	 * appnt_ID in either direction.  Each department contributes at most
+	 * limit entries, so a page costs the same wherever it starts.
+	 *
+	 * @param deptIds the dept_IDs
+	 * @param date the appointment date
+	 * @param forward true for the appointments after key in ascending
+	 *        order, false for those before key in descending order
+	 * @param key the appnt_ID to seek from, exclusive
+	 * @param limit the most appointments to return
+	 * @return the appointments in the order of the direction
+	 */
+	public synchronized List<Slot> page(Integer[] deptIds, java.sql.Date date, boolean forward, int key, int limit) {
+		this._lookups++;
+		TreeMap<Integer, String> merged = new TreeMap<Integer, String>();
+		for (Integer dept : deptIds){
+			TreeMap<Integer, String> day = this._slots.get(key(dept, date));
+			if (day == null) continue;
+			Map<Integer, String> side = forward ? day.tailMap(key, false) : day.headMap(key, false).descendingMap();
+			int n = 0;
+			for (Map.Entry<Integer, String> e : side.entrySet()){
+				if (n++ == limit) break;
+				merged.put(e.getKey(), e.getValue());
+			}//end for
+		}//end for
+		List<Slot> result = new ArrayList<Slot>(Math.min(limit, merged.size()));
+		for (Map.Entry<Integer, String> e : (forward ? merged : merged.descendingMap()).entrySet()){
+			if (result.size() == limit) break;
+			result.add(new Slot(e.getKey(), e.getValue()));
+		}//end for
+		return result;
+	}
+
+	/**
+	 * Method to drop an appointment that is no longer available.
+	 *
+	 * @param appointmentId the appnt_ID
+	 */
+	public synchronized void remove(int appointmentId) {
+		if (this._removedDuringBuild != null){
+			this._removedDuringBuild.add(appointmentId);
+			this._freedDuringBuild.remove(appointmentId);
+		}//end if
+		removeLocked(appointmentId);
+	}
+
+	/**
+	 * Method to list an appointment that became available.
+	 *
+	 * @param appointmentId the appnt_ID
+	 * @param date the appointment date
+	 * @param timeSlot the time slot
+	 * @param deptIds the departments of the doctors linked to it
+	 */
+	public synchronized void add(int appointmentId, java.sql.Date date, String timeSlot, Integer[] deptIds) {
+		if (date == null || deptIds.length == 0) return;
+		if (this._removedDuringBuild != null){
+			this._removedDuringBuild.remove(appointmentId);
+			this._freedDuringBuild.put(appointmentId, new Object[] { date, timeSlot, deptIds });
+		}//end if
+		addLocked(appointmentId, date, timeSlot, deptIds);
+	}
+
+	/**
+	 * Called by the booking engine after a status change committed.  Only
+	 * changes away from AV (AV to AC) matter here; AC to WL and WL to WL
+	 * concern appointments that are not in the index, and changes to AV
+	 * come with their slot through slotFreed().
+	 */
+	public void statusChanged(int appointmentId, int doctorId, String from, String to) {
+		if (AppointmentStatus.of(from) == AppointmentStatus.AV && AppointmentStatus.of(to) != AppointmentStatus.AV) remove(appointmentId);
+	}
+
+	/**
+	 * Called by the waitlist engine after a cancellation freed an
+	 * appointment nobody waited for.
+	 */
+	public void slotFreed(int appointmentId, java.sql.Date date, String timeSlot, Integer[] deptIds) {
+		add(appointmentId, date, timeSlot, deptIds);
+	}
+
+	/**
+	 * Method to stop the periodic rebuild.
+	 */
+	public synchronized void close() {
+		if (this._refresher != null){
+			this._refresher.shutdownNow();
+			this._refresher = null;
+		}//end if
+	}
+
+	public synchronized String toString() {
+		return "ready=" + this._ready + " builds=" + this._builds + " lookups=" + this._lookups
+			+ " days=" + this._slots.size() + " appointments=" + this._keys.size();
+	}
+
+	private void addLocked(int appointmentId, java.sql.Date date, String timeSlot, Integer[] deptIds) {
+		for (Integer dept : deptIds){
+			long key = key(dept, date);
+			TreeMap<Integer, String> day = this._slots.get(key);
+			if (day == null){
+				day = new TreeMap<Integer, String>();
+				this._slots.put(key, day);
+			}//end if
+			day.put(appointmentId, timeSlot);
+			this._keys.put(appointmentId, append(this._keys.get(appointmentId), key));
+		}//end for
+	}
+
+	private void removeLocked(int appointmentId) {
+		long[] keys = this._keys.remove(appointmentId);
+		if (keys == null) return;
+		for (long key : keys){
+			TreeMap<Integer, String> day = this._slots.get(key);
+			if (day == null) continue;
+			day.remove(appointmentId);
+			if (day.isEmpty()) this._slots.remove(key);
+		}//end for
+	}
+
+	//dept_ID in the high half, days since 1970-01-01 in the low half
+	private static long key(int deptId, java.sql.Date date) {
+		return ((long) deptId << 32) | (date.toLocalDate().toEpochDay() & 0xffffffffL);
+	}
+
+	//an appointment linked to doctors of several departments has several keys
+	private static long[] append(long[] keys, long key) {
+		if (keys == null) return new long[] { key };
+		for (long k : keys){
+			if (k == key) return keys;
+		}//end for
+		long[] grown = java.util.Arrays.copyOf(keys, keys.length + 1);
+		grown[keys.length] = key;
+		return grown;
+	}
+}//end AvailabilityIndex
@@ -0,0 +1,211 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class runs menu operations read from a JSON Lines stream without
+ * prompting, one operation per line:
+ *
+ *   {"op":"AddDoctor","doctor_ID":7,"name":"Ann Lee","specialty":"Allergist","did":3}
+ *   {"op":"AddPatient","patient_ID":9,"name":"Bo Park","gtype":"M","age":40,"address":"1 Main St","number_of_appts":0}
+ *   {"op":"AddAppointment","appnt_ID":600,"adate":"2021-06-01","time_slot":"8:00-10:00","status":"AV"}
+ *   {"op":"MakeAppointment","patient_ID":9,"doctor_ID":7,"appnt_ID":600,"adate":"2021-06-01", ...}
+ *
+ * The inserts go through JDBC batches on one connection and are committed
+ * every commitInterval operations.  When a batch fails its operations are
+ * replayed one by one so a bad line only fails itself.  Bookings run
+ * through the BookingEngine in their own transaction on the same
+ * connection, after the pending inserts were committed, so a batch needs
+ * one connection of the pool.
+ *
+ */
+
+public class BatchRunner{
+	//success and failure counts of one operation name
+	private static final class Tally{
+		long ok = 0;
+		long failed = 0;
+	}
+
+	//an insert waiting in the current batch
+	private static final class Pending{
+		final long line;
+		final String op;
+		final String sql;
+		final Object[] params;
+
+		Pending(long line, String op, String sql, Object[] params) {
+			this.line = line;
+			this.op = op;
+			this.sql = sql;
+			this.params = params;
+		}
+	}
+
+	private final DBproject _esql;
+	private final int _commitInterval;
+	private final Map<String, Tally> _tallies = new LinkedHashMap<String, Tally>();
+	private final List<Pending> _pending = new ArrayList<Pending>();
+	private PooledConnection _conn = null;
+
+	public BatchRunner(DBproject esql, int commitInterval) {
+		this._esql = esql;
+		this._commitInterval = Math.max(1, commitInterval);
+	}
+
+	/**
+	 * Method to run every operation of a JSON Lines stream and print the
+	 * per operation counts and the throughput.
+	 *
+	 * @param in the operations, one JSON object per line
+	 * @return the number of failed operations
+	 * @throws java.io.IOException when the stream could not be read
+	 * @throws java.sql.SQLException when the database became unusable
+	 */
+	public long run(BufferedReader in) throws IOException, SQLException {
+		long start = System.nanoTime();
+		long lineNo = 0;
+		this._conn = this._esql.getPool().borrow();
+		try{
+			this._conn.getConnection().setAutoCommit(false);
+			String line;
+			while ((line = in.readLine()) != null){
+				lineNo++;
+				if (line.trim().isEmpty()) continue;
+				String op = "invalid";
+				try{
+					JsonLine j = JsonLine.parse(line);
+					op = j.requireString("op");
+					submit(lineNo, op, j);
+				}catch (RuntimeException e){
+					fail(lineNo, op, e.getMessage());
+				}//end try
+				if (this._pending.size() >= this._commitInterval) flush();
+			}//end while
+			flush();
+		}finally{
+			this._esql.getPool().release(this._conn);
+			this._conn = null;
+		}
+		return report(System.nanoTime() - start);
+	}
+
+	private void submit(long line, String op, JsonLine j) throws SQLException {
+		switch (op){
+			case "AddDoctor":
+				this._pending.add(new Pending(line, op, MenuQueries.ADD_DOCTOR, Records.Doctor.from(j).params()));
+				break;
+			case "AddPatient":
+				this._pending.add(new Pending(line, op, MenuQueries.ADD_PATIENT, Records.Patient.from(j).params()));
+				break;
+			case "AddAppointment":
+				this._pending.add(new Pending(line, op, MenuQueries.ADD_APPOINTMENT, Records.Appointment.from(j).params()));
+				break;
+			case "MakeAppointment": {
+				BookingEngine.Request r = Records.booking(j);
+				// the booking may refer to rows added earlier in the stream
+				flush();
+				try{
+					this._esql.getBookingEngine().book(r, this._conn);
+					tally(op).ok++;
+				}catch (SQLException e){
+					fail(line, op, e.getMessage());
+				}//end try
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("unknown op " + op);
+		}//end switch
+	}
+
+	/**
+	 * Method to send the pending inserts as one batch per template and
+	 * commit them.  On failure the batch is rolled back and replayed one
+	 * operation at a time.
+	 */
+	private void flush() throws SQLException {
+		if (this._pending.isEmpty()) return;
+		try{
+			// consecutive inserts of the same template share one JDBC batch
+			int i = 0;
+			while (i < this._pending.size()){
+				String sql = this._pending.get(i).sql;
+				PreparedStatement stmt = this._conn.prepare(sql);
+				for (; i < this._pending.size() && this._pending.get(i).sql.equals(sql); i++){
+					StatementCache.bind(stmt, this._pending.get(i).params);
+					stmt.addBatch();
+				}//end for
+				stmt.executeBatch();
+			}//end while
+			this._conn.getConnection().commit();
+			for (Pending p : this._pending) tally(p.op).ok++;
+		}catch (SQLException e){
+			this._conn.getConnection().rollback();
+			replay();
+		}finally{
+			this._pending.clear();
+		}
+	}
+
+	private void replay() throws SQLException {
+		for (Pending p : this._pending){
+			try{
+				PreparedStatement stmt = this._conn.prepare(p.sql);
+				stmt.clearBatch();
+				StatementCache.bind(stmt, p.params);
+				stmt.executeUpdate();
+				this._conn.getConnection().commit();
+				tally(p.op).ok++;
+			}catch (SQLException e){
+				this._conn.getConnection().rollback();
+				fail(p.line, p.op, e.getMessage());
+			}//end try
+		}//end for
+	}
+
+	private void fail(long line, String op, String message) {
+		tally(op).failed++;
+		System.err.println("line " + line + " (" + op + "): " + message);
+	}
+
+	private Tally tally(String op) {
+		Tally t = this._tallies.get(op);
+		if (t == null){
+			t = new Tally();
+			this._tallies.put(op, t);
+		}//end if
+		return t;
+	}
+
+	private long report(long nanos) {
+		long total = 0;
+		long failed = 0;
+		for (Map.Entry<String, Tally> e : this._tallies.entrySet()){
+			Tally t = e.getValue();
+			System.out.println(String.format("%-16s %10d ok %10d failed", e.getKey(), t.ok, t.failed));
+			total += t.ok + t.failed;
+			failed += t.failed;
+		}//end for
+		double seconds = Math.max(nanos, 1) / 1e9;
+		System.out.println(String.format("%d operations in %.3f s (%.0f ops/s)", total, seconds, total / seconds));
+		return failed;
+	}
+}//end BatchRunner
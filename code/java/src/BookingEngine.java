@@ -0,0 +1,434 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class books an appointment for a patient and a doctor in one
+ * transaction.  The appointment row is locked with SELECT ... FOR UPDATE
+ * before its status changes, so two clerks booking the same available
+ * slot are serialized: the first one books it, the second one is put on
+ * the waitlist.  Transactions that fail with a serialization failure or
+ * a deadlock are retried.
+ *
+ * A booking takes three round trips: one statement that adds the patient,
+ * doctor and appointment when missing and locks the appointment, one
+ * statement that applies the status transition, and the commit.  A
+ * waitlisted booking also queues the patient in the waitlist table within
+ * the transition; WaitlistEngine promotes the queue.
+ *
+ * With the delta table of create.sql the transition does not update
+ * Patient: the link names the patient, its trigger appends a delta and
+ * PatientCounter folds the deltas into number_of_appts, so bookings for
+ * the same patient do not wait for each other on the Patient row.
+ *
+ */
+
+public class BookingEngine{
+	/**
+	 * What happened to the requested appointment.
+	 */
+	public enum Outcome{
+		BOOKED("Appointment booked. Thank you."),
+		WAITLISTED("Appointment already booked. Added to waitlist."),
+		JOINED_WAITLIST("Appointment currently waitlisted. Added to waitlist."),
+		PAST("Appointment already concluded. Not available."),
+		UNKNOWN_STATUS("Unknown Appointment Status.");
+
+		public final String message;
+
+		Outcome(String message) {
+			this.message = message;
+		}
+	}//end Outcome
+
+	/**
+	 * Receives the status changes of committed bookings, cancellations and
+	 * promotions.
+	 */
+	public interface Listener{
+		void statusChanged(int appointmentId, int doctorId, String from, String to);
+
+		/**
+		 * Called after a cancellation made an appointment available (AV)
+		 * again, with what is needed to list it.
+		 *
+		 * @param deptIds the departments of the doctors linked to it
+		 */
+		void slotFreed(int appointmentId, java.sql.Date date, String timeSlot, Integer[] deptIds);
+	}
+
+	/**
+	 * The values a clerk enters for option 4.  Patient, doctor and
+	 * appointment are added with these values when they do not exist yet.
+	 */
+	public static final class Request{
+		public int patientId;
+		public String patientName;
+		public String gender;
+		public int age;
+		public String address;
+		public int prevAppointments;
+		public int doctorId;
+		public String doctorName;
+		public String specialty;
+		public int deptId;
+		public int appointmentId;
+		public java.sql.Date date;
+		public String timeSlot;
+		public String status;
+	}//end Request
+
+	/**
+	 * Result of one booking.
+	 */
+	public static final class Result{
+		public final Outcome outcome;
+		public final String status;
+		public final boolean patientAdded;
+		public final boolean doctorAdded;
+		public final boolean appointmentAdded;
+		//false when the doctor was already linked to the appointment
+		public final boolean linkAdded;
+		public final int attempts;
+
+		Result(Outcome outcome, String status, boolean patientAdded, boolean doctorAdded, boolean appointmentAdded, boolean linkAdded, int attempts) {
+			this.outcome = outcome;
+			this.status = status;
+			this.patientAdded = patientAdded;
+			this.doctorAdded = doctorAdded;
+			this.appointmentAdded = appointmentAdded;
+			this.linkAdded = linkAdded;
+			this.attempts = attempts;
+		}
+	}//end Result
+
+	// adds whatever is missing and locks the appointment in one round trip.  The
+	// locking subquery cannot see an appointment inserted by the same statement,
+	// in that case the inserted status is used and the insert holds the row lock.
+	// The appointment is looked up by appnt_ID before it is inserted, so a
+	// date that differs from the stored one is ignored.  Once sql/partition.sql
+	// has made the constraint the conflict names (appnt_ID, adate), the conflict
+	// alone would insert a second row in another month.  The status is read as
+	// text, compact.sql makes it an enum that '' is not a value of.
+	static final String PREPARE_SQL =
+		"WITH p AS (INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (patient_ID) DO NOTHING RETURNING 1), " +
+		"d AS (INSERT INTO Doctor (doctor_ID, name, specialty, did) VALUES (?, ?, ?, ?) ON CONFLICT (doctor_ID) DO NOTHING RETURNING 1), " +
+		"a AS (INSERT INTO Appointment (appnt_ID, adate, time_slot, status) SELECT ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM Appointment WHERE appnt_ID = ?) ON CONFLICT ON CONSTRAINT appointment_pkey DO NOTHING RETURNING status) " +
+		"SELECT (SELECT COUNT(*) FROM p), (SELECT COUNT(*) FROM d), (SELECT status FROM a), " +
+		"(SELECT COALESCE(status::text, '') FROM Appointment WHERE appnt_ID = ? FOR UPDATE)";
+
+	// the same for a doctor the reference cache has seen, without the Doctor insert
+	static final String PREPARE_KNOWN_DOCTOR_SQL =
+		"WITH p AS (INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (patient_ID) DO NOTHING RETURNING 1), " +
+		"a AS (INSERT INTO Appointment (appnt_ID, adate, time_slot, status) SELECT ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM Appointment WHERE appnt_ID = ?) ON CONFLICT ON CONSTRAINT appointment_pkey DO NOTHING RETURNING status) " +
+		"SELECT (SELECT COUNT(*) FROM p), 0, (SELECT status FROM a), " +
+		"(SELECT COALESCE(status::text, '') FROM Appointment WHERE appnt_ID = ? FOR UPDATE)";
+
+	// applies the status change, the patient counter and the doctor link in one round trip.
+	// They are separate statements, which the driver sends together, so the summary
+	// triggers see the status change and the new link one after the other.  A doctor
+	// already linked to the appointment keeps the link; the row lock taken by the
+	// prepare statement keeps other bookings of the appointment from adding it meanwhile.
+	static final String TRANSITION_SQL =
+		"UPDATE Appointment SET status = ? WHERE appnt_ID = ? AND status <> ?; " +
+		"UPDATE Patient SET number_of_appts = ? WHERE patient_ID = ?; " +
+		"INSERT INTO has_appointment (appt_id, doctor_id) SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM has_appointment WHERE appt_id = ? AND doctor_id = ?)";
+
+	// the same for a booking that is waitlisted, which also queues the patient
+	static final String TRANSITION_WAITLIST_SQL = TRANSITION_SQL + "; " +
+		"INSERT INTO waitlist (appt_id, patient_id, doctor_id) VALUES (?, ?, ?)";
+
+	// the same two with a counted link instead of the Patient update
+	static final String TRANSITION_COUNTED_SQL =
+		"UPDATE Appointment SET status = ? WHERE appnt_ID = ? AND status <> ?; " +
+		"INSERT INTO has_appointment (appt_id, doctor_id, patient_id) SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM has_appointment WHERE appt_id = ? AND doctor_id = ?)";
+	static final String TRANSITION_COUNTED_WAITLIST_SQL = TRANSITION_COUNTED_SQL + "; " +
+		"INSERT INTO waitlist (appt_id, patient_id, doctor_id) VALUES (?, ?, ?)";
+
+	private final ConnectionPool _pool;
+	private final ReferenceCache _cache;
+	private final int _maxRetries;
+	private volatile Listener _listener = null;
+	private volatile QueryMetrics _metrics = null;
+	private volatile boolean _waitlist = false;
+	private volatile boolean _counted = false;
+	private final AtomicLong _bookings = new AtomicLong();
+	private final AtomicLong _retries = new AtomicLong();
+	private final AtomicLong _conflicts = new AtomicLong();
+
+	public BookingEngine(ConnectionPool pool) {
+		this(pool, null);
+	}
+
+	public BookingEngine(ConnectionPool pool, ReferenceCache cache) {
+		this(pool, cache, Integer.getInteger("dbproject.booking.maxRetries", 5));
+	}
+
+	/**
+	 * @param cache when enabled, bookings for a doctor it knows skip the
+	 *        Doctor insert; may be null
+	 */
+	public BookingEngine(ConnectionPool pool, ReferenceCache cache, int maxRetries) {
+		this._pool = pool;
+		this._cache = cache;
+		this._maxRetries = maxRetries;
+	}
+
+	/**
+	 * Method to book the requested appointment, retrying the transaction
+	 * when it lost a race with another booking.
+	 *
+	 * @param r the booking request
+	 * @return the outcome of the booking
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	public Result book(Request r) throws SQLException {
+		return book(r, null);
+	}
+
+	/**
+	 * Method to book on a connection the caller holds, e.g. the one of a
+	 * batch, so the booking needs no second connection from the pool.
+	 * Every attempt commits or rolls back its own transaction, and the
+	 * connection is left without autocommit.
+	 *
+	 * @param r the booking request
+	 * @param held the connection to use, or null to borrow one per attempt
+	 * @return the outcome of the booking
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	public Result book(Request r, PooledConnection held) throws SQLException {
+		boolean knownDoctor = this._cache != null && this._cache.isEnabled() && this._cache.doctor(r.doctorId) != null;
+		int attempt = 0;
+		while (true){
+			attempt++;
+			PooledConnection conn = held != null ? held : this._pool.borrow();
+			try{
+				Result result = bookOnce(conn, r, knownDoctor, attempt);
+				if (result != null){
+					this._bookings.incrementAndGet();
+					return result;
+				}//end if
+			}catch (SQLException e){
+				// a borrowed connection is rolled back by release
+				if (held != null){
+					try{
+						held.getConnection().rollback();
+					}catch (SQLException undo){
+						e.addSuppressed(undo);
+					}//end try
+				}//end if
+				if (!isRetryable(e) || attempt > this._maxRetries) throw e;
+				this._conflicts.incrementAndGet();
+			}finally{
+				if (held == null) this._pool.release(conn);
+			}
+			if (attempt > this._maxRetries){
+				throw new SQLException("Booking of appointment " + r.appointmentId + " did not settle after " + attempt + " attempts", "40001");
+			}//end if
+			this._retries.incrementAndGet();
+			backoff(attempt);
+		}//end while
+	}
+
+	/**
+	 * Method to run one booking transaction.
+	 *
+	 * @return the result, or null when the transaction has to be retried
+	 */
+	private Result bookOnce(PooledConnection conn, Request r, boolean knownDoctor, int attempt) throws SQLException {
+		Connection c = conn.getConnection();
+		c.setAutoCommit(false);
+
+		String prepareSql = knownDoctor ? PREPARE_KNOWN_DOCTOR_SQL : PREPARE_SQL;
+		PreparedStatement prepare = conn.prepare(prepareSql);
+		if (knownDoctor){
+			StatementCache.bind(prepare,
+				r.patientId, r.patientName, r.gender, r.age, r.address, r.prevAppointments,
+				r.appointmentId, r.date, r.timeSlot, r.status, r.appointmentId,
+				r.appointmentId);
+		}else{
+			StatementCache.bind(prepare,
+				r.patientId, r.patientName, r.gender, r.age, r.address, r.prevAppointments,
+				r.doctorId, r.doctorName, r.specialty, r.deptId,
+				r.appointmentId, r.date, r.timeSlot, r.status, r.appointmentId,
+				r.appointmentId);
+		}//end if
+		boolean patientAdded, doctorAdded, appointmentAdded;
+		String status;
+		long start = System.nanoTime();
+		boolean ok = false;
+		try{
+			ResultSet rs = prepare.executeQuery();
+			try{
+				rs.next();
+				patientAdded = rs.getInt(1) > 0;
+				doctorAdded = rs.getInt(2) > 0;
+				String inserted = rs.getString(3);
+				String locked = rs.getString(4);
+				appointmentAdded = inserted != null;
+				status = appointmentAdded ? inserted : locked;
+			}finally{
+				rs.close();
+			}
+			ok = true;
+		}finally{
+			record(prepareSql, start, 1, ok);
+		}
+		if (status == null){
+			// another booking inserted the same new appointment after our snapshot
+			c.rollback();
+			this._conflicts.incrementAndGet();
+			return null;
+		}//end if
+
+		Outcome outcome;
+		AppointmentStatus current = AppointmentStatus.of(status);
+		if (current == null){
+			outcome = Outcome.UNKNOWN_STATUS;
+		}else{
+			switch (current){
+				case PA: outcome = Outcome.PAST; break;
+				case AC: outcome = Outcome.WAITLISTED; break;
+				case AV: outcome = Outcome.BOOKED; break;
+				default: outcome = Outcome.JOINED_WAITLIST; break;
+			}//end switch
+		}//end if
+		AppointmentStatus after = current == null ? null : current.afterBooking();
+		String next = after == null ? null : after.name();
+		boolean linkAdded = false;
+
+		if (next != null){
+			boolean queue = this._waitlist && after == AppointmentStatus.WL;
+			boolean counted = this._counted;
+			String transitionSql = counted ? (queue ? TRANSITION_COUNTED_WAITLIST_SQL : TRANSITION_COUNTED_SQL) : (queue ? TRANSITION_WAITLIST_SQL : TRANSITION_SQL);
+			PreparedStatement transition = conn.prepare(transitionSql);
+			if (counted && queue){
+				StatementCache.bind(transition,
+					next, r.appointmentId, next,
+					r.appointmentId, r.doctorId, r.patientId, r.appointmentId, r.doctorId,
+					r.appointmentId, r.patientId, r.doctorId);
+			}else if (counted){
+				StatementCache.bind(transition,
+					next, r.appointmentId, next,
+					r.appointmentId, r.doctorId, r.patientId, r.appointmentId, r.doctorId);
+			}else if (queue){
+				StatementCache.bind(transition,
+					next, r.appointmentId, next,
+					r.prevAppointments + 1, r.patientId,
+					r.appointmentId, r.doctorId, r.appointmentId, r.doctorId,
+					r.appointmentId, r.patientId, r.doctorId);
+			}else{
+				StatementCache.bind(transition,
+					next, r.appointmentId, next,
+					r.prevAppointments + 1, r.patientId,
+					r.appointmentId, r.doctorId, r.appointmentId, r.doctorId);
+			}//end if
+			start = System.nanoTime();
+			ok = false;
+			try{
+				transition.execute();
+				// the link insert is the second statement counted, the third without counter
+				linkAdded = updateCount(transition, counted ? 1 : 2) > 0;
+				ok = true;
+			}finally{
+				record(transitionSql, start, 1, ok);
+			}
+		}//end if
+		c.commit();
+		Listener listener = this._listener;
+		if (listener != null && next != null && !next.equals(status)){
+			listener.statusChanged(r.appointmentId, r.doctorId, status, next);
+		}//end if
+		return new Result(outcome, status, patientAdded, doctorAdded, appointmentAdded, linkAdded, attempt);
+	}
+
+	/**
+	 * Method to set who is told about the status changes of committed
+	 * bookings, e.g. the availability index.
+	 *
+	 * @param listener the listener, or null for none
+	 */
+	public void setListener(Listener listener) {
+		this._listener = listener;
+	}
+
+	/**
+	 * Method to set whether waitlisted bookings are queued in the waitlist
+	 * table, which databases made before it was added to create.sql lack.
+	 *
+	 * @param enabled true to queue them
+	 */
+	public void setWaitlist(boolean enabled) {
+		this._waitlist = enabled;
+	}
+
+	/**
+	 * Method to set whether bookings leave number_of_appts to the delta
+	 * table and PatientCounter instead of updating Patient, which databases
+	 * made before the delta table was added to create.sql cannot.
+	 *
+	 * @param enabled true to count through the delta table
+	 */
+	public void setPatientCounter(boolean enabled) {
+		this._counted = enabled;
+	}
+
+	/**
+	 * Method to set where the latencies of the booking statements are
+	 * recorded.
+	 *
+	 * @param metrics the metrics, or null for none
+	 */
+	public void setMetrics(QueryMetrics metrics) {
+		this._metrics = metrics;
+	}
+
+	/**
+	 * Method to tell whether a failed transaction may succeed when retried:
+	 * serialization failures and deadlocks.
+	 */
+	static boolean isRetryable(SQLException e) {
+		String state = e.getSQLState();
+		return "40001".equals(state) || "40P01".equals(state);
+	}
+
+	//the update count of the statement at index of an executed multi-statement
+	private static int updateCount(PreparedStatement stmt, int index) throws SQLException {
+		for (int i = 0; i < index; i++) stmt.getMoreResults();
+		return stmt.getUpdateCount();
+	}
+
+	private void record(String sql, long start, long rows, boolean ok) {
+		QueryMetrics metrics = this._metrics;
+		if (metrics != null) metrics.query(sql, start, ok ? rows : 0, !ok);
+	}
+
+	private static void backoff(int attempt) {
+		try{
+			Thread.sleep(ThreadLocalRandom.current().nextInt(1, 5 << Math.min(attempt, 6)));
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}//end try
+	}
+
+	public long getBookingCount() { return this._bookings.get(); }
+	public long getRetryCount() { return this._retries.get(); }
+	public long getConflictCount() { return this._conflicts.get(); }
+}//end BookingEngine
@@ -0,0 +1,223 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * This class streams table data into the database from the client side
+ * with the COPY FROM STDIN protocol, so the data files never have to be on
+ * the database host.  Tables are loaded in foreign key order; tables on
+ * the same level do not reference each other and are loaded in parallel,
+ * each on its own pooled connection.
+ *
+ */
+
+public class BulkLoader{
+	/**
+	 * One table of create.sql together with its COPY column list, its file
+	 * under code/data and its foreign key level.
+	 */
+	public static final class TableSpec{
+		public final String name;
+		public final String columns;
+		public final String file;
+		public final int level;
+
+		TableSpec(String name, String columns, String file, int level) {
+			this.name = name;
+			this.columns = columns;
+			this.file = file;
+			this.level = level;
+		}
+
+		public String copySql() {
+			return "COPY " + this.name + " (" + this.columns + ") FROM STDIN WITH DELIMITER ','";
+		}
+	}//end TableSpec
+
+	//every table of create.sql; a table only references tables on lower levels
+	public static final TableSpec[] TABLES = {
+		new TableSpec("Hospital", "hospital_ID, name", "hospital.csv", 0),
+		new TableSpec("Patient", "patient_ID, name, gtype, age, address, number_of_appts", "patient.csv", 0),
+		new TableSpec("Appointment", "appnt_ID, adate, time_slot, status", "appointment.csv", 0),
+		new TableSpec("Department", "dept_ID, name, hid", "department.csv", 1),
+		new TableSpec("Staff", "staff_ID, name, hid", "staff.csv", 1),
+		new TableSpec("Doctor", "doctor_ID, name, specialty, did", "doctor.csv", 2),
+		new TableSpec("request_maintenance", "patient_per_hour, dept_name, time_slot, did, sid", "request_maintenance.csv", 3),
+		new TableSpec("searches", "hid, pid, aid", "searches.csv", 3),
+		new TableSpec("schedules", "appt_id, staff_id", "schedules.csv", 3),
+		new TableSpec("has_appointment", "appt_id, doctor_id", "has_appointment.csv", 3)
+	};
+
+	/**
+	 * Where the rows of one table come from.  Implementations push the rows
+	 * through the given CopyManager and return the number of rows copied.
+	 */
+	public interface CopySource{
+		long copy(CopyManager copy, String copySql) throws SQLException, IOException;
+	}
+
+	/**
+	 * Chooses the CopySource of each table; returning null skips the table.
+	 */
+	public interface SourceFactory{
+		CopySource open(TableSpec table) throws IOException;
+	}
+
+	/**
+	 * Outcome of loading one table.
+	 */
+	public static final class Result{
+		public final String table;
+		public final long rows;
+		public final long millis;
+
+		Result(String table, long rows, long millis) {
+			this.table = table;
+			this.rows = rows;
+			this.millis = millis;
+		}
+
+		public double rowsPerSecond() {
+			return this.millis == 0 ? this.rows * 1000.0 : this.rows * 1000.0 / this.millis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-20s %10d rows %8d ms %12.0f rows/s", this.table, this.rows, this.millis, rowsPerSecond());
+		}
+	}//end Result
+
+	private final ConnectionPool _pool;
+	private final int _threads;
+
+	public BulkLoader(ConnectionPool pool) {
+		this._pool = pool;
+		this._threads = pool.getMaxSize();
+	}
+
+	/**
+	 * Method to stream a CSV file of code/data through COPY FROM STDIN.
+	 *
+	 * @param file the comma separated data file
+	 * @return a source that copies the file
+	 */
+	public static CopySource fromFile(final File file) {
+		return new CopySource(){
+			public long copy(CopyManager copy, String copySql) throws SQLException, IOException {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+				try{
+					return copy.copyIn(copySql, reader, 1 << 16);
+				}finally{
+					reader.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Method to load every table from the CSV files in a directory.
+	 *
+	 * @param dir the directory holding the files, e.g. code/data
+	 * @return the per table results in load order
+	 * @throws java.sql.SQLException when a table failed to load
+	 */
+	public List<Result> loadDirectory(final File dir) throws SQLException {
+		return load(new SourceFactory(){
+			public CopySource open(TableSpec table) throws IOException {
+				File f = new File(dir, table.file);
+				if (!f.isFile()) throw new IOException("Missing data file " + f.getPath());
+				return fromFile(f);
+			}
+		});
+	}
+
+	/**
+	 * Method to load every table level by level.  All tables of one level
+	 * are copied in parallel and the next level starts once they finished.
+	 *
+	 * @param sources chooses the source of each table
+	 * @return the per table results in load order
+	 * @throws java.sql.SQLException when a table failed to load
+	 */
+	public List<Result> load(SourceFactory sources) throws SQLException {
+		List<Result> results = new ArrayList<Result>();
+		ExecutorService workers = Executors.newFixedThreadPool(this._threads);
+		try{
+			int maxLevel = 0;
+			for (TableSpec t : TABLES) maxLevel = Math.max(maxLevel, t.level);
+			for (int level = 0; level <= maxLevel; level++){
+				List<Future<Result>> running = new ArrayList<Future<Result>>();
+				for (final TableSpec t : TABLES){
+					if (t.level != level) continue;
+					final CopySource source;
+					try{
+						source = sources.open(t);
+					}catch (IOException e){
+						throw new SQLException("Unable to open data for " + t.name + ": " + e.getMessage(), e);
+					}//end try
+					if (source == null) continue;
+					running.add(workers.submit(() -> copyTable(t, source)));
+				}//end for
+				for (Future<Result> f : running){
+					Result r = get(f);
+					System.out.println(r);
+					results.add(r);
+				}//end for
+			}//end for
+		}finally{
+			workers.shutdownNow();
+		}
+		return results;
+	}
+
+	private Result copyTable(final TableSpec table, final CopySource source) throws SQLException, IOException {
+		PooledConnection conn = this._pool.borrow();
+		try{
+			CopyManager copy = conn.getConnection().unwrap(PGConnection.class).getCopyAPI();
+			long start = System.nanoTime();
+			long rows = source.copy(copy, table.copySql());
+			return new Result(table.name, rows, (System.nanoTime() - start) / 1000000L);
+		}finally{
+			this._pool.release(conn);
+		}
+	}
+
+	private static Result get(Future<Result> f) throws SQLException {
+		try{
+			return f.get();
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while loading", e);
+		}catch (ExecutionException e){
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) throw (SQLException) cause;
+			throw new SQLException("Load failed: " + cause.getMessage(), cause);
+		}//end try
+	}
+}//end BulkLoader
@@ -0,0 +1,282 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class writes many Doctor, Patient and Appointment rows with
+ * multi-row INSERT ... ON CONFLICT statements, so existing rows are either
+ * updated or skipped instead of failing the write.  Rows are buffered per
+ * table and sent rowsPerStatement at a time; the transaction is committed
+ * every statementsPerCommit statements and on close().  Rows count as
+ * written once their transaction commits.  After a failed statement the
+ * open transaction is rolled back and the writer refuses further rows,
+ * so close() does not commit what follows the gap.
+ *
+ * Typical use for a registry sync:
+ *
+ *   BulkWriter w = new BulkWriter(esql.getPool(), BulkWriter.Conflict.UPDATE, 500, 20);
+ *   try { w.upsertPatients(patients); } finally { w.close(); }
+ *
+ */
+
+public class BulkWriter implements AutoCloseable{
+	/**
+	 * What to do with a row whose key already exists.
+	 */
+	public enum Conflict{
+		UPDATE,
+		NOTHING
+	}
+
+	//PostgreSQL accepts at most this many parameters in one statement
+	private static final int MAX_PARAMS = 32767;
+
+	/**
+	 * The insert shape of one table.
+	 */
+	private static final class Target{
+		final String table;
+		final String[] columns;
+		final Map<Object, Object[]> buffer = new LinkedHashMap<Object, Object[]>();
+		final Map<Integer, String> sqlBySize = new HashMap<Integer, String>();
+
+		Target(String table, String... columns) {
+			this.table = table;
+			this.columns = columns;
+		}
+	}
+
+	private final ConnectionPool _pool;
+	private final Conflict _conflict;
+	private final int _rowsPerStatement;
+	private final int _statementsPerCommit;
+	private final Target _doctors = new Target("Doctor", "doctor_ID", "name", "specialty", "did");
+	private final Target _patients = new Target("Patient", "patient_ID", "name", "gtype", "age", "address", "number_of_appts");
+	private final Target _appointments = new Target("Appointment", "appnt_ID", "adate", "time_slot", "status");
+	private PooledConnection _conn = null;
+	private int _uncommitted = 0;
+	//rows of the open transaction, added to _written on commit
+	private long _pending = 0;
+	private long _written = 0;
+	private boolean _failed = false;
+
+	public BulkWriter(ConnectionPool pool, Conflict conflict) {
+		this(pool, conflict, Integer.getInteger("dbproject.bulk.rowsPerStatement", 500), Integer.getInteger("dbproject.bulk.statementsPerCommit", 20));
+	}
+
+	public BulkWriter(ConnectionPool pool, Conflict conflict, int rowsPerStatement, int statementsPerCommit) {
+		this._pool = pool;
+		this._conflict = conflict;
+		this._rowsPerStatement = Math.max(1, rowsPerStatement);
+		this._statementsPerCommit = Math.max(1, statementsPerCommit);
+	}
+
+	public void add(Records.Doctor d) throws SQLException {
+		buffer(this._doctors, d.doctorId, d.params());
+	}
+
+	public void add(Records.Patient p) throws SQLException {
+		buffer(this._patients, p.patientId, p.params());
+	}
+
+	public void add(Records.Appointment a) throws SQLException {
+		buffer(this._appointments, a.appointmentId, a.params());
+	}
+
+	public long upsertDoctors(Collection<Records.Doctor> rows) throws SQLException {
+		long before = this._written;
+		for (Records.Doctor d : rows) add(d);
+		flush();
+		return this._written - before;
+	}
+
+	public long upsertPatients(Collection<Records.Patient> rows) throws SQLException {
+		long before = this._written;
+		for (Records.Patient p : rows) add(p);
+		flush();
+		return this._written - before;
+	}
+
+	public long upsertAppointments(Collection<Records.Appointment> rows) throws SQLException {
+		long before = this._written;
+		for (Records.Appointment a : rows) add(a);
+		flush();
+		return this._written - before;
+	}
+
+	/**
+	 * Method to write the AddDoctor, AddPatient and AddAppointment lines of
+	 * a JSON Lines stream in the format of BatchRunner, then flush.
+	 *
+	 * @param in the rows, one JSON object per line
+	 * @return the number of rows inserted or updated
+	 * @throws java.lang.IllegalArgumentException when a line is not a valid
+	 *         row; the rows before it were written
+	 */
+	public long sync(BufferedReader in) throws IOException, SQLException {
+		long before = this._written;
+		long lineNo = 0;
+		String line;
+		while ((line = in.readLine()) != null){
+			lineNo++;
+			if (line.trim().isEmpty()) continue;
+			try{
+				JsonLine j = JsonLine.parse(line);
+				String op = j.requireString("op");
+				switch (op){
+					case "AddDoctor": add(Records.Doctor.from(j)); break;
+					case "AddPatient": add(Records.Patient.from(j)); break;
+					case "AddAppointment": add(Records.Appointment.from(j)); break;
+					default: throw new IllegalArgumentException("unsupported op " + op);
+				}//end switch
+			}catch (IllegalArgumentException e){
+				throw new IllegalArgumentException("line " + lineNo + ": " + e.getMessage(), e);
+			}//end try
+		}//end while
+		flush();
+		return this._written - before;
+	}
+
+	/**
+	 * Method to send every buffered row and commit.
+	 *
+	 * @throws java.sql.SQLException when a statement failed; the open
+	 *         transaction is rolled back
+	 */
+	public void flush() throws SQLException {
+		write(this._doctors);
+		write(this._patients);
+		write(this._appointments);
+		commit();
+	}
+
+	/**
+	 * @return the number of rows inserted or updated by committed
+	 *         transactions so far
+	 */
+	public long getWrittenCount() {
+		return this._written;
+	}
+
+	/**
+	 * Method to flush the remaining rows and return the connection.  After
+	 * a failed statement it only returns the connection.
+	 */
+	public void close() throws SQLException {
+		try{
+			if (!this._failed) flush();
+		}finally{
+			if (this._conn != null){
+				this._pool.release(this._conn);
+				this._conn = null;
+			}//end if
+		}
+	}
+
+	private void buffer(Target t, Object key, Object[] params) throws SQLException {
+		// a key may only appear once per statement, the last version wins
+		t.buffer.remove(key);
+		t.buffer.put(key, params);
+		if (t.buffer.size() >= rowsPerStatement(t)) write(t);
+	}
+
+	private int rowsPerStatement(Target t) {
+		return Math.min(this._rowsPerStatement, MAX_PARAMS / t.columns.length);
+	}
+
+	private void write(Target t) throws SQLException {
+		if (t.buffer.isEmpty()) return;
+		if (this._failed){
+			t.buffer.clear();
+			throw new SQLException("an earlier statement failed and was rolled back, no further rows are written");
+		}//end if
+		if (this._conn == null){
+			this._conn = this._pool.borrow();
+			this._conn.getConnection().setAutoCommit(false);
+		}//end if
+		List<Object> params = new ArrayList<Object>(t.buffer.size() * t.columns.length);
+		for (Object[] row : t.buffer.values()){
+			for (Object v : row) params.add(v);
+		}//end for
+		try{
+			PreparedStatement stmt = this._conn.prepare(sql(t, t.buffer.size()));
+			StatementCache.bind(stmt, params.toArray());
+			this._pending += stmt.executeUpdate();
+		}catch (SQLException e){
+			this._failed = true;
+			this._uncommitted = 0;
+			this._pending = 0;
+			try{
+				this._conn.getConnection().rollback();
+			}catch (SQLException r){
+				e.addSuppressed(r);
+			}//end try
+			throw e;
+		}finally{
+			t.buffer.clear();
+		}
+		if (++this._uncommitted >= this._statementsPerCommit) commit();
+	}
+
+	private void commit() throws SQLException {
+		if (this._conn == null || this._uncommitted == 0) return;
+		try{
+			this._conn.getConnection().commit();
+		}catch (SQLException e){
+			this._failed = true;
+			this._uncommitted = 0;
+			this._pending = 0;
+			throw e;
+		}//end try
+		this._uncommitted = 0;
+		this._written += this._pending;
+		this._pending = 0;
+	}
+
+	//INSERT INTO t (c1, c2) VALUES (?, ?), (?, ?) ON CONFLICT ON CONSTRAINT t_pkey DO ...
+	//the constraint rather than c1, which is not the whole key of a partitioned Appointment
+	private String sql(Target t, int rows) {
+		String sql = t.sqlBySize.get(rows);
+		if (sql != null) return sql;
+		StringBuilder sb = new StringBuilder(64 + rows * t.columns.length * 4);
+		sb.append("INSERT INTO ").append(t.table).append(" (").append(String.join(", ", t.columns)).append(") VALUES ");
+		for (int r = 0; r < rows; r++){
+			sb.append(r == 0 ? "(" : ", (");
+			for (int c = 0; c < t.columns.length; c++) sb.append(c == 0 ? "?" : ", ?");
+			sb.append(')');
+		}//end for
+		sb.append(" ON CONFLICT ON CONSTRAINT ").append(t.table.toLowerCase()).append("_pkey DO ");
+		if (this._conflict == Conflict.NOTHING){
+			sb.append("NOTHING");
+		}else{
+			sb.append("UPDATE SET ");
+			for (int c = 1; c < t.columns.length; c++){
+				if (c > 1) sb.append(", ");
+				sb.append(t.columns[c]).append(" = EXCLUDED.").append(t.columns[c]);
+			}//end for
+		}//end if
+		sql = sb.toString();
+		t.sqlBySize.put(rows, sql);
+		return sql;
+	}
+}//end BulkWriter
@@ -0,0 +1,371 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class defines a small bounded pool of physical PostgreSQL
+ * connections.  Connections are borrowed for the length of one operation
+ * and handed back afterwards, so several clerk sessions or worker threads
+ * can run the menu operations in parallel without reconnecting.
+ *
+ * The pool keeps at least minSize connections open, never opens more than
+ * maxSize, validates connections that sat idle before handing them out,
+ * closes connections idle longer than idleTimeoutMs and gives up on a
+ * borrow after acquireTimeoutMs.  A lazy pool opens nothing up front; the
+ * first borrow opens the first connection.
+ *
+ */
+
+public class ConnectionPool{
+	/**
+	 * Work done while holding one pooled connection.
+	 */
+	public interface Callback<T>{
+		T run(PooledConnection conn) throws SQLException;
+	}
+
+	private final String _url;
+	private final Properties _props;
+	private final int _minSize;
+	private final int _maxSize;
+	private final long _idleTimeoutMs;
+	private final long _acquireTimeoutMs;
+	private final long _validateAfterMs;
+	private final int _stmtCacheSize;
+
+	//idle connections, most recently released first
+	private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+	//one permit per connection that may still be handed out
+	private final Semaphore _permits;
+	private final ScheduledExecutorService _evictor;
+	private volatile boolean _closed = false;
+
+	//metrics, guarded by this
+	private int _open = 0;
+	private long _borrows = 0;
+	private long _creates = 0;
+	private long _destroys = 0;
+	private long _timeouts = 0;
+	private long _validationFailures = 0;
+	private long _waitNanosTotal = 0;
+	private long _waitNanosMax = 0;
+	private long _retiredHits = 0;
+	private long _retiredMisses = 0;
+	private long _retiredEvictions = 0;
+
+	public ConnectionPool(String url, String user, String passwd) throws SQLException {
+		this(url, user, passwd, false);
+	}
+
+	/**
+	 * @param lazy true to return without opening the minSize connections
+	 */
+	public ConnectionPool(String url, String user, String passwd, boolean lazy) throws SQLException {
+		this(url, user, passwd, lazy,
+			Integer.getInteger("dbproject.pool.min", 1),
+			Integer.getInteger("dbproject.pool.max", 8),
+			Long.getLong("dbproject.pool.idleTimeoutMs", 300000L),
+			Long.getLong("dbproject.pool.acquireTimeoutMs", 10000L),
+			Long.getLong("dbproject.pool.validateAfterMs", 1000L),
+			Integer.getInteger("dbproject.stmtCacheSize", StatementCache.DEFAULT_CAPACITY));
+	}
+
+	public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize, long idleTimeoutMs, long acquireTimeoutMs, long validateAfterMs, int stmtCacheSize) throws SQLException {
+		this(url, user, passwd, false, minSize, maxSize, idleTimeoutMs, acquireTimeoutMs, validateAfterMs, stmtCacheSize);
+	}
+
+	public ConnectionPool(String url, String user, String passwd, boolean lazy, int minSize, int maxSize, long idleTimeoutMs, long acquireTimeoutMs, long validateAfterMs, int stmtCacheSize) throws SQLException {
+		if (maxSize < 1 || minSize < 0 || minSize > maxSize){
+			throw new IllegalArgumentException("invalid pool size min=" + minSize + " max=" + maxSize);
+		}//end if
+		this._url = url;
+		this._props = new Properties();
+		this._props.setProperty("user", user);
+		this._props.setProperty("password", passwd);
+		// string parameters go untyped so the server reads them as the column's type,
+		// e.g. the appointment_status enum of sql/compact.sql, instead of varchar
+		this._props.setProperty("stringtype", System.getProperty("dbproject.stringtype", "unspecified"));
+		this._minSize = minSize;
+		this._maxSize = maxSize;
+		this._idleTimeoutMs = idleTimeoutMs;
+		this._acquireTimeoutMs = acquireTimeoutMs;
+		this._validateAfterMs = validateAfterMs;
+		this._stmtCacheSize = stmtCacheSize;
+		this._permits = new Semaphore(maxSize, true);
+
+		// open the minimum number of connections up front so a bad URL fails fast
+		for (int i = 0; i < (lazy ? 0 : minSize); i++){
+			PooledConnection pc = create();
+			synchronized (this){
+				this._idle.push(pc);
+			}
+		}//end for
+
+		this._evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "pool-evictor");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		long period = Math.max(1000L, idleTimeoutMs / 2);
+		this._evictor.scheduleWithFixedDelay(new Runnable(){
+			public void run() { evictIdle(); }
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to borrow a connection, waiting at most acquireTimeoutMs for
+	 * one to become free.  Every borrowed connection must be given back
+	 * with release().
+	 *
+	 * @return a validated pooled connection in autocommit mode
+	 * @throws java.sql.SQLException when the pool is closed, the wait timed
+	 *         out or a new connection could not be opened
+	 */
+	public PooledConnection borrow() throws SQLException {
+		if (this._closed) throw new SQLException("Connection pool is closed");
+		long start = System.nanoTime();
+		try{
+			if (!this._permits.tryAcquire(this._acquireTimeoutMs, TimeUnit.MILLISECONDS)){
+				synchronized (this){
+					this._timeouts++;
+				}
+				throw new SQLException("Timed out after " + this._acquireTimeoutMs + " ms waiting for a database connection", "08001");
+			}//end if
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", "08001");
+		}//end try
+
+		try{
+			while (true){
+				PooledConnection pc;
+				synchronized (this){
+					pc = this._idle.poll();
+				}
+				if (pc == null){
+					pc = create();
+				}else if (System.currentTimeMillis() - pc.lastReleased >= this._validateAfterMs && !isValid(pc)){
+					synchronized (this){
+						this._validationFailures++;
+					}
+					destroy(pc);
+					continue;
+				}//end if
+				long waited = System.nanoTime() - start;
+				synchronized (this){
+					this._borrows++;
+					this._waitNanosTotal += waited;
+					if (waited > this._waitNanosMax) this._waitNanosMax = waited;
+				}
+				return pc;
+			}//end while
+		}catch (SQLException e){
+			this._permits.release();
+			throw e;
+		}catch (RuntimeException e){
+			this._permits.release();
+			throw e;
+		}//end try
+	}
+
+	/**
+	 * Method to give a borrowed connection back.  Any open transaction is
+	 * rolled back; a connection that cannot be reset is closed instead.
+	 *
+	 * @param pc the connection returned by borrow()
+	 */
+	public void release(PooledConnection pc) {
+		if (pc == null) return;
+		boolean reusable = !this._closed;
+		try{
+			Connection c = pc.getConnection();
+			if (c.isClosed()){
+				reusable = false;
+			}else if (!c.getAutoCommit()){
+				c.rollback();
+				c.setAutoCommit(true);
+			}//end if
+		}catch (SQLException e){
+			reusable = false;
+		}//end try
+
+		if (reusable){
+			pc.lastReleased = System.currentTimeMillis();
+			synchronized (this){
+				this._idle.push(pc);
+			}
+		}else{
+			destroy(pc);
+		}//end if
+		this._permits.release();
+	}
+
+	/**
+	 * Method to run a unit of work on a borrowed connection and release it
+	 * afterwards, whether or not the work succeeded.
+	 *
+	 * @param work the work to run
+	 * @return whatever the work returned
+	 * @throws java.sql.SQLException when borrowing or the work failed
+	 */
+	public <T> T execute(Callback<T> work) throws SQLException {
+		PooledConnection pc = borrow();
+		try{
+			return work.run(pc);
+		}finally{
+			release(pc);
+		}
+	}
+
+	/**
+	 * Method to close idle connections that have not been used for
+	 * idleTimeoutMs while keeping at least minSize connections open.
+	 */
+	void evictIdle() {
+		long now = System.currentTimeMillis();
+		List<PooledConnection> evicted = new ArrayList<PooledConnection>();
+		synchronized (this){
+			Iterator<PooledConnection> it = this._idle.descendingIterator();
+			while (it.hasNext() && this._open > this._minSize){
+				PooledConnection pc = it.next();
+				if (now - pc.lastReleased < this._idleTimeoutMs) break;
+				it.remove();
+				retire(pc);
+				evicted.add(pc);
+			}//end while
+		}
+		//closing talks to the server, so it happens outside the lock
+		for (PooledConnection pc : evicted) pc.close();
+	}
+
+	/**
+	 * Method to open a connection outside the pool for a long lived
+	 * session, e.g. one that LISTENs for notifications.  The caller closes it.
+	 *
+	 * @return a new connection to the pooled database
+	 * @throws java.sql.SQLException when the connection could not be opened
+	 */
+	public Connection openDedicated() throws SQLException {
+		return DriverManager.getConnection(this._url, this._props);
+	}
+
+	private PooledConnection create() throws SQLException {
+		synchronized (this){
+			this._open++;
+		}
+		try{
+			Connection c = DriverManager.getConnection(this._url, this._props);
+			synchronized (this){
+				this._creates++;
+			}
+			return new PooledConnection(c, this._stmtCacheSize);
+		}catch (SQLException e){
+			synchronized (this){
+				this._open--;
+			}
+			throw e;
+		}//end try
+	}
+
+	private boolean isValid(PooledConnection pc) {
+		try{
+			return pc.getConnection().isValid(2);
+		}catch (SQLException e){
+			return false;
+		}//end try
+	}
+
+	private void destroy(PooledConnection pc) {
+		synchronized (this){
+			retire(pc);
+		}
+		pc.close();
+	}
+
+	//caller holds the lock on this and closes pc after releasing it
+	private void retire(PooledConnection pc) {
+		StatementCache cache = pc.getStatementCache();
+		this._retiredHits += cache.getHits();
+		this._retiredMisses += cache.getMisses();
+		this._retiredEvictions += cache.getEvictions();
+		this._open--;
+		this._destroys++;
+	}
+
+	/**
+	 * Method to close every idle connection and refuse further borrows.
+	 * Connections still borrowed are closed when they are released.
+	 */
+	public void close() {
+		this._closed = true;
+		this._evictor.shutdownNow();
+		List<PooledConnection> idle = new ArrayList<PooledConnection>();
+		synchronized (this){
+			while (!this._idle.isEmpty()){
+				PooledConnection pc = this._idle.poll();
+				retire(pc);
+				idle.add(pc);
+			}//end while
+		}
+		for (PooledConnection pc : idle) pc.close();
+	}
+
+	public int getMinSize() { return this._minSize; }
+	public int getMaxSize() { return this._maxSize; }
+	public synchronized int getOpenCount() { return this._open; }
+	public synchronized int getIdleCount() { return this._idle.size(); }
+	public synchronized int getActiveCount() { return this._open - this._idle.size(); }
+	public synchronized long getBorrowCount() { return this._borrows; }
+	public synchronized long getTimeoutCount() { return this._timeouts; }
+	public synchronized double getAverageWaitMillis() { return this._borrows == 0 ? 0.0 : this._waitNanosTotal / 1e6 / this._borrows; }
+	public synchronized double getMaxWaitMillis() { return this._waitNanosMax / 1e6; }
+
+	/**
+	 * Method to sum the statement cache counters of every connection this
+	 * pool has opened, including connections already closed.
+	 *
+	 * @return hits, misses and evictions in that order
+	 */
+	public synchronized long[] getStatementCacheCounters() {
+		long[] counters = new long[] { this._retiredHits, this._retiredMisses, this._retiredEvictions };
+		for (PooledConnection pc : this._idle){
+			StatementCache cache = pc.getStatementCache();
+			counters[0] += cache.getHits();
+			counters[1] += cache.getMisses();
+			counters[2] += cache.getEvictions();
+		}//end for
+		return counters;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("open=%d idle=%d active=%d max=%d borrows=%d creates=%d destroys=%d timeouts=%d validationFailures=%d avgWait=%.3fms maxWait=%.3fms",
+			this._open, this._idle.size(), this._open - this._idle.size(), this._maxSize, this._borrows, this._creates, this._destroys, this._timeouts, this._validationFailures,
+			getAverageWaitMillis(), getMaxWaitMillis());
+	}
+}//end ConnectionPool
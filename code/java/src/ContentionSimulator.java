@@ -0,0 +1,396 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class stresses the booking path (option 4) with many clerks at once
+ * and checks the database afterwards:
+ *
+ *   DBproject ... simulate 32 30
+ *
+ * runs 32 sessions for 30 seconds.  It adds its own doctors, patients and
+ * available appointments above the largest IDs in use, one week ahead, and
+ * removes them afterwards unless asked to keep them.  Each session mixes
+ * bookings with listings of options 5 and 6 and, when the waitlist table
+ * exists, cancellations; hotShare of the bookings go to the few hot
+ * appointments and doctors, so sessions keep meeting on the same rows.
+ * Every session books for patients of its own, as one clerk serves one
+ * patient at a time.
+ *
+ * The outcomes are counted per appointment and per patient and compared
+ * with the tables at the end: an appointment is booked (AC or WL) exactly
+ * when one more booking than cancellation freed it, never twice; its
+ * waiting entries are the waitlisted bookings less the promotions; every
+ * number_of_appts equals the patient's bookings, and the has_appointment
+ * links of the appointments equal the bookings that added one.  A booking
+ * for a doctor already linked keeps the link.  With the delta table of
+ * create.sql only bookings that added a link are counted, the deltas are
+ * rolled up first and the counts read from patient_appointment_count.
+ *
+ * Sessions share the connection pool, so -Ddbproject.pool.max should be at
+ * least the number of sessions.
+ *
+ */
+
+public class ContentionSimulator{
+	//percent of operations of each kind; the rest are cancellations when the waitlist exists, else bookings
+	static final int BOOK_PERCENT = 70;
+	static final int DOCTOR_LISTING_PERCENT = 15;
+	static final int AVAILABLE_LISTING_PERCENT = 10;
+
+	static final String MAX_IDS_SQL = "SELECT (SELECT COALESCE(MAX(appnt_ID), 0) FROM Appointment), (SELECT COALESCE(MAX(doctor_ID), 0) FROM Doctor), (SELECT COALESCE(MAX(patient_ID), 0) FROM Patient), (SELECT MIN(dept_ID) FROM Department)";
+	static final String ADD_DOCTORS_SQL = "INSERT INTO Doctor (doctor_ID, name, specialty, did) SELECT g, 'Simulated doctor ' || g, 'Simulation', ? FROM generate_series(?, ?) g";
+	static final String ADD_PATIENTS_SQL = "INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) SELECT g, 'Simulated patient ' || g, 'F', 40, 'Simulation', 0 FROM generate_series(?, ?) g";
+	static final String ADD_APPOINTMENTS_SQL = "INSERT INTO Appointment (appnt_ID, adate, time_slot, status) SELECT g, ?, '8:00-10:00', 'AV' FROM generate_series(?, ?) g";
+
+	static final String STATUSES_SQL = "SELECT appnt_ID, status FROM Appointment WHERE appnt_ID BETWEEN ? AND ?";
+	static final String WAITING_SQL = "SELECT appt_id, COUNT(*) FROM waitlist WHERE appt_id BETWEEN ? AND ? AND promoted_at IS NULL GROUP BY appt_id";
+	static final String PATIENT_COUNTS_SQL = "SELECT patient_ID, number_of_appts FROM Patient WHERE patient_ID BETWEEN ? AND ?";
+	static final String PATIENT_COUNTED_SQL = "SELECT patient_ID, number_of_appts FROM patient_appointment_count WHERE patient_ID BETWEEN ? AND ?";
+	static final String LINKS_SQL = "SELECT COUNT(*) FROM has_appointment WHERE appt_id BETWEEN ? AND ?";
+
+	static final String[] CLEANUP_SQL = {
+		"DELETE FROM waitlist WHERE appt_id BETWEEN ? AND ?",
+		"DELETE FROM has_appointment WHERE appt_id BETWEEN ? AND ?",
+		"DELETE FROM Appointment WHERE appnt_ID BETWEEN ? AND ?",
+		"DELETE FROM Patient WHERE patient_ID BETWEEN ? AND ?",
+		"DELETE FROM Doctor WHERE doctor_ID BETWEEN ? AND ?"
+	};
+
+	private final DBproject _esql;
+	private final int _sessions;
+	private final int _appointments;
+	private final int _hotAppointments;
+	private final int _doctors;
+	private final int _hotDoctors;
+	private final int _patientsPerSession;
+	private final double _hotShare;
+	private final QueryMetrics _metrics = new QueryMetrics(0, 0, false);
+	private final boolean _waitlist;
+	private final boolean _counted;
+	private final BookingEngine _booking;
+	private final WaitlistEngine _cancel;
+
+	//first IDs of the simulated rows
+	private int _firstAppointment;
+	private int _firstDoctor;
+	private int _firstPatient;
+	private int _deptId;
+	private java.sql.Date _date;
+
+	//outcomes per simulated appointment, index appnt_ID - _firstAppointment
+	private AtomicIntegerArray _booked;
+	private AtomicIntegerArray _waitlisted;
+	private AtomicIntegerArray _freed;
+	private AtomicIntegerArray _promoted;
+	//committed bookings per simulated patient, each written by one session only
+	private int[] _patientBookings;
+
+	private final AtomicLong _operations = new AtomicLong();
+	private final AtomicLong _linksAdded = new AtomicLong();
+	private final AtomicLong _existingLinks = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+	private final List<String> _errorSamples = new ArrayList<String>();
+
+	public ContentionSimulator(DBproject esql, int sessions) throws SQLException {
+		this(esql, sessions,
+			Integer.getInteger("dbproject.simulate.appointments", 500),
+			Integer.getInteger("dbproject.simulate.hotAppointments", 10),
+			Integer.getInteger("dbproject.simulate.doctors", 20),
+			Integer.getInteger("dbproject.simulate.hotDoctors", 3),
+			Integer.getInteger("dbproject.simulate.patientsPerSession", 20),
+			Double.parseDouble(System.getProperty("dbproject.simulate.hotShare", "0.8")));
+	}
+
+	/**
+	 * @param hotShare the share of bookings that go to the hot appointments
+	 *        and doctors, between 0 and 1
+	 */
+	public ContentionSimulator(DBproject esql, int sessions, int appointments, int hotAppointments, int doctors, int hotDoctors, int patientsPerSession, double hotShare) throws SQLException {
+		if (sessions < 1 || appointments < 1 || doctors < 1 || patientsPerSession < 1 || hotShare < 0 || hotShare > 1){
+			throw new IllegalArgumentException("invalid simulation: sessions=" + sessions + " appointments=" + appointments + " doctors=" + doctors
+				+ " patientsPerSession=" + patientsPerSession + " hotShare=" + hotShare);
+		}//end if
+		this._esql = esql;
+		this._sessions = sessions;
+		this._appointments = appointments;
+		this._hotAppointments = Math.max(1, Math.min(hotAppointments, appointments));
+		this._doctors = doctors;
+		this._hotDoctors = Math.max(1, Math.min(hotDoctors, doctors));
+		this._patientsPerSession = patientsPerSession;
+		this._hotShare = hotShare;
+		this._waitlist = esql.usesWaitlist();
+		this._counted = esql.usesPatientCounter();
+		this._booking = new BookingEngine(esql.getPool(), null);
+		this._booking.setMetrics(this._metrics);
+		this._booking.setWaitlist(this._waitlist);
+		this._booking.setPatientCounter(this._counted);
+		this._cancel = this._waitlist ? new WaitlistEngine(esql.getPool()) : null;
+		if (this._cancel != null) this._cancel.setMetrics(this._metrics);
+	}
+
+	/**
+	 * Method to add the doctors, patients and available appointments of the
+	 * simulation above the largest IDs in use.
+	 *
+	 * @throws java.sql.SQLException when they could not be added, e.g. there
+	 *         is no department
+	 */
+	public void setUp() throws SQLException {
+		List<List<String>> max = this._esql.executeQueryAndReturnResult(MAX_IDS_SQL);
+		if (max.get(0).get(3) == null) throw new SQLException("There is no department, load the data first");
+		this._firstAppointment = Integer.parseInt(max.get(0).get(0)) + 1;
+		this._firstDoctor = Integer.parseInt(max.get(0).get(1)) + 1;
+		this._firstPatient = Integer.parseInt(max.get(0).get(2)) + 1;
+		this._deptId = Integer.parseInt(max.get(0).get(3));
+		this._date = java.sql.Date.valueOf(java.time.LocalDate.now().plusDays(7));
+		int patients = this._sessions * this._patientsPerSession;
+		this._esql.executeUpdate(ADD_DOCTORS_SQL, this._deptId, this._firstDoctor, this._firstDoctor + this._doctors - 1);
+		this._esql.executeUpdate(ADD_PATIENTS_SQL, this._firstPatient, this._firstPatient + patients - 1);
+		this._esql.executeUpdate(ADD_APPOINTMENTS_SQL, this._date, this._firstAppointment, this._firstAppointment + this._appointments - 1);
+		this._booked = new AtomicIntegerArray(this._appointments);
+		this._waitlisted = new AtomicIntegerArray(this._appointments);
+		this._freed = new AtomicIntegerArray(this._appointments);
+		this._promoted = new AtomicIntegerArray(this._appointments);
+		this._patientBookings = new int[patients];
+	}
+
+	/**
+	 * Method to run the sessions until the time is up.
+	 *
+	 * @param seconds how long to run
+	 * @return the operations per second
+	 */
+	public double run(int seconds) throws InterruptedException {
+		final long deadline = System.nanoTime() + seconds * 1000000000L;
+		List<Thread> running = new ArrayList<Thread>(this._sessions);
+		long start = System.nanoTime();
+		for (int i = 0; i < this._sessions; i++){
+			final int session = i;
+			Thread t = new Thread(() -> session(session, deadline), "simulate-" + i);
+			running.add(t);
+			t.start();
+		}//end for
+		for (Thread t : running) t.join();
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		return this._operations.get() / elapsed;
+	}
+
+	//one clerk: operations back to back until the deadline
+	private void session(int session, long deadline) {
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		int firstPatient = session * this._patientsPerSession;
+		Integer[] hotDoctors = new Integer[this._hotDoctors];
+		for (int i = 0; i < hotDoctors.length; i++) hotDoctors[i] = this._firstDoctor + i;
+		while (System.nanoTime() < deadline){
+			int p = rnd.nextInt(100);
+			String name;
+			if (p < BOOK_PERCENT) name = "Book";
+			else if (p < BOOK_PERCENT + DOCTOR_LISTING_PERCENT) name = "Doctor listing";
+			else if (p < BOOK_PERCENT + DOCTOR_LISTING_PERCENT + AVAILABLE_LISTING_PERCENT) name = "Available listing";
+			else name = this._waitlist ? "Cancel" : "Book";
+			long start = System.nanoTime();
+			boolean failed = false;
+			try{
+				switch (name){
+					case "Book":
+						book(firstPatient + rnd.nextInt(this._patientsPerSession), rnd);
+						break;
+					case "Doctor listing":
+						this._esql.executeQueryAndReturnResult(MenuQueries.APPOINTMENTS_OF_DOCTOR, this._firstDoctor + pick(this._doctors, this._hotDoctors, rnd), this._date, this._date);
+						break;
+					case "Available listing":
+						this._esql.executeQueryAndReturnResult(MenuQueries.AVAILABLE_OF_DOCTORS, this._date, hotDoctors);
+						break;
+					default:
+						cancel(rnd);
+						break;
+				}//end switch
+			}catch (SQLException e){
+				failed = true;
+				error(e);
+			}//end try
+			this._metrics.operation(name, start, failed);
+			this._operations.incrementAndGet();
+		}//end while
+	}
+
+	private void book(int patient, ThreadLocalRandom rnd) throws SQLException {
+		int appointment = pick(this._appointments, this._hotAppointments, rnd);
+		BookingEngine.Request r = new BookingEngine.Request();
+		r.patientId = this._firstPatient + patient;
+		r.patientName = "Simulated patient " + r.patientId;
+		r.gender = "F";
+		r.age = 40;
+		r.address = "Simulation";
+		// the clerk enters the count on record, as option 4 asks for it
+		r.prevAppointments = this._patientBookings[patient];
+		r.doctorId = this._firstDoctor + pick(this._doctors, this._hotDoctors, rnd);
+		r.doctorName = "Simulated doctor " + r.doctorId;
+		r.specialty = "Simulation";
+		r.deptId = this._deptId;
+		r.appointmentId = this._firstAppointment + appointment;
+		r.date = this._date;
+		r.timeSlot = "8:00-10:00";
+		r.status = AppointmentStatus.AV.name();
+		BookingEngine.Result result = this._booking.book(r);
+		switch (result.outcome){
+			case BOOKED:
+				this._booked.incrementAndGet(appointment);
+				break;
+			case WAITLISTED:
+			case JOINED_WAITLIST:
+				this._waitlisted.incrementAndGet(appointment);
+				break;
+			default:
+				return;
+		}//end switch
+		if (result.linkAdded) this._linksAdded.incrementAndGet();
+		else this._existingLinks.incrementAndGet();
+		// the delta table counts the links, Patient the bookings
+		if (result.linkAdded || !this._counted) this._patientBookings[patient]++;
+	}
+
+	private void cancel(ThreadLocalRandom rnd) throws SQLException {
+		int appointment = pick(this._appointments, this._hotAppointments, rnd);
+		WaitlistEngine.Result result = this._cancel.cancel(this._firstAppointment + appointment);
+		if (result.outcome == WaitlistEngine.Outcome.FREED) this._freed.incrementAndGet(appointment);
+		else if (result.outcome == WaitlistEngine.Outcome.PROMOTED) this._promoted.incrementAndGet(appointment);
+	}
+
+	//an index below n, one of the first hot ones for hotShare of the picks
+	private int pick(int n, int hot, ThreadLocalRandom rnd) {
+		return rnd.nextDouble() < this._hotShare ? rnd.nextInt(hot) : rnd.nextInt(n);
+	}
+
+	private void error(SQLException e) {
+		this._errors.incrementAndGet();
+		synchronized (this._errorSamples){
+			if (this._errorSamples.size() < 5) this._errorSamples.add(e.getSQLState() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Method to print the throughput, the conflict and retry rates and the
+	 * latencies of the run.
+	 *
+	 * @param opsPerSecond what run() returned
+	 */
+	public void report(double opsPerSecond) {
+		long bookings = this._booking.getBookingCount();
+		long attempts = bookings + this._booking.getRetryCount();
+		System.out.println(String.format("%d operations with %d sessions, %.0f operations/s, %d errors", this._operations.get(), this._sessions, opsPerSecond, this._errors.get()));
+		System.out.println(String.format("Bookings: %d booked, %d waitlisted, %d for a doctor already linked",
+			sum(this._booked), sum(this._waitlisted), this._existingLinks.get()));
+		System.out.println(String.format("Booking transactions: %d retried (%.1f%%), %d conflicts",
+			this._booking.getRetryCount(), attempts == 0 ? 0.0 : 100.0 * this._booking.getRetryCount() / attempts, this._booking.getConflictCount()));
+		if (this._cancel != null){
+			System.out.println(String.format("Cancellations: %d freed, %d promoted from the waitlist", sum(this._freed), sum(this._promoted)));
+		}//end if
+		for (String e : this._errorSamples) System.out.println("Error " + e);
+		System.out.print(this._metrics.dump());
+	}
+
+	/**
+	 * Method to compare the outcomes of the run with the tables.
+	 *
+	 * @return the number of violations, each of which is printed
+	 * @throws java.sql.SQLException when the tables could not be read
+	 */
+	public int verify() throws SQLException {
+		int last = this._firstAppointment + this._appointments - 1;
+		int violations = 0;
+
+		String[] status = new String[this._appointments];
+		for (List<String> row : this._esql.executeQueryAndReturnResult(STATUSES_SQL, this._firstAppointment, last)){
+			status[Integer.parseInt(row.get(0)) - this._firstAppointment] = row.get(1);
+		}//end for
+		int[] waiting = new int[this._appointments];
+		if (this._waitlist){
+			for (List<String> row : this._esql.executeQueryAndReturnResult(WAITING_SQL, this._firstAppointment, last)){
+				waiting[Integer.parseInt(row.get(0)) - this._firstAppointment] = Integer.parseInt(row.get(1));
+			}//end for
+		}//end if
+		for (int i = 0; i < this._appointments; i++){
+			int id = this._firstAppointment + i;
+			int holders = this._booked.get(i) - this._freed.get(i);
+			AppointmentStatus s = AppointmentStatus.of(status[i]);
+			boolean held = s == AppointmentStatus.AC || s == AppointmentStatus.WL;
+			if (holders < 0 || holders > 1 || held != (holders == 1)){
+				violations += violation("appointment " + id + " is " + status[i] + " after " + this._booked.get(i) + " bookings and " + this._freed.get(i) + " freeing cancellations");
+			}//end if
+			if (this._waitlist){
+				int queued = this._waitlisted.get(i) - this._promoted.get(i);
+				if (waiting[i] != queued){
+					violations += violation("appointment " + id + " has " + waiting[i] + " waiting entries, expected " + queued);
+				}//end if
+				if (waiting[i] > 0 && s != AppointmentStatus.WL){
+					violations += violation("appointment " + id + " is " + status[i] + " with " + waiting[i] + " waiting entries");
+				}//end if
+			}//end if
+		}//end for
+
+		// a rollup must not change a count, and the view adds what another process has not rolled up yet
+		if (this._counted) this._esql.getPatientCounter().rollUp();
+		for (List<String> row : this._esql.executeQueryAndReturnResult(this._counted ? PATIENT_COUNTED_SQL : PATIENT_COUNTS_SQL, this._firstPatient, this._firstPatient + this._patientBookings.length - 1)){
+			int patient = Integer.parseInt(row.get(0)) - this._firstPatient;
+			int stored = row.get(1) == null ? 0 : Integer.parseInt(row.get(1));
+			if (stored != this._patientBookings[patient]){
+				violations += violation("patient " + row.get(0) + " has number_of_appts " + stored + " after " + this._patientBookings[patient] + " bookings");
+			}//end if
+		}//end for
+		long links = this._esql.scalarLong(LINKS_SQL, 0, this._firstAppointment, last);
+		if (links != this._linksAdded.get()){
+			violations += violation(links + " has_appointment links for " + this._linksAdded.get() + " bookings that added one");
+		}//end if
+		if (this._esql.usesStatusSummary() && StatusSummary.verify(this._esql) > 0) violations++;
+		System.out.println(violations == 0 ? "All invariants hold." : violations + " invariant violations.");
+		return violations;
+	}
+
+	private static int violation(String message) {
+		System.out.println("Violation: " + message);
+		return 1;
+	}
+
+	/**
+	 * Method to remove the rows the simulation added.
+	 *
+	 * @throws java.sql.SQLException when they could not be removed
+	 */
+	public void cleanUp() throws SQLException {
+		int[][] ranges = {
+			{ this._firstAppointment, this._firstAppointment + this._appointments - 1 },
+			{ this._firstAppointment, this._firstAppointment + this._appointments - 1 },
+			{ this._firstAppointment, this._firstAppointment + this._appointments - 1 },
+			{ this._firstPatient, this._firstPatient + this._patientBookings.length - 1 },
+			{ this._firstDoctor, this._firstDoctor + this._doctors - 1 }
+		};
+		for (int i = 0; i < CLEANUP_SQL.length; i++){
+			if (i == 0 && !this._waitlist) continue;
+			this._esql.executeUpdate(CLEANUP_SQL[i], ranges[i][0], ranges[i][1]);
+		}//end for
+	}
+
+	private static long sum(AtomicIntegerArray counts) {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) total += counts.get(i);
+		return total;
+	}
+}//end ContentionSimulator
@@ -11,9 +11,7 @@
  */
 
 
-import java.sql.DriverManager;
-import java.sql.Connection;
-import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -21,8 +19,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
 /**
  * This class defines a simple embedded SQL utility class that is designed to
@@ -31,9 +37,43 @@ import java.util.ArrayList;
  */
 
 public class DBproject{
-	//reference to physical database connection
-	private Connection _connection = null;
-	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	//pool of physical database connections, each with its own statement cache
+	private ConnectionPool _pool = null;
+	//transactional booking path of option 4
+	private BookingEngine _booking = null;
+	//cancellations and waitlist promotions
+	private WaitlistEngine _waitlist = null;
+	//background rollup of the patient_appts_delta rows into Patient
+	private PatientCounter _patients = null;
+	private ReferenceCache _reference = null;
+	private AvailabilityIndex _availability = null;
+	private Boolean _summary = null;
+	private Boolean _queued = null;
+	private Boolean _counted = null;
+	//latency, row and error counts of the operations and statements
+	private final QueryMetrics _metrics = new QueryMetrics();
+	//rows fetched per round trip by streamed queries
+	static final int FETCH_SIZE = Integer.getInteger("dbproject.fetchSize", 500);
+	//rows per page of options 5, 6 and 8, 0 prints every row at once
+	static final int PAGE_SIZE = Integer.getInteger("dbproject.pageSize", 20);
+	//connect and prepare in the background while the menu or command starts
+	static final boolean FAST_START = Boolean.getBoolean("dbproject.fastStart");
+	//pause between two background rollups of the patient counts
+	static final long PATIENT_ROLLUP_MS = Long.getLong("dbproject.patients.rollupMs", 5000L);
+	//print the time from JVM start to the first statement result, once
+	private static final AtomicBoolean REPORT_FIRST_RESULT = new AtomicBoolean(Boolean.getBoolean("dbproject.reportStartup"));
+	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in)){
+		// the time the clerk takes to type is not part of an operation's latency
+		@Override
+		public String readLine() throws IOException {
+			long start = System.nanoTime();
+			try{
+				return super.readLine();
+			}finally{
+				QueryMetrics.waited(System.nanoTime() - start);
+			}
+		}
+	};
 	
 	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException {
 		System.out.print("Connecting to database...");
@@ -42,8 +82,13 @@ public class DBproject{
 			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
 			System.out.println ("Connection URL: " + url + "\n");
 			
-			// obtain a physical connection
-	        this._connection = DriverManager.getConnection(url, user, passwd);
+			// obtain the pool of physical connections
+	        this._pool = new ConnectionPool(url, user, passwd, FAST_START);
+	        if (FAST_START) {
+	        	prestart();
+	        	System.out.println("Continuing while it connects");
+	        	return;
+	        }//end if
 	        System.out.println("Done");
 		}catch(Exception e){
 			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
@@ -52,22 +97,107 @@ public class DBproject{
 		}
 	}
 	
+	/**
+	 * Method to open the first connection on a background thread and
+	 * prepare the statements options 1-8 run on it, so a fast start shows
+	 * the menu or starts its command without waiting for the database.
+	 * Then reads whether the status summary is installed, starts the
+	 * reference cache and checks the indexes, all of which the first
+	 * operations would otherwise wait for.
+	 */
+	private void prestart () {
+		Thread t = new Thread (() -> {
+			try{
+				this._pool.execute (conn -> {
+					for (String sql : HOT_STATEMENTS){
+						try{
+							conn.warm (sql);
+						}catch (SQLException e){
+							// ignored, e.g. doctor_status_summary is not installed.
+						}//end try
+					}//end for
+					return null;
+				});
+				usesStatusSummary ();
+				getReferenceCache ();
+				if (!"false".equals (System.getProperty ("dbproject.checkIndexes"))) IndexAdvisor.warnMissing (this);
+				maintainPartitions ();
+			}catch (Exception e){
+				System.err.println ("Error - Unable to Connect to Database: " + e.getMessage ());
+				System.err.println ("Make sure you started postgres on this machine");
+			}//end try
+		}, PRESTART_THREAD);
+		t.setDaemon (true);
+		t.start ();
+	}
+
+	//the statements of options 1-8, with both variants of 7 and 8 and of 5, 6 and 8 paged or not
+	private static final String[] HOT_STATEMENTS = {
+		MenuQueries.ADD_DOCTOR,
+		MenuQueries.ADD_PATIENT,
+		MenuQueries.ADD_APPOINTMENT,
+		MenuQueries.BOOK_PREPARE,
+		MenuQueries.BOOK_TRANSITION,
+		PAGE_SIZE > 0 ? MenuQueries.APPOINTMENTS_OF_DOCTOR_AFTER : MenuQueries.APPOINTMENTS_OF_DOCTOR,
+		PAGE_SIZE > 0 ? MenuQueries.AVAILABLE_OF_DEPARTMENT_AFTER : MenuQueries.AVAILABLE_OF_DEPARTMENT,
+		MenuQueries.STATUS_PER_DOCTOR,
+		MenuQueries.STATUS_PER_DOCTOR_SUMMARY,
+		PAGE_SIZE > 0 ? MenuQueries.PATIENTS_PER_DOCTOR_AFTER : MenuQueries.PATIENTS_PER_DOCTOR,
+		PAGE_SIZE > 0 ? MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY_AFTER : MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY
+	};
+
+	private static final String PRESTART_THREAD = "prestart";
+
+	static final int PARTITION_MONTHS_AHEAD = Integer.getInteger ("dbproject.partitions.monthsAhead", 12);
+
+	/**
+	 * Method to create the monthly Appointment partitions of the next
+	 * months, when sql/partition.sql is installed, so appointments can be
+	 * added that far ahead.  Errors are printed, not thrown.
+	 */
+	void maintainPartitions () {
+		if (PARTITION_MONTHS_AHEAD < 0) return;
+		try{
+			long created = AppointmentPartitions.maintain (this, PARTITION_MONTHS_AHEAD);
+			if (created > 0) System.err.println ("Created " + created + " monthly appointment partitions");
+		}catch (SQLException e){
+			System.err.println ("Appointment partitions not maintained: " + e.getMessage ());
+		}//end try
+	}
+
+	//prints how long after JVM start the first statement of the menu or command finished, when asked to
+	private static void reportFirstResult () {
+		if (!REPORT_FIRST_RESULT.get () || PRESTART_THREAD.equals (Thread.currentThread ().getName ())) return;
+		if (!REPORT_FIRST_RESULT.compareAndSet (true, false)) return;
+		long millis = System.currentTimeMillis () - ManagementFactory.getRuntimeMXBean ().getStartTime ();
+		System.err.println ("First result " + millis + " ms after JVM start" + (FAST_START ? " (fast start)" : ""));
+	}
+
 	/**
 	 * Method to execute an update SQL statement.  Update SQL instructions
 	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
 	 * 
-	 * @param sql the input SQL string
+	 * @param sql the input SQL string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders in order
 	 * @throws java.sql.SQLException when update failed
 	 * */
-	public void executeUpdate (String sql) throws SQLException { 
-		// creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		// issues the update instruction
-		stmt.executeUpdate (sql);
+	public void executeUpdate (String sql, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		// borrows a connection for the length of the statement
+		PooledConnection conn = this._pool.borrow ();
+		int rows = -1;
+		try{
+			// fetches the cached statement object for this template
+			PreparedStatement stmt = conn.prepare (sql);
+			StatementCache.bind (stmt, params);
 
-		// close the instruction
-	    stmt.close ();
+			// issues the update instruction
+			rows = stmt.executeUpdate ();
+		}finally{
+			this._pool.release (conn);
+			this._metrics.query (sql, start, rows, rows < 0);
+			if (rows >= 0) reportFirstResult ();
+		}
 	}//end executeUpdate
 
 	/**
@@ -75,42 +205,93 @@ public class DBproject{
 	 * method issues the query to the DBMS and outputs the results to
 	 * standard out.
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders in order
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public int executeQueryAndPrintResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		//streams the result set through one buffered writer in the -Ddbproject.format format
+		ResultRenderer out = ResultRenderer.toConsole (ResultRenderer.defaultFormat ());
+		try{
+			return (int) executeQueryAndStream (query, out, params);
+		}finally{
+			try{
+				out.close ();
+			}catch (IOException e){
+				// ignored.
+			}//end try
+		}
+	}
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT) and
+	 * write the result to a file, or to standard out for "-".
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param format the output format
+	 * @param file the file to write, or "-"
+	 * @param params the values bound to the placeholders in order
+	 * @return the number of rows written
+	 * @throws java.sql.SQLException when failed to execute the query
+	 * @throws java.io.IOException when failed to write the file
+	 */
+	public long exportQuery (String query, ResultRenderer.Format format, String file, Object... params) throws SQLException, IOException {
+		ResultRenderer out = file.equals ("-") ? ResultRenderer.toConsole (format) : ResultRenderer.toFile (format, new File (file));
+		try{
+			return executeQueryAndStream (query, out, params);
+		}catch (UncheckedIOException e){
+			throw e.getCause ();
+		}finally{
+			out.close ();
+		}
+	}
 
-		/*
-		 *  obtains the metadata object for the returned result set.  The metadata
-		 *  contains row and column info.
-		 */
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
-		
-		//iterates through the result set and output them to standard out.
-		boolean outputHeader = true;
-		while (rs.next()){
-			if(outputHeader){
-				for(int i = 1; i <= numCol; i++){
-					System.out.print(rsmd.getColumnName(i) + "\t");
-			    }
-			    System.out.println();
-			    outputHeader = false;
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT) and
+	 * hand each row to a callback as it arrives.  The query runs through a
+	 * server-side cursor (autocommit off and a fetch size), so only one
+	 * batch of rows is held in memory no matter how large the result is.
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param handler receives every row in order
+	 * @param params the values bound to the placeholders in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long executeQueryAndStream (String query, Row.Handler handler, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		PooledConnection conn = this._pool.borrow ();
+		Row row = null;
+		boolean ok = false;
+		try{
+			// cursors only stream inside a transaction
+			conn.getConnection ().setAutoCommit (false);
+
+			//fetches the cached statement object for this template
+			PreparedStatement stmt = conn.prepare (query);
+			stmt.setFetchSize (FETCH_SIZE);
+			StatementCache.bind (stmt, params);
+
+			//issues the query instruction
+			ResultSet rs = stmt.executeQuery ();
+			try{
+				row = new Row (rs);
+				if (handler instanceof Row.ColumnHandler) ((Row.ColumnHandler) handler).columns (row);
+				while (row.next ()){
+					handler.handle (row);
+				}//end while
+				ok = true;
+				return row.getRowNumber ();
+			}finally{
+				rs.close ();
 			}
-			for (int i=1; i<=numCol; ++i)
-				System.out.print (rs.getString (i) + "\t");
-			System.out.println ();
-			++rowCount;
-		}//end while
-		stmt.close ();
-		return rowCount;
+		}finally{
+			// release rolls back the read-only transaction
+			this._pool.release (conn);
+			this._metrics.query (query, start, row == null ? 0 : row.getRowNumber (), !ok);
+			if (ok) reportFirstResult ();
+		}
 	}
 	
 	/**
@@ -118,92 +299,477 @@ public class DBproject{
 	 * method issues the query to the DBMS and returns the results as
 	 * a list of records. Each record in turn is a list of attribute values
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders in order
 	 * @return the query result as a list of records
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
-		//creates a statement object 
-		Statement stmt = this._connection.createStatement (); 
-		
-		//issues the query instruction 
-		ResultSet rs = stmt.executeQuery (query); 
-	 
-		/*
-		 * obtains the metadata object for the returned result set.  The metadata 
-		 * contains row and column info. 
-		*/ 
-		ResultSetMetaData rsmd = rs.getMetaData (); 
-		int numCol = rsmd.getColumnCount (); 
-		int rowCount = 0; 
-	 
-		//iterates through the result set and saves the data returned by the query. 
-		boolean outputHeader = false;
-		List<List<String>> result  = new ArrayList<List<String>>(); 
-		while (rs.next()){
-			List<String> record = new ArrayList<String>(); 
-			for (int i=1; i<=numCol; ++i) 
-				record.add(rs.getString (i)); 
-			result.add(record); 
-		}//end while 
-		stmt.close (); 
-		return result; 
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		PooledConnection conn = this._pool.borrow ();
+		List<List<String>> result = null;
+		boolean ok = false;
+		try{
+			//fetches the cached statement object for this template 
+			PreparedStatement stmt = conn.prepare (query);
+			StatementCache.bind (stmt, params);
+			
+			//issues the query instruction 
+			ResultSet rs = stmt.executeQuery (); 
+		 
+			/*
+			 * obtains the metadata object for the returned result set.  The metadata 
+			 * contains row and column info. 
+			*/ 
+			ResultSetMetaData rsmd = rs.getMetaData (); 
+			int numCol = rsmd.getColumnCount (); 
+		 
+			//iterates through the result set and saves the data returned by the query. 
+			result  = new ArrayList<List<String>>(); 
+			try{
+				while (rs.next()){
+					List<String> record = new ArrayList<String>(); 
+					for (int i=1; i<=numCol; ++i) 
+						record.add(rs.getString (i)); 
+					result.add(record); 
+				}//end while 
+			}finally{
+				rs.close (); 
+			}
+			ok = true;
+			return result; 
+		}finally{
+			this._pool.release (conn);
+			this._metrics.query (query, start, result == null ? 0 : result.size (), !ok);
+			if (ok) reportFirstResult ();
+		}
 	}//end executeQueryAndReturnResult
 	
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and returns the number of results
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders in order
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public int executeQuery (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+	public int executeQuery (String query, Object... params) throws SQLException {
+		return (int) count (query, params);
+	}
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+	/**
+	 * Method to check whether a query returns at least one row.  The check
+	 * runs as SELECT EXISTS (...) on the server, which stops at the first
+	 * matching row, and only a boolean comes back.
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders in order
+	 * @return true when the query returns a row
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean exists (String query, Object... params) throws SQLException {
+		String sql = "SELECT EXISTS (" + stripTerminator (query) + ")";
+		long start = System.nanoTime ();
+		PooledConnection conn = this._pool.borrow ();
+		boolean ok = false;
+		try{
+			PreparedStatement stmt = conn.prepare (sql);
+			StatementCache.bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			try{
+				boolean found = rs.next () && rs.getBoolean (1);
+				ok = true;
+				return found;
+			}finally{
+				rs.close ();
+			}
+		}finally{
+			this._pool.release (conn);
+			this._metrics.query (sql, start, 1, !ok);
+			if (ok) reportFirstResult ();
+		}
+	}
 
-		int rowCount = 0;
+	/**
+	 * Method to count the rows of a query.  The counting is done on the
+	 * server with SELECT COUNT(*), so the rows never reach the client.
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders in order
+	 * @return the number of rows the query returns
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long count (String query, Object... params) throws SQLException {
+		return scalarLong ("SELECT COUNT(*) FROM (" + stripTerminator (query) + ") AS q", 0, params);
+	}
 
-		//iterates through the result set and count nuber of results.
-		while(rs.next()){
-			rowCount++;
-		}//end while
-		stmt.close ();
-		return rowCount;
+	/**
+	 * Method to fetch the first column of the first row of a query as a
+	 * number.  The server is asked for a single row only.
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param defaultValue returned when there is no row or the value is NULL
+	 * @param params the values bound to the placeholders in order
+	 * @return the value of the first column of the first row
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long scalarLong (String query, long defaultValue, Object... params) throws SQLException {
+		String value = scalar (query, params);
+		return value == null ? defaultValue : Long.parseLong (value);
+	}
+
+	/**
+	 * Method to fetch the first column of the first row of a query.  The
+	 * server is asked for a single row only.
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders in order
+	 * @return the value of the first column of the first row, or null when
+	 *         there is no row or the value is NULL
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public String scalar (String query, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		PooledConnection conn = this._pool.borrow ();
+		boolean found = false;
+		boolean ok = false;
+		try{
+			PreparedStatement stmt = conn.prepare (query);
+			StatementCache.bind (stmt, params);
+			// limits the portal to one row on the server
+			stmt.setMaxRows (1);
+			ResultSet rs = null;
+			try{
+				rs = stmt.executeQuery ();
+				found = rs.next ();
+				String value = found ? rs.getString (1) : null;
+				ok = true;
+				return value;
+			}finally{
+				if (rs != null) rs.close ();
+				stmt.setMaxRows (0);
+			}
+		}finally{
+			this._pool.release (conn);
+			this._metrics.query (query, start, found ? 1 : 0, !ok);
+			if (ok) reportFirstResult ();
+		}
+	}
+
+	//drops a trailing ';' so the query can be nested in a subquery
+	private static String stripTerminator (String query) {
+		String q = query.trim ();
+		while (q.endsWith (";")) q = q.substring (0, q.length () - 1).trim ();
+		return q;
 	}
 	
 	/**
 	 * Method to fetch the last value from sequence. This
 	 * method issues the query to the DBMS and returns the current 
-	 * value of sequence used for autogenerated keys
+	 * value of sequence used for autogenerated keys.  currval is local
+	 * to a session, so the query runs on the connection that called
+	 * nextval.
 	 * 
+	 * @param conn the connection that advanced the sequence
 	 * @param sequence name of the DB sequence
-	 * @return current value of a sequence
+	 * @return current value of a sequence, or -1 if there is none
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
 	
-	public int getCurrSeqVal(String sequence) throws SQLException {
-		Statement stmt = this._connection.createStatement ();
-		
-		ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-		if (rs.next()) return rs.getInt(1);
-		return -1;
+	public int getCurrSeqVal(PooledConnection conn, String sequence) throws SQLException {
+		PreparedStatement stmt = conn.prepare ("SELECT currval(?::regclass)");
+		StatementCache.bind (stmt, sequence);
+		ResultSet rs = stmt.executeQuery ();
+		try{
+			return rs.next () ? rs.getInt (1) : -1;
+		}finally{
+			rs.close ();
+		}
+	}
+
+	/**
+	 * Method to run several statements on one borrowed connection, e.g.
+	 * inside a single transaction.  The connection goes back to the pool
+	 * when the work returns; an uncommitted transaction is rolled back.
+	 * 
+	 * @param work the statements to run
+	 * @return whatever the work returned
+	 * @throws java.sql.SQLException when the work failed
+	 */
+	public <T> T withConnection(ConnectionPool.Callback<T> work) throws SQLException {
+		return this._pool.execute (work);
+	}
+
+	/**
+	 * Method to return the connection pool, e.g. to report its wait and
+	 * usage metrics.
+	 * 
+	 * @return the connection pool of this session
+	 */
+	public ConnectionPool getPool() {
+		return this._pool;
+	}
+
+	/**
+	 * Method to return the latency, row and error counters of this session.
+	 * 
+	 * @return the metrics of this session
+	 */
+	public QueryMetrics getMetrics() {
+		return this._metrics;
+	}
+
+	/**
+	 * Method to return the booking engine used by option 4, creating it on
+	 * first use.
+	 * 
+	 * @return the booking engine of this session
+	 * @throws java.sql.SQLException when its reference cache could not start
+	 */
+	public synchronized BookingEngine getBookingEngine() throws SQLException {
+		if (this._booking == null){
+			this._booking = new BookingEngine(this._pool, getReferenceCache());
+			this._booking.setMetrics(this._metrics);
+			this._booking.setWaitlist(usesWaitlist());
+			this._booking.setPatientCounter(usesPatientCounter());
+			if (this._availability != null) this._booking.setListener(this._availability);
+			if (usesPatientCounter()) getPatientCounter().start(PATIENT_ROLLUP_MS);
+		}//end if
+		return this._booking;
+	}
+
+	/**
+	 * Method to return the counter that folds the patient_appts_delta rows
+	 * into Patient.number_of_appts, creating it on first use.
+	 *
+	 * @return the patient counter of this session
+	 * @throws java.sql.SQLException when the delta table does not exist
+	 */
+	public synchronized PatientCounter getPatientCounter() throws SQLException {
+		if (this._patients == null){
+			if (!usesPatientCounter()) throw new SQLException("The patient_appts_delta table is missing, recreate the database with create.sql");
+			this._patients = new PatientCounter(this._pool);
+			this._patients.setMetrics(this._metrics);
+		}//end if
+		return this._patients;
+	}
+
+	/**
+	 * Method to tell whether the patient_appts_delta table exists, checking
+	 * once.
+	 *
+	 * @return true when bookings leave number_of_appts to the delta table
+	 */
+	public synchronized boolean usesPatientCounter() {
+		if (this._counted == null){
+			try{
+				this._counted = PatientCounter.isInstalled(this);
+			}catch (SQLException e){
+				this._counted = false;
+			}//end try
+		}//end if
+		return this._counted;
 	}
 
 	/**
-	 * Method to close the physical connection if it is open.
+	 * Method to return the engine that cancels bookings and promotes the
+	 * waitlist, creating it on first use.
+	 *
+	 * @return the waitlist engine of this session
+	 * @throws java.sql.SQLException when the waitlist table does not exist
+	 */
+	public synchronized WaitlistEngine getWaitlistEngine() throws SQLException {
+		if (this._waitlist == null){
+			if (!usesWaitlist()) throw new SQLException("The waitlist table is missing, recreate the database with create.sql");
+			this._waitlist = new WaitlistEngine(this._pool);
+			this._waitlist.setMetrics(this._metrics);
+			if (this._availability != null) this._waitlist.setListener(this._availability);
+		}//end if
+		return this._waitlist;
+	}
+
+	/**
+	 * Method to tell whether the waitlist table exists, checking once.
+	 *
+	 * @return true when waitlisted bookings can be queued
+	 */
+	public synchronized boolean usesWaitlist() {
+		if (this._queued == null){
+			try{
+				this._queued = WaitlistEngine.isInstalled(this);
+			}catch (SQLException e){
+				this._queued = false;
+			}//end try
+		}//end if
+		return this._queued;
+	}
+
+	/**
+	 * Method to return the cache of Department, Doctor and Hospital rows,
+	 * creating it and its listener on first use.
+	 * 
+	 * @return the reference cache of this session
+	 * @throws java.sql.SQLException when the cache could not start listening
+	 */
+	public synchronized ReferenceCache getReferenceCache() throws SQLException {
+		if (this._reference == null){
+			this._reference = new ReferenceCache(this._pool);
+		}//end if
+		return this._reference;
+	}
+
+	/**
+	 * Method to start building the in-memory index of available
+	 * appointments used by option 6, unless -Ddbproject.availability=false.
+	 */
+	public synchronized void startAvailabilityIndex() {
+		if (this._availability != null || "false".equals(System.getProperty("dbproject.availability"))) return;
+		this._availability = new AvailabilityIndex(this);
+		if (this._booking != null) this._booking.setListener(this._availability);
+		if (this._waitlist != null) this._waitlist.setListener(this._availability);
+		this._availability.start();
+	}
+
+	/**
+	 * Method to return the index of available appointments.
+	 * 
+	 * @return the index, or null when it was not started
+	 */
+	public synchronized AvailabilityIndex getAvailabilityIndex() {
+		return this._availability;
+	}
+
+	/**
+	 * Method to list the available appointments of a department on a date
+	 * (option 6): from the availability index once it is built, otherwise
+	 * with a query that takes the department's doctors from the reference
+	 * cache when it is enabled.
+	 * 
+	 * @param dname the department name
+	 * @param date the appointment date
+	 * @return the available appointments
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<AvailabilityIndex.Slot> listAvailable (String dname, java.sql.Date date) throws SQLException {
+		ReferenceCache reference = getReferenceCache ();
+		AvailabilityIndex index = getAvailabilityIndex ();
+		if (index != null && index.isReady ()){
+			return index.available (reference.department (dname).deptIds, date);
+		}//end if
+		final List<AvailabilityIndex.Slot> slots = new ArrayList<AvailabilityIndex.Slot>();
+		Row.Handler collect = row -> slots.add (new AvailabilityIndex.Slot (row.getInt (1), row.getString (2)));
+		if (reference.isEnabled ()){
+			// the department's doctors are known, skip the Doctor and Department joins
+			executeQueryAndStream (MenuQueries.AVAILABLE_OF_DOCTORS, collect, date, reference.department (dname).doctorIds);
+		}else{
+			executeQueryAndStream (MenuQueries.AVAILABLE_OF_DEPARTMENT, collect, date, dname);
+		}//end if
+		return slots;
+	}
+
+	/**
+	 * Method to page through the active and available appointments of a
+	 * doctor in a date range (option 5), ordered by appnt_ID.
+	 * 
+	 * @param did the doctor_ID
+	 * @param from the first date
+	 * @param to the last date
+	 * @param pageSize the rows per page
+	 * @return the pager, positioned before the first page
+	 */
+	public KeysetPager pageAppointmentsOfDoctor (int did, java.sql.Date from, java.sql.Date to, int pageSize) {
+		return KeysetPager.of (this, MenuQueries.APPOINTMENTS_OF_DOCTOR_AFTER, MenuQueries.APPOINTMENTS_OF_DOCTOR_BEFORE, 1, pageSize, did, from, to);
+	}
+
+	/**
+	 * Method to page through the available appointments of a department on
+	 * a date (option 6), ordered by appnt_ID.  Pages come from the same
+	 * source as listAvailable.
+	 * 
+	 * @param dname the department name
+	 * @param date the appointment date
+	 * @param pageSize the rows per page
+	 * @return the pager, positioned before the first page
+	 * @throws java.sql.SQLException when failed to look up the department
+	 */
+	public KeysetPager pageAvailable (String dname, final java.sql.Date date, int pageSize) throws SQLException {
+		ReferenceCache reference = getReferenceCache ();
+		final AvailabilityIndex index = getAvailabilityIndex ();
+		if (index != null && index.isReady ()){
+			final Integer[] deptIds = reference.department (dname).deptIds;
+			return new KeysetPager (pageSize){
+				protected void fetch (boolean forward, int key, int limit, Sink sink) {
+					sink.columns (new String[] { "appnt_id", "time_slot" }, new boolean[] { true, false });
+					for (AvailabilityIndex.Slot slot : index.page (deptIds, date, forward, key, limit)){
+						sink.row (slot.appointmentId, new String[] { Integer.toString (slot.appointmentId), slot.timeSlot });
+					}//end for
+				}
+			};
+		}//end if
+		if (reference.isEnabled ()){
+			return KeysetPager.of (this, MenuQueries.AVAILABLE_OF_DOCTORS_AFTER, MenuQueries.AVAILABLE_OF_DOCTORS_BEFORE, 1, pageSize, date, reference.department (dname).doctorIds);
+		}//end if
+		return KeysetPager.of (this, MenuQueries.AVAILABLE_OF_DEPARTMENT_AFTER, MenuQueries.AVAILABLE_OF_DEPARTMENT_BEFORE, 1, pageSize, date, dname);
+	}
+
+	/**
+	 * Method to page through the patient counts per doctor with a status
+	 * (option 8), ordered by doctor_ID.
+	 * 
+	 * @param status the appointment status
+	 * @param pageSize the rows per page
+	 * @return the pager, positioned before the first page
+	 */
+	public KeysetPager pagePatientCounts (String status, int pageSize) {
+		if (usesStatusSummary ()){
+			return KeysetPager.of (this, MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY_AFTER, MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY_BEFORE, 1, pageSize, status);
+		}//end if
+		return KeysetPager.of (this, MenuQueries.PATIENTS_PER_DOCTOR_AFTER, MenuQueries.PATIENTS_PER_DOCTOR_BEFORE, 1, pageSize, status);
+	}
+
+	/**
+	 * Method to tell whether options 7 and 8 can read doctor_status_summary,
+	 * checked once per session.
+	 * 
+	 * @return true when the summary table and its triggers exist
+	 */
+	public synchronized boolean usesStatusSummary() {
+		if (this._summary == null){
+			try{
+				this._summary = StatusSummary.isInstalled(this);
+			}catch (SQLException e){
+				this._summary = false;
+			}//end try
+		}//end if
+		return this._summary;
+	}
+
+	/**
+	 * Method to close the pooled connections if they are open.
 	 */
 	public void cleanup(){
-		try{
-			if (this._connection != null){
-				this._connection.close ();
+		synchronized (this){
+			if (this._availability != null){
+				this._availability.close ();
 			}//end if
-		}catch (SQLException e){
-	         // ignored.
-		}//end try
+			if (this._reference != null){
+				this._reference.close ();
+			}//end if
+			if (this._patients != null){
+				this._patients.close ();
+				// fold what this session booked since the last background rollup
+				try{
+					this._patients.rollUp ();
+				}catch (SQLException e){
+					// ignored.
+				}//end try
+			}//end if
+		}
+		if (this._pool != null){
+			this._pool.close ();
+		}//end if
+		this._metrics.close ();
 	}//end cleanup
 
 	/**
@@ -212,20 +778,24 @@ public class DBproject{
 	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
 	 */
 	public static void main (String[] args) {
-		if (args.length != 3) {
+		if (args.length < 3) {
 			System.err.println (
 				"Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () +
-		            " <dbname> <port> <user>");
+		            " <dbname> <port> <user> [<command> [<args>]]");
+			printCommands();
 			return;
 		}//end if
 		
 		DBproject esql = null;
+		// a failed command exits nonzero so scripts and cron can tell
+		boolean failed = false;
 		
 		try{
 			System.out.println("(1)");
 			
 			try {
-				Class.forName("org.postgresql.Driver");
+				// a fast start lets DriverManager load the driver on the background connect
+				if (!FAST_START) Class.forName("org.postgresql.Driver");
 			}catch(Exception e){
 
 				System.out.println("Where is your PostgreSQL JDBC Driver? " + "Include in your library path!");
@@ -240,7 +810,20 @@ public class DBproject{
 			
 			esql = new DBproject (dbname, dbport, user, "");
 			
-			boolean keepon = true;
+			if (!FAST_START && !"false".equals(System.getProperty("dbproject.checkIndexes"))) {
+				IndexAdvisor.warnMissing(esql);
+			}//end if
+			if (!FAST_START) esql.maintainPartitions();
+
+			// a command after the login arguments runs without the menu
+			boolean keepon = args.length == 3;
+			if (!keepon) {
+				runCommand(esql, Arrays.copyOfRange(args, 3, args.length));
+			} else {
+				esql.startAvailabilityIndex();
+			}//end if
+			final DBproject session = esql;
+			final QueryMetrics metrics = esql.getMetrics();
 			while(keepon){
 				System.out.println("MAIN MENU");
 				System.out.println("---------");
@@ -255,22 +838,31 @@ public class DBproject{
 				System.out.println("9. < EXIT");
 				
 				switch (readChoice()){
-					case 1: AddDoctor(esql); break;
-					case 2: AddPatient(esql); break;
-					case 3: AddAppointment(esql); break;
-					case 4: MakeAppointment(esql); break;
-					case 5: ListAppointmentsOfDoctor(esql); break;
-					case 6: ListAvailableAppointmentsOfDepartment(esql); break;
-					case 7: ListStatusNumberOfAppointmentsPerDoctor(esql); break;
-					case 8: FindPatientsCountWithStatus(esql); break;
+					case 1: metrics.operation("AddDoctor", () -> AddDoctor(session)); break;
+					case 2: metrics.operation("AddPatient", () -> AddPatient(session)); break;
+					case 3: metrics.operation("AddAppointment", () -> AddAppointment(session)); break;
+					case 4: metrics.operation("MakeAppointment", () -> MakeAppointment(session)); break;
+					case 5: metrics.operation("ListAppointmentsOfDoctor", () -> ListAppointmentsOfDoctor(session)); break;
+					case 6: metrics.operation("ListAvailableAppointmentsOfDepartment", () -> ListAvailableAppointmentsOfDepartment(session)); break;
+					case 7: metrics.operation("ListStatusNumberOfAppointmentsPerDoctor", () -> ListStatusNumberOfAppointmentsPerDoctor(session)); break;
+					case 8: metrics.operation("FindPatientsCountWithStatus", () -> FindPatientsCountWithStatus(session)); break;
 					case 9: keepon = false; break;
 				}
 			}
 		}catch(Exception e){
 			System.err.println (e.getMessage ());
+			failed = args.length > 3;
 		}finally{
 			try{
 				if(esql != null) {
+					long[] cache = esql.getPool().getStatementCacheCounters();
+					System.out.println("Connection pool: " + esql.getPool());
+					System.out.println("Statement cache: hits=" + cache[0] + " misses=" + cache[1] + " evictions=" + cache[2]);
+					synchronized (esql){
+						if (esql._reference != null) System.out.println("Reference cache: " + esql._reference);
+						if (esql._availability != null) System.out.println("Availability index: " + esql._availability);
+					}
+					System.out.print(esql.getMetrics().dump());
 					System.out.print("Disconnecting from database...");
 					esql.cleanup ();
 					System.out.println("Done\n\nBye !");
@@ -279,6 +871,7 @@ public class DBproject{
 				// ignored.
 			}
 		}
+		if (failed) System.exit(1);
 	}
 
 	public static int readChoice() {
@@ -297,6 +890,241 @@ public class DBproject{
 		return input;
 	}//end readChoice
 
+	/**
+	 * Prints the non-interactive commands accepted after the login arguments.
+	 */
+	public static void printCommands() {
+		System.err.println("Commands:");
+		System.err.println("  load [<dir>]                 stream the CSV files of <dir> (default ../data) into the tables with COPY");
+		System.err.println("  batch [<file>|-] [<commit>]  run JSON Lines operations (AddDoctor, AddPatient, AddAppointment, MakeAppointment), committing every <commit> (default 1000)");
+		System.err.println("  sync [<file>|-] [update|nothing]  upsert the AddDoctor, AddPatient and AddAppointment lines of a JSON Lines file; existing keys are updated (default) or kept");
+		System.err.println("  summary verify|rebuild        compare doctor_status_summary with the base tables, or recompute it");
+		System.err.println("  serve [<port>]               serve the menu operations as HTTP/JSON on localhost:<port> (default 8166) until interrupted");
+		System.err.println("  explain                      print the EXPLAIN plan of each menu query");
+		System.err.println("  export <format> <file>|- <listing> [<args>]  write a listing as tsv, csv, jsonl or table; listings: doctor <id> <from> <to>,");
+		System.err.println("                               available <dept> <date>, status, patients <status>, history <dept>,");
+		System.err.println("                               overlapping <date> <slot> (needs sql/compact.sql)");
+		System.err.println("  cancel <appnt_ID>             cancel the booking of an appointment; the first patient on its waitlist gets it");
+		System.err.println("  promote [<workers>]           give freed appointments to their waitlists with <workers> (default 4) in parallel");
+		System.err.println("  simulate [<sessions>] [<seconds>] [keep]  book hot appointments from <sessions> (default 16) clerks for <seconds> (default 30), then check the tables");
+		System.err.println("  patients rollup|reconcile     fold the pending patient_appts_delta rows into number_of_appts, or recount them from has_appointment");
+		System.err.println("  partitions maintain [<months>]  create the monthly Appointment partitions through <months> ahead (default 12)");
+		System.err.println("  partitions archive <date> [drop]  detach the months ending by <date> with only past appointments into schema appointment_archive, or drop them");
+		System.err.println("  generate <scale> [<seed>] [<dir>]  generate synthetic data; into CSV files of <dir>, else straight into the tables");
+	}//end printCommands
+
+	/**
+	 * Runs one non-interactive command instead of the menu.
+	 * 
+	 * @param esql the database session
+	 * @param cmd the command name followed by its arguments
+	 * @throws java.lang.Exception when the command failed
+	 */
+	public static void runCommand(DBproject esql, String[] cmd) throws Exception {
+		switch (cmd[0]){
+			case "load": {
+				File dir = new File(cmd.length > 1 ? cmd[1] : "../data");
+				long start = System.nanoTime();
+				long rows = 0;
+				for (BulkLoader.Result r : new BulkLoader(esql.getPool()).loadDirectory(dir)) rows += r.rows;
+				long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+				System.out.println("Loaded " + rows + " rows in " + millis + " ms (" + (rows * 1000 / millis) + " rows/s)");
+				break;
+			}
+			case "generate": {
+				if (cmd.length < 2) {
+					printCommands();
+					break;
+				}
+				SyntheticDataGenerator gen = new SyntheticDataGenerator(cmd.length > 2 ? Long.parseLong(cmd[2]) : 166L, Double.parseDouble(cmd[1]));
+				if (cmd.length > 3) {
+					gen.writeFiles(new File(cmd[3]));
+				} else {
+					new BulkLoader(esql.getPool()).load(gen.asSources());
+				}
+				break;
+			}
+			case "batch": {
+				boolean stdin = cmd.length < 2 || cmd[1].equals("-");
+				BufferedReader ops = stdin ? in : new BufferedReader(new FileReader(cmd[1]), 1 << 16);
+				try {
+					new BatchRunner(esql, cmd.length > 2 ? Integer.parseInt(cmd[2]) : 1000).run(ops);
+				} finally {
+					if (!stdin) ops.close();
+				}
+				break;
+			}
+			case "sync": {
+				boolean stdin = cmd.length < 2 || cmd[1].equals("-");
+				BulkWriter.Conflict conflict = cmd.length > 2 ? BulkWriter.Conflict.valueOf(cmd[2].toUpperCase()) : BulkWriter.Conflict.UPDATE;
+				BufferedReader rows = stdin ? in : new BufferedReader(new FileReader(cmd[1]), 1 << 16);
+				long start = System.nanoTime();
+				BulkWriter writer = new BulkWriter(esql.getPool(), conflict);
+				try {
+					writer.sync(rows);
+				} finally {
+					writer.close();
+					if (!stdin) rows.close();
+				}
+				long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+				System.out.println("Wrote " + writer.getWrittenCount() + " rows in " + millis + " ms");
+				break;
+			}
+			case "summary":
+				if (cmd.length > 1 && cmd[1].equals("rebuild")) {
+					System.out.println("Rebuilt doctor_status_summary with " + StatusSummary.rebuild(esql) + " rows");
+				} else {
+					StatusSummary.verify(esql);
+				}
+				break;
+			case "serve": {
+				esql.startAvailabilityIndex();
+				final HttpService service = new HttpService(esql, new InetSocketAddress(InetAddress.getLoopbackAddress(), cmd.length > 1 ? Integer.parseInt(cmd[1]) : 8166));
+				final CountDownLatch stopped = new CountDownLatch(1);
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					service.stop();
+					stopped.countDown();
+				}));
+				service.start();
+				System.out.println("Serving on http://" + service.getAddress().getHostString() + ":" + service.getAddress().getPort()
+					+ (service.usesVirtualThreads() ? " with virtual threads" : " with a thread pool") + ", Ctrl-C to stop");
+				stopped.await();
+				break;
+			}
+			case "explain":
+				IndexAdvisor.explainAll(esql);
+				break;
+			case "export":
+				if (cmd.length < 4) {
+					printCommands();
+					break;
+				}
+				export(esql, ResultRenderer.Format.valueOf(cmd[1].toUpperCase()), cmd[2], Arrays.copyOfRange(cmd, 3, cmd.length));
+				break;
+			case "cancel": {
+				if (cmd.length < 2) {
+					printCommands();
+					break;
+				}
+				WaitlistEngine.Result result = esql.getWaitlistEngine().cancel(Integer.parseInt(cmd[1]));
+				System.out.println(result.outcome.message);
+				if (result.promotion != null) {
+					System.out.println("PatientID " + result.promotion.patientId + " now holds appointment " + result.promotion.appointmentId
+						+ " (" + result.promotion.status + ", " + result.promotion.stillWaiting + " still waiting)");
+				}
+				break;
+			}
+			case "promote": {
+				int workers = cmd.length > 1 ? Integer.parseInt(cmd[1]) : 4;
+				long start = System.nanoTime();
+				List<WaitlistEngine.Promotion> promoted = esql.getWaitlistEngine().promote(workers);
+				long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+				for (WaitlistEngine.Promotion p : promoted) {
+					System.out.println("PatientID " + p.patientId + " now holds appointment " + p.appointmentId + " (" + p.status + ")");
+				}
+				System.out.println("Promoted " + promoted.size() + " waitlist entries with " + workers + " workers in " + millis + " ms");
+				break;
+			}
+			case "simulate": {
+				int sessions = cmd.length > 1 ? Integer.parseInt(cmd[1]) : 16;
+				int seconds = cmd.length > 2 ? Integer.parseInt(cmd[2]) : 30;
+				boolean keep = cmd.length > 3 && cmd[3].equals("keep");
+				if (sessions > esql.getPool().getMaxSize()) {
+					System.err.println("Only " + esql.getPool().getMaxSize() + " connections for " + sessions + " sessions, raise -Ddbproject.pool.max");
+				}
+				ContentionSimulator sim = new ContentionSimulator(esql, sessions);
+				sim.setUp();
+				int violations;
+				try {
+					sim.report(sim.run(seconds));
+					violations = sim.verify();
+				} finally {
+					if (!keep) sim.cleanUp();
+				}
+				// fails the command, so scripts and CI see the broken invariants
+				if (violations > 0) throw new IllegalStateException("Simulation broke " + violations + " invariants");
+				break;
+			}
+			case "patients":
+				if (cmd.length > 1 && cmd[1].equals("rollup")) {
+					long folded = esql.getPatientCounter().rollUp();
+					System.out.println(folded < 0 ? "Another rollup is running" : "Folded " + folded + " deltas into number_of_appts");
+				} else if (cmd.length > 1 && cmd[1].equals("reconcile")) {
+					System.out.println("Recounted number_of_appts, " + esql.getPatientCounter().reconcile() + " patients changed");
+				} else {
+					printCommands();
+				}
+				break;
+			case "partitions":
+				if (cmd.length > 1 && cmd[1].equals("maintain")) {
+					long created = AppointmentPartitions.maintain(esql, cmd.length > 2 ? Integer.parseInt(cmd[2]) : Math.max(0, PARTITION_MONTHS_AHEAD));
+					System.out.println(created < 0 ? "Appointment is not partitioned, run sql/partition.sql first" : "Created " + created + " monthly partitions");
+				} else if (cmd.length > 2 && cmd[1].equals("archive")) {
+					boolean drop = cmd.length > 3 && cmd[3].equals("drop");
+					int archived = AppointmentPartitions.archive(esql, java.sql.Date.valueOf(cmd[2]), drop);
+					System.out.println((drop ? "Dropped " : "Archived ") + archived + " monthly partitions");
+				} else {
+					printCommands();
+				}
+				break;
+			default:
+				System.err.println("Unknown command: " + cmd[0]);
+				printCommands();
+		}//end switch
+	}//end runCommand
+
+	/**
+	 * Writes one listing of the menu to a file in the given format.
+	 * 
+	 * @param esql the database session
+	 * @param format the output format
+	 * @param file the file to write, or "-" for standard out
+	 * @param listing the listing name followed by its arguments
+	 * @throws java.lang.Exception when the query or the write failed
+	 */
+	static void export(DBproject esql, ResultRenderer.Format format, String file, String[] listing) throws Exception {
+		long start = System.nanoTime();
+		long rows;
+		switch (listing[0]) {
+			case "doctor":
+				rows = esql.exportQuery(MenuQueries.APPOINTMENTS_OF_DOCTOR, format, file,
+					Integer.parseInt(listing[1]), java.sql.Date.valueOf(listing[2]), java.sql.Date.valueOf(listing[3]));
+				break;
+			case "available": {
+				List<AvailabilityIndex.Slot> slots = esql.listAvailable(listing[1], java.sql.Date.valueOf(listing[2]));
+				ResultRenderer out = file.equals("-") ? ResultRenderer.toConsole(format) : ResultRenderer.toFile(format, new File(file));
+				try {
+					writeSlots(slots, out);
+				} finally {
+					out.close();
+				}
+				rows = slots.size();
+				break;
+			}
+			case "status":
+				rows = esql.exportQuery(esql.usesStatusSummary() ? MenuQueries.STATUS_PER_DOCTOR_SUMMARY : MenuQueries.STATUS_PER_DOCTOR, format, file);
+				break;
+			case "patients":
+				rows = esql.exportQuery(esql.usesStatusSummary() ? MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY : MenuQueries.PATIENTS_PER_DOCTOR, format, file, AppointmentStatus.parse(listing[1]).name());
+				break;
+			case "history":
+				rows = esql.exportQuery(MenuQueries.DEPARTMENT_HISTORY, format, file, listing[1]);
+				break;
+			case "overlapping":
+				rows = esql.exportQuery(MenuQueries.OVERLAPPING_SLOT, format, file,
+					java.sql.Date.valueOf(listing[1]), TimeSlot.parse(listing[2]).toString());
+				break;
+			default:
+				System.err.println("Unknown listing: " + listing[0]);
+				printCommands();
+				return;
+		}//end switch
+		if (!file.equals("-")) {
+			long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+			System.out.println("Exported " + rows + " rows to " + file + " in " + millis + " ms");
+		}
+	}//end export
+
 	public static void AddDoctor(DBproject esql) {//1
 		// Add a doctor to the database
 		int did;
@@ -345,8 +1173,8 @@ public class DBproject{
 			} // end try
 		} while (true);
 		try { // Run the query
-			String query = "INSERT INTO Doctor (doctor_ID, name, specialty, did) VALUES (" + did + ", \'" + dname + "\', \'" + Specialty + "\', " + deptid + ");";
-			esql.executeUpdate(query);
+			String query = MenuQueries.ADD_DOCTOR;
+			esql.executeUpdate(query, did, dname, Specialty, deptid);
 			System.out.println("Doctor added.");
 		} catch (Exception e) {
 			System.out.println("Table update error! Please double check values!");
@@ -424,8 +1252,8 @@ public class DBproject{
 			} // end try
 		} while (true);
 		try { // Run the query
-			String query = "INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (" + pid + ", \'" + pname + "\', \'" + gender + "\', " + age + ", \'" + address + "\', " + prevn + ");";
-			esql.executeUpdate(query);
+			String query = MenuQueries.ADD_PATIENT;
+			esql.executeUpdate(query, pid, pname, gender, age, address, prevn);
 			System.out.println("Patient added.");
 		} catch (Exception e) {
 			System.out.println("Table update error! Please double check values!");
@@ -453,7 +1281,7 @@ public class DBproject{
 		do { // date
 			System.out.print("Input Appointment's Date (YYYY-MM-DD):");
 			try {
-				date = in.readLine();
+				date = java.sql.Date.valueOf(in.readLine().trim()).toString();
 				break;
 			} catch (Exception e) {
 				System.out.println("Your input is invalid!");
@@ -463,7 +1291,7 @@ public class DBproject{
 		do { // timeslot
 			System.out.print("Input Appointment's Timeslot (HH:MM-HH:MM):");
 			try {
-				timeslot = in.readLine();
+				timeslot = TimeSlot.parse(in.readLine()).toString();
 				break;
 			} catch (Exception e) {
 				System.out.println("Your input is invalid!");
@@ -473,7 +1301,7 @@ public class DBproject{
 		do { // status
 			System.out.print("Input Appointment's Status (PA, AC, AV, WL):");
 			try {
-				status = in.readLine();
+				status = AppointmentStatus.parse(in.readLine()).name();
 				break;
 			} catch (Exception e) {
 				System.out.println("Your input is invalid!");
@@ -481,8 +1309,8 @@ public class DBproject{
 			} // end try
 		} while (true);
 		try { // Run the query
-			String query = "INSERT INTO Appointment (appnt_ID, adate, time_slot, status) VALUES (" + aid + ", \'" + date + "\', \'" + timeslot + "\', \'" + status + "\');";
-			esql.executeUpdate(query);
+			String query = MenuQueries.ADD_APPOINTMENT;
+			esql.executeUpdate(query, aid, java.sql.Date.valueOf(date), timeslot, status);
 			System.out.println("Appointment added.");
 		} catch (Exception e) {
 			System.out.println("Table update error! Please double check values!");
@@ -500,7 +1328,6 @@ public class DBproject{
 		int age;
 		String address;
 		int prevn;
-		int rs1 = 0;
 
 		do { // ID
 			System.out.print("Input Patient's ID:");
@@ -562,31 +1389,12 @@ public class DBproject{
 				continue;
 			} // end try
 		} while (true);
-		try { // Run the query
-			String query = "SELECT patient_ID FROM Patient WHERE patient_ID = " + pid + ";";
-			rs1 = esql.executeQuery(query);
-		} catch (Exception e) {
-			System.out.println("Search Table Error! Please double check values!");
-		}
-		if (rs1 == 0) { // Didn't find patient must update
-			System.out.println("Patient was not found in database, attempting to add new patient...");
-			try { // Run the query
-				String query = "INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (" + pid + ", \'" + pname + "\', \'" + gender + "\', " + age + ", \'" + address + "\', " + prevn + ");";
-				esql.executeUpdate(query);
-				System.out.println("Patient added.");
-			} catch (Exception e) {
-				System.out.println("Table update error! Please double check values!");
-			}
-		} else { // Found the patient
-			System.out.println("Patient found.");
-		}
 
 		// Search for doctor
 		int did;
 		String dname;
 		String Specialty;
 		int deptid;
-		int rs2 = 0;
 
 		do { // ID
 			System.out.print("Input Doctor's ID:");
@@ -628,34 +1436,12 @@ public class DBproject{
 				continue;
 			} // end try
 		} while (true);
-		try { // Run the query
-			String query = "SELECT doctor_ID FROM Doctor WHERE doctor_ID = " + did + ";";
-			rs2 = esql.executeQuery(query);
-		} catch (Exception e) {
-			System.out.println("Search Table Error! Please double check values!");
-		}
-		if (rs2 == 0) { // Didn't find doctor must update
-			System.out.println("Doctor was not found in database, attempting to add new doctor...");
-			try { // Run the query
-				String query = "INSERT INTO Doctor (doctor_ID, name, specialty, did) VALUES (" + did + ", \'" + dname + "\', \'" + Specialty + "\', " + deptid + ");";
-				esql.executeUpdate(query);
-				System.out.println("Doctor added.");
-			} catch (Exception e) {
-				System.out.println("Table update error! Please double check values!");
-			}
-		} else { // Found the patient
-			System.out.println("Doctor found.");
-		}
 
 		// Search for appointment
 		int aid;
 		String date;
 		String timeslot;
 		String status;
-		List<List<String>> rs3 = new ArrayList<List<String>>();
-		List<String> rs3b = new ArrayList<String>();
-		rs3b.add("");
-		rs3.add(rs3b);
 
 		do { // ID
 			System.out.print("Input Appointment's ID:");
@@ -670,7 +1456,7 @@ public class DBproject{
 		do { // date
 			System.out.print("Input Appointment's Date (YYYY-MM-DD):");
 			try {
-				date = in.readLine();
+				date = java.sql.Date.valueOf(in.readLine().trim()).toString();
 				break;
 			} catch (Exception e) {
 				System.out.println("Your input is invalid!");
@@ -680,7 +1466,7 @@ public class DBproject{
 		do { // timeslot
 			System.out.print("Input Appointment's Timeslot (HH:MM-HH:MM):");
 			try {
-				timeslot = in.readLine();
+				timeslot = TimeSlot.parse(in.readLine()).toString();
 				break;
 			} catch (Exception e) {
 				System.out.println("Your input is invalid!");
@@ -690,76 +1476,39 @@ public class DBproject{
 		do { // status
 			System.out.print("Input Appointment's Status (PA, AC, AV, WL):");
 			try {
-				status = in.readLine();
+				status = AppointmentStatus.parse(in.readLine()).name();
 				break;
 			} catch (Exception e) {
 				System.out.println("Your input is invalid!");
 				continue;
 			} // end try
 		} while (true);
-		try { // Run the query
-			String query = "SELECT status FROM Appointment WHERE appnt_ID = " + aid + ";";
-			rs3 = esql.executeQueryAndReturnResult(query);
-		} catch (Exception e) {
-			System.out.println("Search Table Error! Please double check values!");
-		}
-		if (rs3.size() == 0) { // Didn't find appointment must update
-			System.out.println("Appointment was not found in database, attempting to add new appointment...");
-			try { // Run the query
-				String query = "INSERT INTO Appointment (appnt_ID, adate, time_slot, status) VALUES (" + aid + ", \'" + date + "\', \'" + timeslot + "\', \'" + status + "\');";
-				esql.executeUpdate(query);
-				System.out.println("Appointment added.");
-			} catch (Exception e) {
-				System.out.println("Table update error! Please double check values!");
-			}
-		} else { // Found the appointment
-			System.out.println("Appointment found.");
-		}
-		// Check the appointment status & update
-		if (rs3.get(0).get(0).equals("PA")) { // Past appointment (Not available);
-			System.out.println("Appointment already concluded. Not available.");
-		} else if (rs3.get(0).get(0).equals("AC")) { // Appointment already active, change to waitlisted and update tuples
-			try { // Run the query
-				String query = "UPDATE Appointment SET status = \'WL\' WHERE appnt_ID = " + aid + ";"; // UPDATE appointment to WL
-				esql.executeUpdate(query);
-				query = "UPDATE Patient SET number_of_appts = " + (prevn + 1) + " WHERE patient_ID = " + pid + ";"; // UPDATE number appnts
-				esql.executeUpdate(query);
-				// Adding appointment to has_appointment table
-				query = "INSERT INTO has_appointment (appt_id, doctor_id) VALUES (" + aid + ", " + did + ");";
-				esql.executeUpdate(query);
-				System.out.println("Appointment already booked. Added to waitlist.");
-			} catch (Exception e) {
-				System.out.println("Table update error! Please double check values!");
+		try { // Book in one transaction
+			BookingEngine.Request r = new BookingEngine.Request();
+			r.patientId = pid;
+			r.patientName = pname;
+			r.gender = gender;
+			r.age = age;
+			r.address = address;
+			r.prevAppointments = prevn;
+			r.doctorId = did;
+			r.doctorName = dname;
+			r.specialty = Specialty;
+			r.deptId = deptid;
+			r.appointmentId = aid;
+			r.date = java.sql.Date.valueOf(date);
+			r.timeSlot = timeslot;
+			r.status = status;
+			BookingEngine.Result result = esql.getBookingEngine().book(r);
+			System.out.println(result.patientAdded ? "Patient was not found in database, new patient added." : "Patient found.");
+			System.out.println(result.doctorAdded ? "Doctor was not found in database, new doctor added." : "Doctor found.");
+			System.out.println(result.appointmentAdded ? "Appointment was not found in database, new appointment added." : "Appointment found.");
+			System.out.println(result.outcome.message);
+			if (result.outcome == BookingEngine.Outcome.UNKNOWN_STATUS) {
+				System.out.println(result.status);
 			}
-		} else if (rs3.get(0).get(0).equals("AV")) { // Appointment is available, chenge to active and update tuples
-			try { // Run the query
-				String query = "UPDATE Appointment SET status = \'AC\' WHERE appnt_ID = " + aid + ";"; // UPDATE appointment to AC
-				esql.executeUpdate(query);
-				query = "UPDATE Patient SET number_of_appts = " + (prevn + 1) + " WHERE patient_ID = " + pid + ";"; // UPDATE number appnts
-				esql.executeUpdate(query);
-
-				// Adding appointment to has_appointment table
-				query = "INSERT INTO has_appointment (appt_id, doctor_id) VALUES (" + aid + ", " + did + ");";
-				esql.executeUpdate(query);
-				System.out.println("Appointment booked. Thank you.");
-			} catch (Exception e) {
-				System.out.println("Table update error! Please double check values!");
-			}
-		} else if (rs3.get(0).get(0).equals("WL")) { // Appointment is waitlisted, update tuples
-			try { // Run the query
-				String query = "UPDATE Patient SET number_of_appts = " + (prevn + 1) + " WHERE patient_ID = " + pid + ";"; // UPDATE number appnts
-				esql.executeUpdate(query);
-
-				// Adding appointment to has_appointment table
-				query = "INSERT INTO has_appointment (appt_id, doctor_id) VALUES (" + aid + ", " + did + ");";
-				esql.executeUpdate(query);
-				System.out.println("Appointment currently waitlisted. Added to waitlist.");
-			} catch (Exception e) {
-				System.out.println("Table update error! Please double check values!");
-			}
-		} else {
-			System.out.println("Unknown Appointment Status.");
-			System.out.println(rs3.get(0).get(0));
+		} catch (Exception e) {
+			System.out.println("Table update error! Please double check values!");
 		}
 
 		return;
@@ -802,8 +1551,12 @@ public class DBproject{
 			} // end try
 		} while (true);
 		try { // Run the query
-			String query = "SELECT A.appnt_ID, A.status FROM Appointment A, Doctor D, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND (A.status = 'AC' OR A.status = 'AV') AND D.doctor_ID = " + did + " AND A.adate >= DATE(\'" + startdate + "\') AND A.adate <= DATE(\'" + enddate + "\');";
-			esql.executeQueryAndPrintResult(query);
+			if (PAGE_SIZE > 0) {
+				browse(esql.pageAppointmentsOfDoctor(did, java.sql.Date.valueOf(startdate), java.sql.Date.valueOf(enddate), PAGE_SIZE));
+				return;
+			}
+			String query = MenuQueries.APPOINTMENTS_OF_DOCTOR;
+			esql.executeQueryAndPrintResult(query, did, java.sql.Date.valueOf(startdate), java.sql.Date.valueOf(enddate));
 		} catch (Exception e) {
 			System.out.println("Table Search Error! Please double check values!");
 		}
@@ -837,8 +1590,17 @@ public class DBproject{
 			} // end try
 		} while (true);
 		try { // Run the query
-			String query = "SELECT A.appnt_ID, A.time_slot FROM Appointment A, Doctor D, Department De, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND D.did = De.dept_ID AND A.status = 'AV' AND A.adate = DATE(\'" + date + "\') AND De.name = \'" + dname + "\';";
-			esql.executeQueryAndPrintResult(query);
+			if (PAGE_SIZE > 0) {
+				browse(esql.pageAvailable(dname, java.sql.Date.valueOf(date), PAGE_SIZE));
+				return;
+			}
+			List<AvailabilityIndex.Slot> slots = esql.listAvailable(dname, java.sql.Date.valueOf(date));
+			ResultRenderer out = ResultRenderer.toConsole(ResultRenderer.defaultFormat());
+			try {
+				writeSlots(slots, out);
+			} finally {
+				out.close();
+			}
 		} catch (Exception e) {
 			System.out.println("Table Search Error! Please double check values!");
 		}
@@ -846,135 +1608,66 @@ public class DBproject{
 		return;
 	}
 
-	public static void ListStatusNumberOfAppointmentsPerDoctor(DBproject esql) {//7
-		// Count number of different types of appointments per doctors and list them in descending order
-		List<List<String>> rs3 = new ArrayList<List<String>>();
-		List<String> rs3b = new ArrayList<String>();
-		rs3b.add("");
-		rs3.add(rs3b);
-
-		try { // Get the max value of doctorID
-			String query = "SELECT MAX(D.doctor_ID) FROM Doctor D;";
-			rs3 = esql.executeQueryAndReturnResult(query);
-		} catch (Exception e) {
-			System.out.println("Table Search Error!!");
-		}
-
-		int arraySize = Integer.parseInt(rs3.get(0).get(0));
-		List<List<String>> Container = new ArrayList<List<String>>(); // Initialize container for values
-		for (int i = 0; i <= arraySize; i++) {
-			List<String> index = new ArrayList<String>();
-			index.add("" + i);
-			for (int j = 0; j < 4; j++) {
-				index.add("0");
+	/**
+	 * Prints the first page of a listing and lets the clerk move to the next
+	 * or previous page until they press Enter.
+	 * 
+	 * @param pager the listing
+	 * @throws java.lang.Exception when a page failed to load or print
+	 */
+	static void browse(KeysetPager pager) throws Exception {
+		pager.first();
+		ResultRenderer out = ResultRenderer.toConsole(ResultRenderer.defaultFormat());
+		try {
+			while (true) {
+				pager.render(out);
+				if (!pager.hasNext() && !pager.hasPrevious()) break;
+				System.out.print((pager.hasNext() ? "[n]ext page, " : "") + (pager.hasPrevious() ? "[p]revious page, " : "") + "Enter to finish:");
+				String input = in.readLine();
+				if (input == null) break;
+				input = input.trim().toLowerCase();
+				if (input.equals("n")) {
+					if (!pager.next()) System.out.println("This is the last page.");
+				} else if (input.equals("p")) {
+					if (!pager.previous()) System.out.println("This is the first page.");
+				} else {
+					break;
+				}
 			}
-			Container.add(index);
+		} finally {
+			out.close();
 		}
+	}//end browse
 
-		try { // Get Array of doctor ID with PA appointments
-			String query = "SELECT D.doctor_ID, COUNT(A.appnt_ID) FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = \'PA\' GROUP BY D.doctor_ID ORDER BY D.doctor_ID ASC;";
-			rs3 = esql.executeQueryAndReturnResult(query);
-		} catch (Exception e) {
-			System.out.println("Table Search Error!!");
-		}
-		for (int i = 0; i < rs3.size(); i++) { // Insert found data into the Container
-			Container.get(Integer.parseInt(rs3.get(i).get(0))).set(1, rs3.get(i).get(1));
-		}
-
-		try { // Get Array of doctor ID with AC appointments
-			String query = "SELECT D.doctor_ID, COUNT(A.appnt_ID) FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = \'AC\' GROUP BY D.doctor_ID ORDER BY D.doctor_ID ASC;";
-			rs3 = esql.executeQueryAndReturnResult(query);
-		} catch (Exception e) {
-			System.out.println("Table Search Error!!");
-		}
-		for (int i = 0; i < rs3.size(); i++) { // Insert found data into the Container
-			Container.get(Integer.parseInt(rs3.get(i).get(0))).set(2, rs3.get(i).get(1));
-		}
-
-		try { // Get Array of doctor ID with AV appointments
-			String query = "SELECT D.doctor_ID, COUNT(A.appnt_ID) FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = \'AV\' GROUP BY D.doctor_ID ORDER BY D.doctor_ID ASC;";
-			rs3 = esql.executeQueryAndReturnResult(query);
-		} catch (Exception e) {
-			System.out.println("Table Search Error!!");
-		}
-		for (int i = 0; i < rs3.size(); i++) { // Insert found data into the Container
-			Container.get(Integer.parseInt(rs3.get(i).get(0))).set(3, rs3.get(i).get(1));
+	//writes the slots of option 6 like the rows of AVAILABLE_OF_DEPARTMENT
+	static void writeSlots(List<AvailabilityIndex.Slot> slots, ResultRenderer out) throws IOException {
+		out.begin(new String[] { "appnt_id", "time_slot" }, new boolean[] { true, false });
+		String[] values = new String[2];
+		for (AvailabilityIndex.Slot slot : slots) {
+			values[0] = Integer.toString(slot.appointmentId);
+			values[1] = slot.timeSlot;
+			out.row(values);
 		}
+	}
 
-		try { // Get Array of doctor ID with WL appointments
-			String query = "SELECT D.doctor_ID, COUNT(A.appnt_ID) FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = \'WL\' GROUP BY D.doctor_ID ORDER BY D.doctor_ID ASC;";
-			rs3 = esql.executeQueryAndReturnResult(query);
+	public static void ListStatusNumberOfAppointmentsPerDoctor(DBproject esql) {//7
+		// Count number of different types of appointments per doctors and list them in descending order
+		// One grouped query ordered by doctor; each doctor is printed as soon as its rows are complete
+		final String query = esql.usesStatusSummary() ? MenuQueries.STATUS_PER_DOCTOR_SUMMARY : MenuQueries.STATUS_PER_DOCTOR;
+		try { // Run the query
+			final StatusCounts counts = new StatusCounts();
+			esql.executeQueryAndStream(query, row -> {
+				int doctor = row.getInt(1);
+				if (counts.isEmpty() || counts.getDoctorId() != doctor) {
+					if (!counts.isEmpty()) System.out.println(counts.format());
+					counts.reset(doctor);
+				}
+				counts.add(row.getString(2), row.getInt(3));
+			});
+			if (!counts.isEmpty()) System.out.println(counts.format());
 		} catch (Exception e) {
 			System.out.println("Table Search Error!!");
 		}
-		for (int i = 0; i < rs3.size(); i++) { // Insert found data into the Container
-			Container.get(Integer.parseInt(rs3.get(i).get(0))).set(4, rs3.get(i).get(1));
-		}
-
-		List<List<String>> Status_Holder = new ArrayList<List<String>>(); // Initialize container for status values
-		for (int i = 0; i <= arraySize; i++) {
-			List<String> index = new ArrayList<String>();
-			index.add("PA");
-			index.add("AC");
-			index.add("AV");
-			index.add("WL");
-			Status_Holder.add(index);
-		}
-
-		for (int i = 0; i <= arraySize; i++) { // Begin sorting per row
-			int maxV = Integer.parseInt(Container.get(i).get(1));
-			int index = 1;
-			String temp = Container.get(i).get(1);
-			String temp2 = Status_Holder.get(i).get(0);
-			for (int j = 2; j <= 4; j++) {
-				if (Integer.parseInt(Container.get(i).get(j)) > maxV) {
-					maxV = Integer.parseInt(Container.get(i).get(j));
-					index = j;
-				}
-			} // Swapping first and max
-			Container.get(i).set(1, Container.get(i).get(index));
-			Container.get(i).set(index, temp);
-			Status_Holder.get(i).set(0, Status_Holder.get(i).get(index - 1));
-			Status_Holder.get(i).set(index - 1, temp2);
-		}
-
-		for (int i = 0; i <= arraySize; i++) { // Column 2
-			int maxV = Integer.parseInt(Container.get(i).get(2));
-			int index = 2;
-			String temp = Container.get(i).get(2);
-			String temp2 = Status_Holder.get(i).get(1);
-			for (int j = 3; j <= 4; j++) {
-				if (Integer.parseInt(Container.get(i).get(j)) > maxV) {
-					maxV = Integer.parseInt(Container.get(i).get(j));
-					index = j;
-				}
-			} // Swapping first and max
-			Container.get(i).set(2, Container.get(i).get(index));
-			Container.get(i).set(index, temp);
-			Status_Holder.get(i).set(1, Status_Holder.get(i).get(index - 1));
-			Status_Holder.get(i).set(index - 1, temp2);
-		}
-
-		for (int i = 0; i <= arraySize; i++) { // Column 3
-			int maxV = Integer.parseInt(Container.get(i).get(2));
-			int index = 3;
-			String temp = Container.get(i).get(3);
-			String temp2 = Status_Holder.get(i).get(2);
-			for (int j = 4; j <= 4; j++) {
-				if (Integer.parseInt(Container.get(i).get(j)) > maxV) {
-					maxV = Integer.parseInt(Container.get(i).get(j));
-					index = j;
-				}
-			} // Swapping first and max
-			Container.get(i).set(3, Container.get(i).get(index));
-			Container.get(i).set(index, temp);
-			Status_Holder.get(i).set(2, Status_Holder.get(i).get(index - 1));
-			Status_Holder.get(i).set(index - 1, temp2);
-		}
-
-		for (int i = 0; i <= arraySize; i++) { // Print all values in our format
-			System.out.println("DoctorID " + i + " " + Container.get(i).get(1) + " " + Status_Holder.get(i).get(0) + " " + Container.get(i).get(2) + " " +  Status_Holder.get(i).get(1) + " " +  Container.get(i).get(3) + " " +  Status_Holder.get(i).get(2) + " " +  Container.get(i).get(4) + " " +  Status_Holder.get(i).get(3));
-		}
 	}
 
 	
@@ -985,7 +1678,7 @@ public class DBproject{
 		do { // status
 			System.out.print("Input Appointment's Status (PA, AC, AV, WL):");
 			try {
-				status = in.readLine();
+				status = AppointmentStatus.parse(in.readLine()).name();
 				break;
 			} catch (Exception e) {
 				System.out.println("Your input is invalid!");
@@ -993,10 +1686,14 @@ public class DBproject{
 			} // end try
 		} while (true);
 		try { // Run the query
-			String query = "SELECT D.doctor_ID, D.name, COUNT(A.appnt_ID) AS TotalPatients FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = \'" + status + "\' GROUP BY D.doctor_ID ORDER BY D.doctor_ID ASC;";
-			esql.executeQueryAndPrintResult(query);
+			if (PAGE_SIZE > 0) {
+				browse(esql.pagePatientCounts(status, PAGE_SIZE));
+				return;
+			}
+			String query = esql.usesStatusSummary() ? MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY : MenuQueries.PATIENTS_PER_DOCTOR;
+			esql.executeQueryAndPrintResult(query, status);
 		} catch (Exception e) {
 			System.out.println("Table Search Error! Please double check values!");
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,405 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class serves the eight menu operations as a local HTTP/JSON service
+ * so many front desks can share one process and its connection pool:
+ *
+ *   POST /doctors                              option 1, body as the AddDoctor line of batch
+ *   POST /patients                             option 2
+ *   POST /appointments                         option 3
+ *   POST /bookings                             option 4, body as the MakeAppointment line of batch
+ *   GET  /doctors/{id}/appointments?from=&amp;to=  option 5
+ *   GET  /departments/{name}/available?date=   option 6
+ *   GET  /status-counts                        option 7
+ *   GET  /patient-counts?status=               option 8
+ *
+ * The listings of options 5, 6 and 8 are paged by their key when the
+ * request has limit, after or before: after=&lt;id&gt; returns the rows
+ * following that key, before=&lt;id&gt; the rows preceding it, and a Link header
+ * carries the rel="next" and rel="prev" URLs (see KeysetPager).
+ *
+ * Every request runs on its own virtual thread when the JVM has them
+ * (Java 21 or later), otherwise on a pool of dbproject.http.threads
+ * platform threads.  Requests wait for a pooled database connection, so
+ * the connection pool bounds the database work in flight.
+ *
+ */
+
+public class HttpService implements HttpHandler{
+	//largest request body accepted
+	private static final int MAX_BODY = 1 << 16;
+	//rows per page when only after or before is given, and the most a limit may ask for
+	private static final int DEFAULT_LIMIT = 20;
+	private static final int MAX_LIMIT = 1000;
+
+	private final DBproject _esql;
+	private final HttpServer _server;
+	private final ExecutorService _executor;
+	private final boolean _virtual;
+
+	public HttpService(DBproject esql, InetSocketAddress address) throws IOException {
+		this._esql = esql;
+		// small JSON replies otherwise wait on Nagle's algorithm for the client's delayed ACK
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+		this._server = HttpServer.create(address, Integer.getInteger("dbproject.http.backlog", 256));
+		this._server.createContext("/", this);
+		ExecutorService virtual = newVirtualThreadExecutor();
+		this._virtual = virtual != null;
+		this._executor = virtual != null ? virtual : Executors.newFixedThreadPool(Integer.getInteger("dbproject.http.threads", 64));
+		this._server.setExecutor(this._executor);
+	}
+
+	public void start() {
+		this._server.start();
+	}
+
+	/**
+	 * Method to stop accepting requests, give running ones up to a second
+	 * to finish and stop the request threads.
+	 */
+	public void stop() {
+		this._server.stop(1);
+		this._executor.shutdown();
+		try{
+			this._executor.awaitTermination(5, TimeUnit.SECONDS);
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}//end try
+	}
+
+	public InetSocketAddress getAddress() {
+		return this._server.getAddress();
+	}
+
+	/**
+	 * @return true when requests run on virtual threads
+	 */
+	public boolean usesVirtualThreads() {
+		return this._virtual;
+	}
+
+	public void handle(HttpExchange ex) throws IOException {
+		long start = System.nanoTime();
+		int code;
+		String body;
+		try{
+			StringBuilder out = new StringBuilder(256);
+			code = route(ex.getRequestMethod(), ex.getRequestURI().getRawPath(), query(ex.getRequestURI().getRawQuery()), ex, out);
+			body = out.toString();
+		}catch (IllegalArgumentException e){
+			code = 400;
+			body = error(e.getMessage());
+		}catch (IOException e){
+			// the request body could not be read or decoded
+			code = 400;
+			body = error(e.toString());
+		}catch (SQLException e){
+			String state = e.getSQLState();
+			code = state == null ? 500 : state.startsWith("23") ? 409 : state.equals("08001") ? 503 : 500;
+			body = error(e.getMessage());
+		}catch (RuntimeException e){
+			code = 500;
+			body = error(e.toString());
+		}//end try
+		if (code != 404) this._esql.getMetrics().operation(operationName(ex), start, code >= 500);
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		ex.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+		OutputStream os = ex.getResponseBody();
+		try{
+			os.write(bytes);
+		}finally{
+			os.close();
+		}
+	}
+
+	/**
+	 * Method to run the operation of one request.
+	 *
+	 * @return the HTTP status code
+	 */
+	private int route(String method, String path, Map<String, String> params, HttpExchange ex, StringBuilder out) throws IOException, SQLException {
+		String[] parts = path.split("/");
+		// parts[0] is the empty string before the leading slash
+		if (method.equals("POST") && parts.length == 2){
+			JsonLine j = JsonLine.parse(readBody(ex));
+			switch (parts[1]){
+				case "doctors":
+					this._esql.executeUpdate(MenuQueries.ADD_DOCTOR, Records.Doctor.from(j).params());
+					out.append("{\"ok\":true}");
+					return 201;
+				case "patients":
+					this._esql.executeUpdate(MenuQueries.ADD_PATIENT, Records.Patient.from(j).params());
+					out.append("{\"ok\":true}");
+					return 201;
+				case "appointments":
+					this._esql.executeUpdate(MenuQueries.ADD_APPOINTMENT, Records.Appointment.from(j).params());
+					out.append("{\"ok\":true}");
+					return 201;
+				case "bookings":
+					booking(this._esql.getBookingEngine().book(Records.booking(j)), out);
+					return 200;
+				default:
+					break;
+			}//end switch
+		}else if (method.equals("GET")){
+			int limit = limit(params);
+			if (parts.length == 4 && parts[1].equals("doctors") && parts[3].equals("appointments")){
+				if (limit > 0){
+					page(this._esql.pageAppointmentsOfDoctor(Integer.parseInt(parts[2]), date(params, "from"), date(params, "to"), limit), params, ex, out);
+					return 200;
+				}//end if
+				rows(out, MenuQueries.APPOINTMENTS_OF_DOCTOR, Integer.parseInt(parts[2]), date(params, "from"), date(params, "to"));
+				return 200;
+			}//end if
+			if (parts.length == 4 && parts[1].equals("departments") && parts[3].equals("available")){
+				if (limit > 0){
+					page(this._esql.pageAvailable(URLDecoder.decode(parts[2], "UTF-8"), date(params, "date"), limit), params, ex, out);
+					return 200;
+				}//end if
+				available(this._esql.listAvailable(URLDecoder.decode(parts[2], "UTF-8"), date(params, "date")), out);
+				return 200;
+			}//end if
+			if (parts.length == 2 && parts[1].equals("status-counts")){
+				statusCounts(out);
+				return 200;
+			}//end if
+			if (parts.length == 2 && parts[1].equals("patient-counts")){
+				String status = params.get("status");
+				if (status == null) throw new IllegalArgumentException("missing parameter status");
+				status = AppointmentStatus.parse(status).name();
+				if (limit > 0){
+					page(this._esql.pagePatientCounts(status, limit), params, ex, out);
+					return 200;
+				}//end if
+				rows(out, this._esql.usesStatusSummary() ? MenuQueries.PATIENTS_PER_DOCTOR_SUMMARY : MenuQueries.PATIENTS_PER_DOCTOR, status);
+				return 200;
+			}//end if
+		}//end if
+		out.append(error("no operation " + method + " " + path));
+		return 404;
+	}
+
+	//a JSON array with one object per row, keyed by column name
+	private void rows(final StringBuilder out, String query, Object... params) throws SQLException {
+		out.append('[');
+		this._esql.executeQueryAndStream(query, row -> {
+			if (row.getRowNumber() > 1) out.append(',');
+			out.append('{');
+			for (int i = 1; i <= row.getColumnCount(); i++){
+				if (i > 1) out.append(',');
+				JsonLine.quote(row.getColumnName(i), out);
+				out.append(':');
+				String v = row.getString(i);
+				if (v != null && isNumeric(row.getColumnType(i))) out.append(v);
+				else JsonLine.quote(v, out);
+			}//end for
+			out.append('}');
+		}, params);
+		out.append(']');
+	}
+
+	//one page as a JSON array, with the URLs of the pages around it in a Link header
+	private static void page(KeysetPager pager, Map<String, String> params, HttpExchange ex, StringBuilder out) throws SQLException {
+		if (params.containsKey("after")) pager.after(Integer.parseInt(params.get("after")));
+		else if (params.containsKey("before")) pager.before(Integer.parseInt(params.get("before")));
+		else pager.first();
+		String[] columns = pager.getColumns();
+		boolean[] numeric = pager.getNumeric();
+		out.append('[');
+		for (String[] row : pager.getRows()){
+			if (out.length() > 1) out.append(',');
+			out.append('{');
+			for (int i = 0; i < columns.length; i++){
+				if (i > 0) out.append(',');
+				JsonLine.quote(columns[i], out);
+				out.append(':');
+				if (row[i] != null && numeric[i]) out.append(row[i]);
+				else JsonLine.quote(row[i], out);
+			}//end for
+			out.append('}');
+		}//end for
+		out.append(']');
+		if (pager.getRows().isEmpty()) return;
+		StringBuilder link = new StringBuilder();
+		if (pager.hasNext()) link.append('<').append(pageUrl(ex, params, "after", pager.getLastKey(), pager.getPageSize())).append(">; rel=\"next\"");
+		if (pager.hasPrevious()){
+			if (link.length() > 0) link.append(", ");
+			link.append('<').append(pageUrl(ex, params, "before", pager.getFirstKey(), pager.getPageSize())).append(">; rel=\"prev\"");
+		}//end if
+		if (link.length() > 0) ex.getResponseHeaders().set("Link", link.toString());
+	}
+
+	//the request URL with its paging parameters replaced
+	private static String pageUrl(HttpExchange ex, Map<String, String> params, String direction, int key, int limit) {
+		StringBuilder url = new StringBuilder(ex.getRequestURI().getRawPath()).append('?');
+		try{
+			for (Map.Entry<String, String> e : params.entrySet()){
+				if (e.getKey().equals("after") || e.getKey().equals("before") || e.getKey().equals("limit")) continue;
+				url.append(URLEncoder.encode(e.getKey(), "UTF-8")).append('=').append(URLEncoder.encode(e.getValue(), "UTF-8")).append('&');
+			}//end for
+		}catch (UnsupportedEncodingException e){
+			throw new IllegalStateException(e);
+		}//end try
+		return url.append(direction).append('=').append(key).append("&limit=").append(limit).toString();
+	}
+
+	//the page size asked for, 0 when the listing is not paged
+	private static int limit(Map<String, String> params) {
+		String limit = params.get("limit");
+		if (limit == null) return params.containsKey("after") || params.containsKey("before") ? DEFAULT_LIMIT : 0;
+		int n = Integer.parseInt(limit);
+		if (n < 1 || n > MAX_LIMIT) throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+		return n;
+	}
+
+	private void available(List<AvailabilityIndex.Slot> slots, StringBuilder out) {
+		out.append('[');
+		for (int i = 0; i < slots.size(); i++){
+			if (i > 0) out.append(',');
+			out.append("{\"appnt_id\":").append(slots.get(i).appointmentId).append(",\"time_slot\":");
+			JsonLine.quote(slots.get(i).timeSlot, out);
+			out.append('}');
+		}//end for
+		out.append(']');
+	}
+
+	//option 7: the statuses of each doctor in descending order of their counts
+	private void statusCounts(final StringBuilder out) throws SQLException {
+		final StatusCounts counts = new StatusCounts();
+		out.append('[');
+		this._esql.executeQueryAndStream(this._esql.usesStatusSummary() ? MenuQueries.STATUS_PER_DOCTOR_SUMMARY : MenuQueries.STATUS_PER_DOCTOR, row -> {
+			int doctor = row.getInt(1);
+			if (counts.isEmpty() || counts.getDoctorId() != doctor){
+				if (!counts.isEmpty()) statusCount(counts, out);
+				counts.reset(doctor);
+			}//end if
+			counts.add(row.getString(2), row.getInt(3));
+		});
+		if (!counts.isEmpty()) statusCount(counts, out);
+		out.append(']');
+	}
+
+	private static void statusCount(StatusCounts counts, StringBuilder out) {
+		if (out.charAt(out.length() - 1) != '[') out.append(',');
+		out.append("{\"doctor_id\":").append(counts.getDoctorId()).append(",\"counts\":{");
+		int[] order = counts.rank();
+		for (int i = 0; i < order.length; i++){
+			if (i > 0) out.append(',');
+			out.append('"').append(StatusCounts.STATUSES[order[i]]).append("\":").append(counts.getCount(order[i]));
+		}//end for
+		out.append("}}");
+	}
+
+	private static void booking(BookingEngine.Result r, StringBuilder out) {
+		out.append("{\"outcome\":\"").append(r.outcome.name()).append("\",\"message\":");
+		JsonLine.quote(r.outcome.message, out);
+		out.append(",\"status\":");
+		JsonLine.quote(r.status, out);
+		out.append(",\"patient_added\":").append(r.patientAdded)
+			.append(",\"doctor_added\":").append(r.doctorAdded)
+			.append(",\"appointment_added\":").append(r.appointmentAdded)
+			.append(",\"attempts\":").append(r.attempts).append('}');
+	}
+
+	//e.g. "GET /doctors/{}/appointments", so each operation has one name
+	private static String operationName(HttpExchange ex) {
+		String[] parts = ex.getRequestURI().getRawPath().split("/");
+		StringBuilder sb = new StringBuilder(ex.getRequestMethod()).append(" /").append(parts.length > 1 ? parts[1] : "");
+		if (parts.length > 3) sb.append("/{}/").append(parts[3]);
+		return sb.toString();
+	}
+
+	private static String error(String message) {
+		StringBuilder sb = new StringBuilder("{\"error\":");
+		JsonLine.quote(message, sb);
+		return sb.append('}').toString();
+	}
+
+	private static boolean isNumeric(int type) {
+		switch (type){
+			case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+			case Types.NUMERIC: case Types.DECIMAL: case Types.REAL: case Types.DOUBLE:
+				return true;
+			default:
+				return false;
+		}//end switch
+	}
+
+	private static java.sql.Date date(Map<String, String> params, String name) {
+		String v = params.get(name);
+		if (v == null) throw new IllegalArgumentException("missing parameter " + name);
+		return java.sql.Date.valueOf(v);
+	}
+
+	private static Map<String, String> query(String raw) throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		if (raw == null) return params;
+		for (String pair : raw.split("&")){
+			int eq = pair.indexOf('=');
+			if (eq < 0) continue;
+			params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+		}//end for
+		return params;
+	}
+
+	private static String readBody(HttpExchange ex) throws IOException {
+		InputStream in = ex.getRequestBody();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+		byte[] chunk = new byte[4096];
+		int n;
+		while ((n = in.read(chunk)) > 0){
+			buf.write(chunk, 0, n);
+			if (buf.size() > MAX_BODY) throw new IllegalArgumentException("request body larger than " + MAX_BODY + " bytes");
+		}//end while
+		return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Method to create an executor that starts a virtual thread per task.
+	 * The build targets Java 8, so the Java 21 factory is looked up by name.
+	 *
+	 * @return the executor, or null when the JVM has no virtual threads
+	 */
+	static ExecutorService newVirtualThreadExecutor() {
+		if ("false".equals(System.getProperty("dbproject.http.virtualThreads"))) return null;
+		try{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch (ReflectiveOperationException e){
+			return null;
+		}//end try
+	}
+}//end HttpService
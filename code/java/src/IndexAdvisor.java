@@ -0,0 +1,99 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class knows the secondary indexes the menu queries rely on (see the
+ * INDEXES section of post_load.sql).  It warns at startup when one of them is
+ * missing and prints the plan of each menu query so index use can be
+ * confirmed.
+ *
+ */
+
+public final class IndexAdvisor{
+	//index name followed by the statement that creates it
+	public static final String[][] EXPECTED = {
+		{ "has_appointment_doctor_idx", "CREATE INDEX has_appointment_doctor_idx ON has_appointment (doctor_id, appt_id)" },
+		{ "appointment_status_adate_idx", "CREATE INDEX appointment_status_adate_idx ON Appointment (status, adate)" },
+		{ "appointment_available_adate_idx", "CREATE INDEX appointment_available_adate_idx ON Appointment (adate, appnt_ID) WHERE status = 'AV'" },
+		{ "department_name_idx", "CREATE INDEX department_name_idx ON Department (name)" },
+		{ "doctor_did_idx", "CREATE INDEX doctor_did_idx ON Doctor (did)" }
+	};
+
+	private IndexAdvisor() {
+	}
+
+	/**
+	 * Method to list the expected indexes that do not exist in the current
+	 * schema.
+	 *
+	 * @param esql the database session
+	 * @return the names of the missing indexes
+	 * @throws java.sql.SQLException when the catalog could not be read
+	 */
+	public static List<String> findMissing(DBproject esql) throws SQLException {
+		final List<String> present = new ArrayList<String>();
+		String[] names = new String[EXPECTED.length];
+		for (int i = 0; i < EXPECTED.length; i++) names[i] = EXPECTED[i][0];
+		esql.executeQueryAndStream("SELECT indexname FROM pg_indexes WHERE schemaname = current_schema() AND indexname = ANY (string_to_array(?, ','))",
+			row -> present.add(row.getString(1)), String.join(",", names));
+
+		List<String> missing = new ArrayList<String>(Arrays.asList(names));
+		missing.removeAll(present);
+		return missing;
+	}
+
+	/**
+	 * Method to print a warning with the fix for every missing index.  A
+	 * failing check is reported but never stops the program.
+	 *
+	 * @param esql the database session
+	 */
+	public static void warnMissing(DBproject esql) {
+		try{
+			for (String name : findMissing(esql)){
+				System.err.println("Warning: index " + name + " is missing, menu queries will scan. Create it with:");
+				System.err.println("  " + definitionOf(name) + ";");
+			}//end for
+		}catch (SQLException e){
+			System.err.println("Warning: unable to verify indexes: " + e.getMessage());
+		}//end try
+	}
+
+	/**
+	 * Method to print the EXPLAIN plan of every read-only menu query with
+	 * its sample parameters.
+	 *
+	 * @param esql the database session
+	 * @throws java.sql.SQLException when a plan could not be produced
+	 */
+	public static void explainAll(DBproject esql) throws SQLException {
+		for (Object[] sample : MenuQueries.SAMPLES){
+			System.out.println("== " + sample[0]);
+			Object[] params = Arrays.copyOfRange(sample, 2, sample.length);
+			esql.executeQueryAndStream("EXPLAIN " + sample[1], row -> System.out.println(row.getString(1)), params);
+			System.out.println();
+		}//end for
+	}
+
+	private static String definitionOf(String name) {
+		for (String[] index : EXPECTED){
+			if (index[0].equals(name)) return index[1];
+		}//end for
+		return null;
+	}
+}//end IndexAdvisor
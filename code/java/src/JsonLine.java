@@ -0,0 +1,196 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class parses one flat JSON object, i.e. one line of a JSON Lines
+ * file such as {"op":"AddDoctor","doctor_ID":7,"name":"Ann Lee"}.  Values
+ * may be strings, numbers, booleans or null; nested objects and arrays are
+ * not supported.  It also writes such objects back out.
+ *
+ */
+
+public class JsonLine{
+	private final Map<String, String> _values = new LinkedHashMap<String, String>();
+	private final String _text;
+	private int _pos = 0;
+
+	private JsonLine(String text) {
+		this._text = text;
+	}
+
+	/**
+	 * Method to parse one JSON object.
+	 *
+	 * @param text the object text
+	 * @return the parsed object
+	 * @throws java.lang.IllegalArgumentException when the text is not a flat
+	 *         JSON object
+	 */
+	public static JsonLine parse(String text) {
+		JsonLine j = new JsonLine(text);
+		j.skipSpace();
+		j.expect('{');
+		j.skipSpace();
+		if (j.peek() == '}'){
+			j._pos++;
+			j.end();
+			return j;
+		}//end if
+		while (true){
+			j.skipSpace();
+			String key = j.readString();
+			j.skipSpace();
+			j.expect(':');
+			j.skipSpace();
+			j._values.put(key, j.readValue());
+			j.skipSpace();
+			char c = j.peek();
+			if (c != '}' && c != ',') throw j.error("expected ',' or '}'");
+			j._pos++;
+			if (c == '}') break;
+		}//end while
+		j.end();
+		return j;
+	}
+
+	public boolean has(String key) {
+		return this._values.containsKey(key) && this._values.get(key) != null;
+	}
+
+	/**
+	 * @return the value of the key as text, or null when missing or null
+	 */
+	public String getString(String key) {
+		return this._values.get(key);
+	}
+
+	/**
+	 * @return the value of the key as text
+	 * @throws java.lang.IllegalArgumentException when the key is missing
+	 */
+	public String requireString(String key) {
+		String v = this._values.get(key);
+		if (v == null) throw new IllegalArgumentException("missing field " + key);
+		return v;
+	}
+
+	/**
+	 * @return the value of the key as an int
+	 * @throws java.lang.IllegalArgumentException when the key is missing or
+	 *         not a number
+	 */
+	public int requireInt(String key) {
+		return Integer.parseInt(requireString(key));
+	}
+
+	/**
+	 * Method to quote a value as a JSON string.
+	 *
+	 * @param value the text to quote, may be null
+	 * @param out receives the quoted text or null
+	 */
+	public static void quote(String value, StringBuilder out) {
+		if (value == null){
+			out.append("null");
+			return;
+		}//end if
+		out.append('"');
+		for (int i = 0; i < value.length(); i++){
+			char c = value.charAt(i);
+			switch (c){
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+					else out.append(c);
+			}//end switch
+		}//end for
+		out.append('"');
+	}
+
+	private String readValue() {
+		char c = peek();
+		if (c == '"') return readString();
+		int start = this._pos;
+		while (this._pos < this._text.length() && ",} \t\r\n".indexOf(this._text.charAt(this._pos)) < 0) this._pos++;
+		String literal = this._text.substring(start, this._pos);
+		if (literal.isEmpty()) throw error("expected a value");
+		if (literal.equals("null")) return null;
+		if (literal.equals("true") || literal.equals("false")) return literal;
+		if (!literal.matches("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?")) throw error("unsupported value " + literal);
+		return literal;
+	}
+
+	private String readString() {
+		expect('"');
+		StringBuilder sb = new StringBuilder();
+		while (true){
+			char c = next();
+			if (c == '"') return sb.toString();
+			if (c != '\\'){
+				sb.append(c);
+				continue;
+			}//end if
+			char e = next();
+			switch (e){
+				case 'n': sb.append('\n'); break;
+				case 't': sb.append('\t'); break;
+				case 'r': sb.append('\r'); break;
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'u':
+					if (this._pos + 4 > this._text.length()) throw error("bad escape");
+					sb.append((char) Integer.parseInt(this._text.substring(this._pos, this._pos + 4), 16));
+					this._pos += 4;
+					break;
+				default: sb.append(e);
+			}//end switch
+		}//end while
+	}
+
+	//only white space may follow the object
+	private void end() {
+		skipSpace();
+		if (this._pos < this._text.length()) throw error("unexpected text after the object");
+	}
+
+	private void skipSpace() {
+		while (this._pos < this._text.length() && Character.isWhitespace(this._text.charAt(this._pos))) this._pos++;
+	}
+
+	private char peek() {
+		if (this._pos >= this._text.length()) throw error("unexpected end of line");
+		return this._text.charAt(this._pos);
+	}
+
+	private char next() {
+		char c = peek();
+		this._pos++;
+		return c;
+	}
+
+	private void expect(char c) {
+		if (peek() != c) throw error("expected '" + c + "'");
+		this._pos++;
+	}
+
+	private IllegalArgumentException error(String msg) {
+		return new IllegalArgumentException(msg + " at column " + (this._pos + 1));
+	}
+}//end JsonLine
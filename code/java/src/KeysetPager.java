@@ -0,0 +1,231 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class pages through a listing ordered by an integer key with keyset
+ * pagination: the next page is the rows after the last key shown
+ * (WHERE key > ? ORDER BY key LIMIT ?), the previous page the rows before
+ * the first key shown, read in descending order and turned around.  The
+ * index on the key takes the query straight to the page, so a page costs
+ * the same however deep it is, unlike OFFSET, which reads and drops every
+ * row before it.
+ *
+ * One row more than a page is fetched to tell whether there is another
+ * page in that direction.
+ *
+ */
+
+public abstract class KeysetPager{
+	/**
+	 * Receives the rows of one fetch.
+	 */
+	protected interface Sink{
+		void columns(String[] columns, boolean[] numeric);
+		void row(int key, String[] values);
+	}
+
+	private final int _pageSize;
+	private String[] _columns = new String[0];
+	private boolean[] _numeric = new boolean[0];
+	private final List<String[]> _rows = new ArrayList<String[]>();
+	private final List<Integer> _keys = new ArrayList<Integer>();
+	private boolean _hasNext = false;
+	private boolean _hasPrevious = false;
+
+	protected KeysetPager(int pageSize) {
+		if (pageSize < 1) throw new IllegalArgumentException("page size must be positive: " + pageSize);
+		this._pageSize = pageSize;
+	}
+
+	/**
+	 * Method to create a pager over SQL templates whose last two parameters
+	 * are the key to seek from and the row limit.
+	 *
+	 * @param esql the database session
+	 * @param after the template for rows with a greater key, ascending
+	 * @param before the template for rows with a smaller key, descending
+	 * @param keyColumn the 1-based column holding the key
+	 * @param pageSize the rows per page
+	 * @param params the values of the other placeholders in order
+	 * @return the pager, positioned before the first page
+	 */
+	public static KeysetPager of(final DBproject esql, final String after, final String before, final int keyColumn, int pageSize, final Object... params) {
+		return new KeysetPager(pageSize){
+			protected void fetch(boolean forward, int key, int limit, final Sink sink) throws SQLException {
+				Object[] all = new Object[params.length + 2];
+				System.arraycopy(params, 0, all, 0, params.length);
+				all[params.length] = key;
+				all[params.length + 1] = limit;
+				esql.executeQueryAndStream(forward ? after : before, new Row.ColumnHandler(){
+					private String[] _values;
+
+					public void columns(Row row) throws SQLException {
+						int n = row.getColumnCount();
+						String[] columns = new String[n];
+						boolean[] numeric = new boolean[n];
+						for (int i = 0; i < n; i++){
+							columns[i] = row.getColumnName(i + 1);
+							numeric[i] = ResultRenderer.isNumeric(row.getColumnType(i + 1));
+						}//end for
+						this._values = new String[n];
+						sink.columns(columns, numeric);
+					}
+
+					public void handle(Row row) throws SQLException {
+						for (int i = 0; i < this._values.length; i++) this._values[i] = row.getString(i + 1);
+						sink.row(row.getInt(keyColumn), this._values.clone());
+					}
+				}, all);
+			}
+		};
+	}
+
+	/**
+	 * Method to read up to limit rows whose key is greater than key in
+	 * ascending order (forward) or smaller than key in descending order.
+	 */
+	protected abstract void fetch(boolean forward, int key, int limit, Sink sink) throws SQLException;
+
+	/**
+	 * Method to load the first page.
+	 *
+	 * @return true when it has rows
+	 */
+	public boolean first() throws SQLException {
+		load(true, Integer.MIN_VALUE);
+		this._hasPrevious = false;
+		return !this._rows.isEmpty();
+	}
+
+	/**
+	 * Method to load the last page.
+	 *
+	 * @return true when it has rows
+	 */
+	public boolean last() throws SQLException {
+		load(false, Integer.MAX_VALUE);
+		this._hasNext = false;
+		return !this._rows.isEmpty();
+	}
+
+	/**
+	 * Method to load the page after the current one.
+	 *
+	 * @return false, leaving the current page, when there is none
+	 */
+	public boolean next() throws SQLException {
+		if (!this._hasNext) return false;
+		load(true, this._keys.get(this._keys.size() - 1));
+		this._hasPrevious = true;
+		return true;
+	}
+
+	/**
+	 * Method to load the page before the current one.
+	 *
+	 * @return false, leaving the current page, when there is none
+	 */
+	public boolean previous() throws SQLException {
+		if (!this._hasPrevious) return false;
+		load(false, this._keys.get(0));
+		this._hasNext = true;
+		return true;
+	}
+
+	/**
+	 * Method to load the page that starts after a key, e.g. the "after"
+	 * of an API request.  Whether rows come before it is not checked.
+	 *
+	 * @param key the key to seek from, exclusive
+	 */
+	public void after(int key) throws SQLException {
+		load(true, key);
+		this._hasPrevious = !this._rows.isEmpty();
+	}
+
+	/**
+	 * Method to load the page that ends before a key.  Whether rows come
+	 * after it is not checked.
+	 *
+	 * @param key the key to seek from, exclusive
+	 */
+	public void before(int key) throws SQLException {
+		load(false, key);
+		this._hasNext = !this._rows.isEmpty();
+	}
+
+	private void load(boolean forward, int key) throws SQLException {
+		final List<String[]> rows = new ArrayList<String[]>(this._pageSize + 1);
+		final List<Integer> keys = new ArrayList<Integer>(this._pageSize + 1);
+		fetch(forward, key, this._pageSize + 1, new Sink(){
+			public void columns(String[] columns, boolean[] numeric) {
+				KeysetPager.this._columns = columns;
+				KeysetPager.this._numeric = numeric;
+			}
+
+			public void row(int k, String[] values) {
+				rows.add(values);
+				keys.add(k);
+			}
+		});
+		boolean more = rows.size() > this._pageSize;
+		if (more){
+			rows.remove(this._pageSize);
+			keys.remove(this._pageSize);
+		}//end if
+		if (!forward){
+			Collections.reverse(rows);
+			Collections.reverse(keys);
+		}//end if
+		if (forward) this._hasNext = more;
+		else this._hasPrevious = more;
+		this._rows.clear();
+		this._rows.addAll(rows);
+		this._keys.clear();
+		this._keys.addAll(keys);
+	}
+
+	/**
+	 * Method to write the current page, header first.
+	 *
+	 * @param out the renderer, which is not closed
+	 */
+	public void render(ResultRenderer out) throws IOException {
+		out.begin(this._columns, this._numeric);
+		for (String[] row : this._rows) out.row(row);
+		out.end();
+	}
+
+	public int getPageSize() { return this._pageSize; }
+	public String[] getColumns() { return this._columns; }
+	public boolean[] getNumeric() { return this._numeric; }
+	public List<String[]> getRows() { return this._rows; }
+	public boolean hasNext() { return this._hasNext; }
+	public boolean hasPrevious() { return this._hasPrevious; }
+
+	/**
+	 * @return the key of the first row of the page, for a "before" link
+	 */
+	public int getFirstKey() { return this._keys.get(0); }
+
+	/**
+	 * @return the key of the last row of the page, for an "after" link
+	 */
+	public int getLastKey() { return this._keys.get(this._keys.size() - 1); }
+}//end KeysetPager
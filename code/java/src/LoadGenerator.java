@@ -0,0 +1,135 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class drives the HTTP service with a number of concurrent clients,
+ * each sending GET requests back to back, and reports requests per second
+ * and the p50/p99 latency:
+ *
+ *   java -cp bin/ LoadGenerator http://localhost:8166 32 30 [<path> ...]
+ *
+ * runs 32 clients for 30 seconds.  "{id}" in a path is replaced with a
+ * random number below -Dload.maxId (default 250).  Without paths the
+ * clients mix the listings of options 5, 6 and 8 on the code/data values.
+ *
+ */
+
+public class LoadGenerator{
+	static final String[] DEFAULT_PATHS = {
+		"/doctors/{id}/appointments?from=2020-01-01&to=2021-12-31",
+		"/departments/Cardiology/available?date=2021-01-04",
+		"/patient-counts?status=AC"
+	};
+
+	//latencies of one client in nanoseconds
+	private static final class Client extends Thread{
+		final String base;
+		final String[] paths;
+		final long deadline;
+		final int maxId;
+		final AtomicLong errors;
+		long[] latencies = new long[1024];
+		int count = 0;
+
+		Client(int n, String base, String[] paths, long deadline, int maxId, AtomicLong errors) {
+			super("load-" + n);
+			this.base = base;
+			this.paths = paths;
+			this.deadline = deadline;
+			this.maxId = maxId;
+			this.errors = errors;
+		}
+
+		@Override
+		public void run() {
+			ThreadLocalRandom rnd = ThreadLocalRandom.current();
+			byte[] sink = new byte[8192];
+			while (System.nanoTime() < this.deadline){
+				String path = this.paths[rnd.nextInt(this.paths.length)].replace("{id}", Integer.toString(rnd.nextInt(this.maxId)));
+				long start = System.nanoTime();
+				try{
+					HttpURLConnection c = (HttpURLConnection) new URL(this.base + path).openConnection();
+					int code = c.getResponseCode();
+					InputStream in = code < 400 ? c.getInputStream() : c.getErrorStream();
+					if (in != null){
+						// drain the body so the connection is kept alive
+						while (in.read(sink) > 0){
+						}//end while
+						in.close();
+					}//end if
+					if (code >= 400) this.errors.incrementAndGet();
+				}catch (IOException e){
+					this.errors.incrementAndGet();
+				}//end try
+				if (this.count == this.latencies.length) this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+				this.latencies[this.count++] = System.nanoTime() - start;
+			}//end while
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 1){
+			System.err.println("Usage: java LoadGenerator <base url> [<clients>] [<seconds>] [<path> ...]");
+			return;
+		}//end if
+		String base = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		String[] paths = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length) : DEFAULT_PATHS;
+		int maxId = Integer.getInteger("load.maxId", 250);
+
+		AtomicLong errors = new AtomicLong();
+		long start = System.nanoTime();
+		long deadline = start + seconds * 1000000000L;
+		List<Client> running = new ArrayList<Client>();
+		for (int i = 0; i < clients; i++){
+			Client c = new Client(i, base, paths, deadline, maxId, errors);
+			running.add(c);
+			c.start();
+		}//end for
+		int total = 0;
+		for (Client c : running){
+			c.join();
+			total += c.count;
+		}//end for
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		long[] all = new long[total];
+		int pos = 0;
+		for (Client c : running){
+			System.arraycopy(c.latencies, 0, all, pos, c.count);
+			pos += c.count;
+		}//end for
+		Arrays.sort(all);
+		System.out.println(String.format("%d requests in %.1f s with %d clients, %d errors", total, elapsed, clients, errors.get()));
+		System.out.println(String.format("%.0f requests/s", total / elapsed));
+		System.out.println(String.format("latency ms: p50 %.2f  p99 %.2f  max %.2f", percentile(all, 0.50), percentile(all, 0.99), total == 0 ? 0.0 : all[total - 1] / 1e6));
+	}
+
+	//nearest-rank percentile of sorted nanoseconds, in milliseconds
+	private static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0) return 0.0;
+		int rank = (int) Math.ceil(p * sorted.length);
+		return sorted[Math.max(0, rank - 1)] / 1e6;
+	}
+}//end LoadGenerator
@@ -0,0 +1,80 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class holds the SQL templates of the eight menu operations so they
+ * can be run, explained and warmed up from one place.
+ *
+ */
+
+public final class MenuQueries{
+	//1. Add Doctor
+	public static final String ADD_DOCTOR = "INSERT INTO Doctor (doctor_ID, name, specialty, did) VALUES (?, ?, ?, ?)";
+	//2. Add Patient
+	public static final String ADD_PATIENT = "INSERT INTO Patient (patient_ID, name, gtype, age, address, number_of_appts) VALUES (?, ?, ?, ?, ?, ?)";
+	//3. Add Appointment
+	public static final String ADD_APPOINTMENT = "INSERT INTO Appointment (appnt_ID, adate, time_slot, status) VALUES (?, ?, ?, ?)";
+	//4. Make an Appointment
+	public static final String BOOK_PREPARE = BookingEngine.PREPARE_SQL;
+	public static final String BOOK_PREPARE_KNOWN_DOCTOR = BookingEngine.PREPARE_KNOWN_DOCTOR_SQL;
+	public static final String BOOK_TRANSITION = BookingEngine.TRANSITION_SQL;
+	//5. appointments of a doctor in a date range: doctor, from, to
+	public static final String APPOINTMENTS_OF_DOCTOR = "SELECT A.appnt_ID, A.status FROM Appointment A, Doctor D, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND (A.status = 'AC' OR A.status = 'AV') AND D.doctor_ID = ? AND A.adate >= ? AND A.adate <= ?";
+	//6. available appointments of a department on a date: date, department name
+	public static final String AVAILABLE_OF_DEPARTMENT = "SELECT A.appnt_ID, A.time_slot FROM Appointment A, Doctor D, Department De, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND D.did = De.dept_ID AND A.status = 'AV' AND A.adate = ? AND De.name = ?";
+	//6. the same with the department's doctors taken from the reference cache: date, doctor ids
+	public static final String AVAILABLE_OF_DOCTORS = "SELECT A.appnt_ID, A.time_slot FROM Appointment A, has_appointment H WHERE H.appt_ID = A.appnt_ID AND A.status = 'AV' AND A.adate = ? AND H.doctor_ID = ANY (?)";
+	//7. appointments per doctor and status
+	public static final String STATUS_PER_DOCTOR = "SELECT D.doctor_ID, A.status, COUNT(A.appnt_ID) FROM Doctor D LEFT JOIN has_appointment H ON D.doctor_ID = H.doctor_ID LEFT JOIN Appointment A ON H.appt_ID = A.appnt_ID GROUP BY D.doctor_ID, A.status ORDER BY D.doctor_ID ASC";
+	//8. patients per doctor with a status: status
+	public static final String PATIENTS_PER_DOCTOR = "SELECT D.doctor_ID, D.name, COUNT(A.appnt_ID) AS TotalPatients FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = ? GROUP BY D.doctor_ID ORDER BY D.doctor_ID ASC";
+	//7. and 8. read from doctor_status_summary instead, same columns
+	public static final String STATUS_PER_DOCTOR_SUMMARY = "SELECT D.doctor_ID, S.status, COALESCE(S.appt_count, 0) FROM Doctor D LEFT JOIN doctor_status_summary S ON S.doctor_id = D.doctor_ID ORDER BY D.doctor_ID ASC";
+	public static final String PATIENTS_PER_DOCTOR_SUMMARY = "SELECT D.doctor_ID, D.name, S.appt_count AS TotalPatients FROM Doctor D, doctor_status_summary S WHERE S.doctor_id = D.doctor_ID AND S.status = ? AND S.appt_count > 0 ORDER BY D.doctor_ID ASC";
+	//5., 6. and 8. one page at a time: rows after (or before, descending) a key, see KeysetPager
+	public static final String APPOINTMENTS_OF_DOCTOR_AFTER = "SELECT A.appnt_ID, A.status FROM Appointment A, has_appointment H WHERE H.appt_ID = A.appnt_ID AND (A.status = 'AC' OR A.status = 'AV') AND H.doctor_ID = ? AND A.adate >= ? AND A.adate <= ? AND H.appt_ID > ? ORDER BY H.appt_ID ASC LIMIT ?";
+	public static final String APPOINTMENTS_OF_DOCTOR_BEFORE = "SELECT A.appnt_ID, A.status FROM Appointment A, has_appointment H WHERE H.appt_ID = A.appnt_ID AND (A.status = 'AC' OR A.status = 'AV') AND H.doctor_ID = ? AND A.adate >= ? AND A.adate <= ? AND H.appt_ID < ? ORDER BY H.appt_ID DESC LIMIT ?";
+	public static final String AVAILABLE_OF_DEPARTMENT_AFTER = "SELECT A.appnt_ID, A.time_slot FROM Appointment A, Doctor D, Department De, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND D.did = De.dept_ID AND A.status = 'AV' AND A.adate = ? AND De.name = ? AND A.appnt_ID > ? ORDER BY A.appnt_ID ASC LIMIT ?";
+	public static final String AVAILABLE_OF_DEPARTMENT_BEFORE = "SELECT A.appnt_ID, A.time_slot FROM Appointment A, Doctor D, Department De, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND D.did = De.dept_ID AND A.status = 'AV' AND A.adate = ? AND De.name = ? AND A.appnt_ID < ? ORDER BY A.appnt_ID DESC LIMIT ?";
+	public static final String AVAILABLE_OF_DOCTORS_AFTER = "SELECT A.appnt_ID, A.time_slot FROM Appointment A, has_appointment H WHERE H.appt_ID = A.appnt_ID AND A.status = 'AV' AND A.adate = ? AND H.doctor_ID = ANY (?) AND A.appnt_ID > ? ORDER BY A.appnt_ID ASC LIMIT ?";
+	public static final String AVAILABLE_OF_DOCTORS_BEFORE = "SELECT A.appnt_ID, A.time_slot FROM Appointment A, has_appointment H WHERE H.appt_ID = A.appnt_ID AND A.status = 'AV' AND A.adate = ? AND H.doctor_ID = ANY (?) AND A.appnt_ID < ? ORDER BY A.appnt_ID DESC LIMIT ?";
+	public static final String PATIENTS_PER_DOCTOR_AFTER = "SELECT D.doctor_ID, D.name, COUNT(A.appnt_ID) AS TotalPatients FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = ? AND D.doctor_ID > ? GROUP BY D.doctor_ID ORDER BY D.doctor_ID ASC LIMIT ?";
+	public static final String PATIENTS_PER_DOCTOR_BEFORE = "SELECT D.doctor_ID, D.name, COUNT(A.appnt_ID) AS TotalPatients FROM Doctor D, Appointment A, has_appointment H WHERE D.doctor_ID = H.doctor_ID AND H.appt_ID = A.appnt_ID AND A.status = ? AND D.doctor_ID < ? GROUP BY D.doctor_ID ORDER BY D.doctor_ID DESC LIMIT ?";
+	public static final String PATIENTS_PER_DOCTOR_SUMMARY_AFTER = "SELECT D.doctor_ID, D.name, S.appt_count AS TotalPatients FROM Doctor D, doctor_status_summary S WHERE S.doctor_id = D.doctor_ID AND S.status = ? AND S.appt_count > 0 AND S.doctor_id > ? ORDER BY S.doctor_id ASC LIMIT ?";
+	public static final String PATIENTS_PER_DOCTOR_SUMMARY_BEFORE = "SELECT D.doctor_ID, D.name, S.appt_count AS TotalPatients FROM Doctor D, doctor_status_summary S WHERE S.doctor_id = D.doctor_ID AND S.status = ? AND S.appt_count > 0 AND S.doctor_id < ? ORDER BY S.doctor_id DESC LIMIT ?";
+	//every appointment of a department's doctors, for export
+	public static final String DEPARTMENT_HISTORY = "SELECT A.appnt_ID, A.adate, A.time_slot, A.status, D.doctor_ID, D.name FROM Appointment A, has_appointment H, Doctor D, Department De WHERE H.appt_ID = A.appnt_ID AND D.doctor_ID = H.doctor_ID AND D.did = De.dept_ID AND De.name = ? ORDER BY A.adate, A.appnt_ID";
+	//appointments whose slot overlaps a slot of a date, for export (needs sql/compact.sql): date, time_slot
+	public static final String OVERLAPPING_SLOT = "SELECT A.appnt_ID, A.adate, A.time_slot, A.status, H.doctor_ID FROM Appointment A LEFT JOIN has_appointment H ON H.appt_ID = A.appnt_ID WHERE time_slot_range(A.adate, A.time_slot) && time_slot_range(?, ?) ORDER BY A.appnt_ID, H.doctor_ID";
+
+	/**
+	 * The read-only menu queries with representative parameter values from
+	 * code/data, used to print their plans.
+	 */
+	public static final Object[][] SAMPLES = {
+		{ "5. List appointments of a given doctor", APPOINTMENTS_OF_DOCTOR, 11, java.sql.Date.valueOf("2020-01-01"), java.sql.Date.valueOf("2021-12-31") },
+		{ "6. List all available appointments of a given department", AVAILABLE_OF_DEPARTMENT, java.sql.Date.valueOf("2021-01-04"), "Cardiology" },
+		{ "6. List all available appointments of given doctors (cached department)", AVAILABLE_OF_DOCTORS, java.sql.Date.valueOf("2021-01-04"), new Integer[] { 0, 1, 2 } },
+		{ "7. List total number of different types of appointments per doctor", STATUS_PER_DOCTOR },
+		{ "8. Find total number of patients per doctor with a given status", PATIENTS_PER_DOCTOR, "AC" },
+		{ "7. List total number of different types of appointments per doctor (summary)", STATUS_PER_DOCTOR_SUMMARY },
+		{ "8. Find total number of patients per doctor with a given status (summary)", PATIENTS_PER_DOCTOR_SUMMARY, "AC" },
+		{ "5. One page of appointments of a given doctor", APPOINTMENTS_OF_DOCTOR_AFTER, 11, java.sql.Date.valueOf("2020-01-01"), java.sql.Date.valueOf("2021-12-31"), 0, 21 },
+		{ "6. One page of available appointments of a given department", AVAILABLE_OF_DEPARTMENT_AFTER, java.sql.Date.valueOf("2021-01-04"), "Cardiology", 0, 21 },
+		{ "8. One page of patients per doctor with a given status", PATIENTS_PER_DOCTOR_AFTER, "AC", 0, 21 },
+		{ "Appointment history of a department (export)", DEPARTMENT_HISTORY, "Cardiology" }
+	};
+
+	private MenuQueries() {
+	}
+}//end MenuQueries
@@ -0,0 +1,253 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class folds the rows of patient_appts_delta into
+ * Patient.number_of_appts (see the PATIENT COUNTS section of post_load.sql).
+ * Bookings only append deltas, so they never wait for each other on a
+ * Patient row; rollUp() sums the oldest deltas per patient, updates each
+ * patient once and deletes them in one transaction, a batch at a time.
+ * start() runs it in the background while the menu books.
+ *
+ * Until a rollup runs number_of_appts lags behind the links; the view
+ * patient_appointment_count adds the pending deltas.  reconcile()
+ * recomputes every count from has_appointment, e.g. after a TRUNCATE.
+ *
+ */
+
+public class PatientCounter implements AutoCloseable{
+	static final String IS_INSTALLED_SQL = "SELECT 1 FROM pg_class WHERE oid = to_regclass('patient_appts_delta')";
+
+	// one rollup at a time, the others skip their turn; the setting tells the
+	// legacy_appts trigger that the update comes from the counter
+	static final String BEGIN_ROLLUP_SQL = "SELECT pg_try_advisory_xact_lock(hashtext('patient_appts_delta')), set_config('dbproject.counting', 'on', true)";
+
+	// takes the oldest deltas and adds their sums, one update per patient
+	static final String ROLLUP_SQL =
+		"WITH d AS (DELETE FROM patient_appts_delta WHERE delta_id IN (SELECT delta_id FROM patient_appts_delta ORDER BY delta_id LIMIT ?) RETURNING patient_id, delta), " +
+		"s AS (SELECT patient_id, SUM(delta) AS delta FROM d GROUP BY patient_id), " +
+		"u AS (UPDATE Patient P SET number_of_appts = COALESCE(P.number_of_appts, 0) + s.delta FROM s WHERE P.patient_ID = s.patient_id AND s.delta <> 0 RETURNING 1) " +
+		"SELECT (SELECT COUNT(*) FROM d), (SELECT COUNT(*) FROM u)";
+
+	// keeps bookings and rollups out until the recount commits
+	static final String BEGIN_RECONCILE_SQL = "LOCK TABLE patient_appts_delta IN SHARE ROW EXCLUSIVE MODE";
+	static final String COUNTING_SQL = "SELECT set_config('dbproject.counting', 'on', true)";
+	static final String RECONCILE_SQL =
+		"UPDATE Patient P SET number_of_appts = c.n FROM (SELECT P2.patient_ID, P2.legacy_appts + COUNT(H.patient_id) AS n " +
+		"FROM Patient P2 LEFT JOIN has_appointment H ON H.patient_id = P2.patient_ID GROUP BY P2.patient_ID) c " +
+		"WHERE P.patient_ID = c.patient_ID AND P.number_of_appts IS DISTINCT FROM c.n";
+	static final String CLEAR_SQL = "DELETE FROM patient_appts_delta";
+
+	private final ConnectionPool _pool;
+	private final int _batchSize;
+	private volatile QueryMetrics _metrics = null;
+	private ScheduledExecutorService _scheduler = null;
+	private final AtomicLong _rollups = new AtomicLong();
+	private final AtomicLong _deltas = new AtomicLong();
+	private final AtomicLong _patients = new AtomicLong();
+
+	public PatientCounter(ConnectionPool pool) {
+		this(pool, Integer.getInteger("dbproject.patients.batchSize", 10000));
+	}
+
+	/**
+	 * @param batchSize how many deltas one rollup transaction folds
+	 */
+	public PatientCounter(ConnectionPool pool, int batchSize) {
+		if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+		this._pool = pool;
+		this._batchSize = batchSize;
+	}
+
+	/**
+	 * Method to tell whether the delta table exists.
+	 *
+	 * @param esql the database session
+	 * @return true when create.sql made it
+	 * @throws java.sql.SQLException when the catalog could not be read
+	 */
+	public static boolean isInstalled(DBproject esql) throws SQLException {
+		return esql.exists(IS_INSTALLED_SQL);
+	}
+
+	/**
+	 * Method to roll up in the background now and every intervalMs.
+	 *
+	 * @param intervalMs the pause between two rollups
+	 */
+	public synchronized void start(long intervalMs) {
+		if (this._scheduler != null) return;
+		this._scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "patient-counter");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this._scheduler.scheduleWithFixedDelay(new Runnable(){
+			public void run() {
+				try{
+					rollUp();
+				}catch (SQLException e){
+					System.err.println("Patient counts not rolled up: " + e.getMessage());
+				}//end try
+			}
+		}, 0, Math.max(100L, intervalMs), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to fold every pending delta into Patient, batchSize deltas per
+	 * transaction.
+	 *
+	 * @return the number of deltas folded, -1 when another rollup was
+	 *         running
+	 * @throws java.sql.SQLException when a batch failed; the batches
+	 *         committed before stay folded
+	 */
+	public long rollUp() throws SQLException {
+		long folded = 0;
+		int failures = 0;
+		while (true){
+			long batch;
+			PooledConnection conn = this._pool.borrow();
+			try{
+				batch = rollUpBatch(conn);
+			}catch (SQLException e){
+				if (!BookingEngine.isRetryable(e) || ++failures > 5) throw e;
+				continue;
+			}finally{
+				this._pool.release(conn);
+			}
+			if (batch < 0) return folded == 0 ? -1 : folded;
+			if (batch == 0) return folded;
+			folded += batch;
+		}//end while
+	}
+
+	/**
+	 * Method to run one rollup transaction.
+	 *
+	 * @return the deltas folded, -1 when another rollup holds the lock
+	 */
+	private long rollUpBatch(PooledConnection conn) throws SQLException {
+		Connection c = conn.getConnection();
+		c.setAutoCommit(false);
+		PreparedStatement begin = conn.prepare(BEGIN_ROLLUP_SQL);
+		ResultSet rs = begin.executeQuery();
+		boolean locked;
+		try{
+			locked = rs.next() && rs.getBoolean(1);
+		}finally{
+			rs.close();
+		}
+		if (!locked){
+			c.rollback();
+			return -1;
+		}//end if
+
+		PreparedStatement rollup = conn.prepare(ROLLUP_SQL);
+		StatementCache.bind(rollup, this._batchSize);
+		long start = System.nanoTime();
+		long deltas = 0, patients = 0;
+		rs = rollup.executeQuery();
+		try{
+			if (rs.next()){
+				deltas = rs.getLong(1);
+				patients = rs.getLong(2);
+			}//end if
+		}finally{
+			rs.close();
+		}
+		record(ROLLUP_SQL, start, patients);
+		c.commit();
+		if (deltas > 0){
+			this._rollups.incrementAndGet();
+			this._deltas.addAndGet(deltas);
+			this._patients.addAndGet(patients);
+		}//end if
+		return deltas;
+	}
+
+	/**
+	 * Method to recompute every number_of_appts as its legacy count plus
+	 * the patient's has_appointment links and drop the pending deltas.
+	 * Bookings and rollups wait until it is done.
+	 *
+	 * @return the number of patients whose count changed
+	 * @throws java.sql.SQLException when the recount failed; nothing changed
+	 */
+	public int reconcile() throws SQLException {
+		int failures = 0;
+		while (true){
+			PooledConnection conn = this._pool.borrow();
+			try{
+				return reconcileOnce(conn);
+			}catch (SQLException e){
+				if (!BookingEngine.isRetryable(e) || ++failures > 5) throw e;
+			}finally{
+				this._pool.release(conn);
+			}
+		}//end while
+	}
+
+	private int reconcileOnce(PooledConnection conn) throws SQLException {
+		Connection c = conn.getConnection();
+		c.setAutoCommit(false);
+		conn.prepare(BEGIN_RECONCILE_SQL).execute();
+		conn.prepare(COUNTING_SQL).execute();
+		long start = System.nanoTime();
+		int changed = conn.prepare(RECONCILE_SQL).executeUpdate();
+		record(RECONCILE_SQL, start, changed);
+		conn.prepare(CLEAR_SQL).executeUpdate();
+		c.commit();
+		return changed;
+	}
+
+	/**
+	 * Method to set where the latencies of the rollups are recorded.
+	 *
+	 * @param metrics the metrics, or null for none
+	 */
+	public void setMetrics(QueryMetrics metrics) {
+		this._metrics = metrics;
+	}
+
+	/**
+	 * Method to stop the background rollup.
+	 */
+	public synchronized void close() {
+		if (this._scheduler != null){
+			this._scheduler.shutdownNow();
+			this._scheduler = null;
+		}//end if
+	}
+
+	public String toString() {
+		return "rollups=" + this._rollups.get() + " deltas=" + this._deltas.get() + " patients=" + this._patients.get();
+	}
+
+	private void record(String sql, long start, long rows) {
+		QueryMetrics metrics = this._metrics;
+		if (metrics != null) metrics.query(sql, start, rows, false);
+	}
+}//end PatientCounter
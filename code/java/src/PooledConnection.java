@@ -0,0 +1,92 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * This class wraps one physical connection owned by a ConnectionPool
+ * together with the prepared statements cached on it.
+ *
+ */
+
+public class PooledConnection{
+	private final Connection _connection;
+	private final StatementCache _statements;
+	private final long _createdAt;
+	//last time the connection was handed back to the pool
+	long lastReleased;
+
+	PooledConnection(Connection connection, int stmtCacheSize) {
+		this._connection = connection;
+		this._statements = new StatementCache(connection, stmtCacheSize);
+		this._createdAt = System.currentTimeMillis();
+		this.lastReleased = this._createdAt;
+	}
+
+	/**
+	 * Method to return the physical connection.  Callers must not close it;
+	 * it goes back to the pool once the borrowing operation finishes.
+	 *
+	 * @return the physical database connection
+	 */
+	public Connection getConnection() {
+		return this._connection;
+	}
+
+	/**
+	 * Method to fetch the cached prepared statement for a SQL template on
+	 * this connection.
+	 *
+	 * @param sql the SQL template with '?' placeholders
+	 * @return an open prepared statement with its parameters cleared
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		return this._statements.prepare(sql);
+	}
+
+	/**
+	 * Method to prepare a SQL template before its first use: the statement
+	 * is cached and its parameters are described by the server, which
+	 * parses and analyzes it.  The first real execution then skips the
+	 * driver's parsing and finds the server's catalog caches warm.
+	 *
+	 * @param sql the SQL template with '?' placeholders
+	 * @throws java.sql.SQLException when the server rejects the statement
+	 */
+	public void warm(String sql) throws SQLException {
+		this._statements.prepare(sql).getParameterMetaData();
+	}
+
+	public StatementCache getStatementCache() {
+		return this._statements;
+	}
+
+	public long getCreatedAt() {
+		return this._createdAt;
+	}
+
+	/**
+	 * Method to close the cached statements and the physical connection.
+	 */
+	void close() {
+		this._statements.clear();
+		try{
+			this._connection.close();
+		}catch (SQLException e){
+			// ignored.
+		}//end try
+	}
+}//end PooledConnection
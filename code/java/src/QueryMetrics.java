@@ -0,0 +1,263 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class times the menu operations and the SQL statements they run.
+ * Each operation and each SQL template gets a QueryStats with a latency
+ * histogram, row and error counts, published as JMX MBeans under the
+ * "dbproject" domain (type=Operation and type=Query).  Statements slower
+ * than dbproject.metrics.slowMs (default 250, 0 turns it off) are logged
+ * to standard error, without their parameter values.  With
+ * dbproject.metrics.dumpSeconds set the table of dump() is printed to
+ * standard error that often.
+ *
+ * SQL templates declared in MenuQueries are reported by their constant
+ * name, other statements by their first 80 characters.
+ *
+ */
+
+public class QueryMetrics implements QueryMetricsMBean, AutoCloseable{
+	private static final String DOMAIN = "dbproject";
+	//labels of the templates seen so far, MenuQueries constants up front
+	private static final ConcurrentHashMap<String, String> LABELS = labels();
+	private static final int MAX_LABELS = 1024;
+
+	private final ConcurrentHashMap<String, QueryStats> _queries = new ConcurrentHashMap<String, QueryStats>();
+	private final ConcurrentHashMap<String, QueryStats> _operations = new ConcurrentHashMap<String, QueryStats>();
+	private final List<ObjectName> _registered = Collections.synchronizedList(new ArrayList<ObjectName>());
+	private final boolean _jmx;
+	private final AtomicLong _slowQueries = new AtomicLong();
+	private volatile long _slowNanos;
+	private ScheduledExecutorService _dumper = null;
+
+	//statement errors of the operation running on this thread
+	private final ThreadLocal<int[]> _errorsOfThread = new ThreadLocal<int[]>(){
+		protected int[] initialValue() { return new int[1]; }
+	};
+	//nanoseconds this thread spent waiting for console input
+	private static final ThreadLocal<long[]> WAITED = new ThreadLocal<long[]>(){
+		protected long[] initialValue() { return new long[1]; }
+	};
+
+	public QueryMetrics() {
+		this(Long.getLong("dbproject.metrics.slowMs", 250L), Long.getLong("dbproject.metrics.dumpSeconds", 0L), !"false".equals(System.getProperty("dbproject.metrics.jmx")));
+	}
+
+	public QueryMetrics(long slowMillis, long dumpSeconds, boolean jmx) {
+		this._slowNanos = slowMillis * 1000000L;
+		this._jmx = jmx;
+		if (jmx) register(this, "type=QueryMetrics");
+		if (dumpSeconds > 0){
+			this._dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "metrics-dump");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			this._dumper.scheduleAtFixedRate(new Runnable(){
+				public void run() { System.err.print(dump()); }
+			}, dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+		}//end if
+	}
+
+	/**
+	 * Method to record one SQL statement.
+	 *
+	 * @param sql the statement template
+	 * @param startNanos System.nanoTime() before it was sent
+	 * @param rows the rows it returned or changed
+	 * @param failed whether it ended with an error
+	 */
+	public void query(String sql, long startNanos, long rows, boolean failed) {
+		long nanos = System.nanoTime() - startNanos;
+		String label = label(sql);
+		stats(this._queries, "Query", label).record(nanos, rows, failed);
+		if (failed) this._errorsOfThread.get()[0]++;
+		long slow = this._slowNanos;
+		if (slow > 0 && nanos >= slow){
+			this._slowQueries.incrementAndGet();
+			System.err.println(String.format("Slow query: %.1f ms, %d rows%s: %s", nanos / 1e6, rows, failed ? ", failed" : "", label));
+		}//end if
+	}
+
+	/**
+	 * Method to run a menu operation and record it.  Time spent waiting for
+	 * console input (see waited()) is not counted.  The operation counts as
+	 * failed when it threw or when one of its statements failed, even if the
+	 * operation caught that error itself.
+	 *
+	 * @param name the operation name
+	 * @param work the operation
+	 */
+	public void operation(String name, Runnable work) {
+		long start = System.nanoTime();
+		long[] waited = WAITED.get();
+		long waitedBefore = waited[0];
+		int[] errors = this._errorsOfThread.get();
+		int before = errors[0];
+		boolean threw = true;
+		try{
+			work.run();
+			threw = false;
+		}finally{
+			long nanos = System.nanoTime() - start - (waited[0] - waitedBefore);
+			stats(this._operations, "Operation", name).record(nanos, 0, threw || errors[0] != before);
+		}
+	}
+
+	/**
+	 * Method to note that the current thread waited for input, e.g. for
+	 * the clerk to type a value, so the running operation excludes it.
+	 *
+	 * @param nanos how long it waited
+	 */
+	public static void waited(long nanos) {
+		WAITED.get()[0] += nanos;
+	}
+
+	/**
+	 * Method to record an operation that was timed by the caller.
+	 *
+	 * @param name the operation name
+	 * @param startNanos System.nanoTime() when it started
+	 * @param failed whether it failed
+	 */
+	public void operation(String name, long startNanos, boolean failed) {
+		stats(this._operations, "Operation", name).record(System.nanoTime() - startNanos, 0, failed);
+	}
+
+	/**
+	 * Method to format every operation and SQL template as a table, the
+	 * ones with the most total time first.
+	 */
+	public String dump() {
+		StringBuilder sb = new StringBuilder(1024);
+		String header = String.format("%-44s %9s %7s %10s %9s %9s %9s %9s%n", "", "count", "errors", "rows", "mean ms", "p50 ms", "p99 ms", "max ms");
+		sb.append(String.format("%-44s", "Operation")).append(header.substring(44));
+		table(this._operations, sb);
+		sb.append(String.format("%-44s", "SQL template")).append(header.substring(44));
+		table(this._queries, sb);
+		if (this._slowNanos > 0) sb.append(String.format("%d statements slower than %d ms%n", this._slowQueries.get(), getSlowQueryMillis()));
+		return sb.toString();
+	}
+
+	public void reset() {
+		for (QueryStats s : this._operations.values()) s.reset();
+		for (QueryStats s : this._queries.values()) s.reset();
+		this._slowQueries.set(0);
+	}
+
+	public long getSlowQueryCount() { return this._slowQueries.get(); }
+	public long getSlowQueryMillis() { return this._slowNanos / 1000000L; }
+	public void setSlowQueryMillis(long millis) { this._slowNanos = Math.max(0, millis) * 1000000L; }
+
+	public QueryStats getQueryStats(String sql) { return this._queries.get(label(sql)); }
+	public QueryStats getOperationStats(String name) { return this._operations.get(name); }
+
+	/**
+	 * Method to stop the periodic dump and remove the MBeans.
+	 */
+	public void close() {
+		if (this._dumper != null) this._dumper.shutdownNow();
+		if (!this._jmx) return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		synchronized (this._registered){
+			for (ObjectName name : this._registered){
+				try{
+					server.unregisterMBean(name);
+				}catch (JMException e){
+					// ignored.
+				}//end try
+			}//end for
+			this._registered.clear();
+		}
+	}
+
+	private QueryStats stats(ConcurrentHashMap<String, QueryStats> map, String type, String name) {
+		QueryStats s = map.get(name);
+		if (s != null) return s;
+		QueryStats created = new QueryStats(name);
+		s = map.putIfAbsent(name, created);
+		if (s != null) return s;
+		if (this._jmx) register(created, "type=" + type + ",name=" + ObjectName.quote(name));
+		return created;
+	}
+
+	private void register(Object bean, String properties) {
+		try{
+			ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(bean, name);
+			this._registered.add(name);
+		}catch (JMException e){
+			// ignored, e.g. a second session in the same JVM keeps its stats unpublished.
+		}//end try
+	}
+
+	private static void table(Map<String, QueryStats> map, StringBuilder sb) {
+		List<QueryStats> rows = new ArrayList<QueryStats>(map.values());
+		Collections.sort(rows, new Comparator<QueryStats>(){
+			public int compare(QueryStats a, QueryStats b) { return Long.compare(b.getTotalNanos(), a.getTotalNanos()); }
+		});
+		for (QueryStats s : rows){
+			if (s.getCount() == 0) continue;
+			String name = s.getName().length() > 44 ? s.getName().substring(0, 41) + "..." : s.getName();
+			sb.append(String.format("%-44s %9d %7d %10d %9.2f %9.2f %9.2f %9.2f%n", name, s.getCount(), s.getErrorCount(), s.getRowCount(), s.getMeanMillis(), s.getP50Millis(), s.getP99Millis(), s.getMaxMillis()));
+		}//end for
+	}
+
+	/**
+	 * Method to name a SQL template: its MenuQueries constant, else its
+	 * first 80 characters on one line.
+	 */
+	static String label(String sql) {
+		String label = LABELS.get(sql);
+		if (label != null) return label;
+		String flat = sql.replaceAll("\\s+", " ").trim();
+		label = flat.length() > 80 ? flat.substring(0, 77) + "..." : flat;
+		if (LABELS.size() < MAX_LABELS) LABELS.putIfAbsent(sql, label);
+		return label;
+	}
+
+	private static ConcurrentHashMap<String, String> labels() {
+		ConcurrentHashMap<String, String> labels = new ConcurrentHashMap<String, String>();
+		for (Field f : MenuQueries.class.getFields()){
+			if (f.getType() != String.class || !Modifier.isStatic(f.getModifiers())) continue;
+			try{
+				labels.put((String) f.get(null), f.getName());
+			}catch (IllegalAccessException e){
+				// ignored.
+			}//end try
+		}//end for
+		return labels;
+	}
+}//end QueryMetrics
@@ -0,0 +1,26 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * The JMX view of QueryMetrics: the text dump, the slow query threshold
+ * and a reset.
+ *
+ */
+
+public interface QueryMetricsMBean{
+	String dump();
+	void reset();
+	long getSlowQueryCount();
+	long getSlowQueryMillis();
+	void setSlowQueryMillis(long millis);
+}//end QueryMetricsMBean
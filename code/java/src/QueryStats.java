@@ -0,0 +1,123 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts the calls, errors and rows of one menu operation or
+ * SQL template and keeps a histogram of their latencies.  The histogram
+ * has 8 buckets per power of two microseconds, so a percentile is within
+ * 12.5% of the true value; recording is lock free.
+ *
+ */
+
+public class QueryStats implements QueryStatsMBean{
+	//8 sub-buckets for each power of two up to 2^40 us (about 12 days)
+	private static final int SUB_BITS = 3;
+	private static final int SUBS = 1 << SUB_BITS;
+	private static final int BUCKETS = (40 - SUB_BITS + 2) * SUBS;
+
+	private final String _name;
+	private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong _count = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+	private final AtomicLong _rows = new AtomicLong();
+	private final AtomicLong _totalNanos = new AtomicLong();
+	private final AtomicLong _maxNanos = new AtomicLong();
+
+	public QueryStats(String name) {
+		this._name = name;
+	}
+
+	/**
+	 * Method to record one call.
+	 *
+	 * @param nanos how long it took
+	 * @param rows the rows it returned or changed
+	 * @param failed whether it ended with an error
+	 */
+	public void record(long nanos, long rows, boolean failed) {
+		this._count.incrementAndGet();
+		if (failed) this._errors.incrementAndGet();
+		if (rows > 0) this._rows.addAndGet(rows);
+		this._totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = this._maxNanos.get()) && !this._maxNanos.compareAndSet(max, nanos)){
+			// another thread raised the maximum, compare again
+		}//end while
+		this._buckets.incrementAndGet(bucketOf(nanos / 1000));
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) this._buckets.set(i, 0);
+		this._count.set(0);
+		this._errors.set(0);
+		this._rows.set(0);
+		this._totalNanos.set(0);
+		this._maxNanos.set(0);
+	}
+
+	public String getName() { return this._name; }
+	public long getCount() { return this._count.get(); }
+	public long getErrorCount() { return this._errors.get(); }
+	public long getRowCount() { return this._rows.get(); }
+	public long getTotalNanos() { return this._totalNanos.get(); }
+	public double getMaxMillis() { return this._maxNanos.get() / 1e6; }
+	public double getP50Millis() { return percentileMillis(0.50); }
+	public double getP90Millis() { return percentileMillis(0.90); }
+	public double getP99Millis() { return percentileMillis(0.99); }
+
+	public double getMeanMillis() {
+		long n = this._count.get();
+		return n == 0 ? 0.0 : this._totalNanos.get() / 1e6 / n;
+	}
+
+	/**
+	 * Method to estimate a latency percentile from the histogram.
+	 *
+	 * @param p the fraction of calls at or below the result, e.g. 0.99
+	 * @return the upper bound of the bucket holding that call, in ms
+	 */
+	public double percentileMillis(double p) {
+		long total = 0;
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++){
+			counts[i] = this._buckets.get(i);
+			total += counts[i];
+		}//end for
+		if (total == 0) return 0.0;
+		long rank = Math.max(1, (long) Math.ceil(p * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			seen += counts[i];
+			if (seen >= rank) return Math.min(upperMicrosOf(i) / 1e3, getMaxMillis());
+		}//end for
+		return getMaxMillis();
+	}
+
+	//below 8 us one bucket per us, then 8 buckets per power of two
+	static int bucketOf(long micros) {
+		if (micros < SUBS) return (int) Math.max(0, micros);
+		int exp = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUBS - 1);
+		return Math.min(BUCKETS - 1, (exp - SUB_BITS + 1) * SUBS + sub);
+	}
+
+	static long upperMicrosOf(int bucket) {
+		if (bucket < SUBS) return bucket + 1;
+		int exp = bucket / SUBS + SUB_BITS - 1;
+		int sub = bucket % SUBS;
+		return ((long) (SUBS + sub + 1)) << (exp - SUB_BITS);
+	}
+}//end QueryStats
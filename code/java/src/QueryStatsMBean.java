@@ -0,0 +1,29 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * The JMX view of one QueryStats: a menu operation or a SQL template.
+ *
+ */
+
+public interface QueryStatsMBean{
+	String getName();
+	long getCount();
+	long getErrorCount();
+	long getRowCount();
+	double getMeanMillis();
+	double getP50Millis();
+	double getP90Millis();
+	double getP99Millis();
+	double getMaxMillis();
+}//end QueryStatsMBean
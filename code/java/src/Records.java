@@ -0,0 +1,152 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class holds plain value records for the rows the menu operations
+ * write.  params() returns the values in the order of the matching
+ * MenuQueries insert template.  Time slots and statuses read from JSON
+ * are checked and normalized here, so every path that writes them rejects
+ * a bad value with an IllegalArgumentException instead of a database
+ * error.
+ *
+ */
+
+public final class Records{
+	private Records() {
+	}
+
+	/**
+	 * A row of Doctor (option 1).
+	 */
+	public static final class Doctor{
+		public final int doctorId;
+		public final String name;
+		public final String specialty;
+		public final int deptId;
+
+		public Doctor(int doctorId, String name, String specialty, int deptId) {
+			this.doctorId = doctorId;
+			this.name = name;
+			this.specialty = specialty;
+			this.deptId = deptId;
+		}
+
+		public static Doctor from(JsonLine j) {
+			return new Doctor(j.requireInt("doctor_ID"), j.getString("name"), j.getString("specialty"), j.requireInt("did"));
+		}
+
+		public Object[] params() {
+			return new Object[] { this.doctorId, this.name, this.specialty, this.deptId };
+		}
+	}//end Doctor
+
+	/**
+	 * A row of Patient (option 2).
+	 */
+	public static final class Patient{
+		public final int patientId;
+		public final String name;
+		public final String gender;
+		public final int age;
+		public final String address;
+		public final int appointments;
+
+		public Patient(int patientId, String name, String gender, int age, String address, int appointments) {
+			this.patientId = patientId;
+			this.name = name;
+			this.gender = gender;
+			this.age = age;
+			this.address = address;
+			this.appointments = appointments;
+		}
+
+		public static Patient from(JsonLine j) {
+			return new Patient(j.requireInt("patient_ID"), j.requireString("name"), j.requireString("gtype"), j.requireInt("age"), j.getString("address"), j.has("number_of_appts") ? j.requireInt("number_of_appts") : 0);
+		}
+
+		public Object[] params() {
+			return new Object[] { this.patientId, this.name, this.gender, this.age, this.address, this.appointments };
+		}
+	}//end Patient
+
+	/**
+	 * A row of Appointment (option 3).
+	 */
+	public static final class Appointment{
+		public final int appointmentId;
+		public final java.sql.Date date;
+		public final String timeSlot;
+		public final String status;
+
+		public Appointment(int appointmentId, java.sql.Date date, String timeSlot, String status) {
+			this.appointmentId = appointmentId;
+			this.date = date;
+			this.timeSlot = timeSlot;
+			this.status = status;
+		}
+
+		public static Appointment from(JsonLine j) {
+			return new Appointment(j.requireInt("appnt_ID"), date(j), timeSlot(j.getString("time_slot")), status(j.getString("status")));
+		}
+
+		public Object[] params() {
+			return new Object[] { this.appointmentId, this.date, this.timeSlot, this.status };
+		}
+	}//end Appointment
+
+	/**
+	 * Method to read a booking request (option 4) from a JSON object using
+	 * the column names, with patient_name and doctor_name for the names.
+	 *
+	 * @param j the parsed object
+	 * @return the booking request
+	 */
+	public static BookingEngine.Request booking(JsonLine j) {
+		BookingEngine.Request r = new BookingEngine.Request();
+		r.patientId = j.requireInt("patient_ID");
+		r.patientName = j.getString("patient_name");
+		r.gender = j.getString("gtype");
+		r.age = j.has("age") ? j.requireInt("age") : 0;
+		r.address = j.getString("address");
+		r.prevAppointments = j.has("number_of_appts") ? j.requireInt("number_of_appts") : 0;
+		r.doctorId = j.requireInt("doctor_ID");
+		r.doctorName = j.getString("doctor_name");
+		r.specialty = j.getString("specialty");
+		r.deptId = j.has("did") ? j.requireInt("did") : 0;
+		r.appointmentId = j.requireInt("appnt_ID");
+		r.date = date(j);
+		r.timeSlot = timeSlot(j.getString("time_slot"));
+		r.status = status(j.getString("status"));
+		return r;
+	}
+
+	//adate as YYYY-MM-DD
+	private static java.sql.Date date(JsonLine j) {
+		String text = j.requireString("adate");
+		try{
+			return java.sql.Date.valueOf(text);
+		}catch (IllegalArgumentException e){
+			throw new IllegalArgumentException("invalid adate: " + text + " (YYYY-MM-DD)");
+		}//end try
+	}
+
+	//the slot as H:MM-H:MM, null when absent
+	private static String timeSlot(String text) {
+		return text == null ? null : TimeSlot.parse(text).toString();
+	}
+
+	//the two-letter code, null when absent
+	private static String status(String text) {
+		return text == null ? null : AppointmentStatus.parse(text).name();
+	}
+}//end Records
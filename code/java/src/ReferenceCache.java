@@ -0,0 +1,399 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * This class keeps read-through copies of the reference tables the menu
+ * looks up over and over: the departments and doctors behind a department
+ * name (option 6), doctor rows (option 4) and hospital names.  Each map
+ * holds at most maxEntries entries and drops the least recently used one.
+ *
+ * The triggers of code/sql/post_load.sql announce every change of Department,
+ * Doctor and Hospital on channel reference_change.  A listener thread polls
+ * a dedicated connection for those notices every pollMs and drops the
+ * affected entries, so a cached value is at most pollMs behind the commit
+ * that changed it.  While the listener is not connected nothing is cached
+ * and every lookup goes to the database.
+ *
+ */
+
+public class ReferenceCache implements AutoCloseable{
+	public static final String CHANNEL = "reference_change";
+
+	//the triggers that must exist before anything may be cached
+	static final String[] TRIGGERS = { "department_notify_trg", "doctor_notify_trg", "hospital_notify_trg" };
+
+	static final String DEPARTMENT_SQL = "SELECT De.dept_ID, D.doctor_ID FROM Department De LEFT JOIN Doctor D ON D.did = De.dept_ID WHERE De.name = ? ORDER BY 1, 2";
+	static final String DOCTOR_SQL = "SELECT doctor_ID, name, specialty, did FROM Doctor WHERE doctor_ID = ?";
+	static final String HOSPITAL_SQL = "SELECT name FROM Hospital WHERE hospital_ID = ?";
+
+	/**
+	 * The departments with one name, one per hospital, and their doctors.
+	 */
+	public static final class Department{
+		public final String name;
+		public final Integer[] deptIds;
+		public final Integer[] doctorIds;
+
+		Department(String name, Integer[] deptIds, Integer[] doctorIds) {
+			this.name = name;
+			this.deptIds = deptIds;
+			this.doctorIds = doctorIds;
+		}
+	}//end Department
+
+	//a map that drops its least recently used entry beyond capacity
+	private static final class Lru<K, V> extends LinkedHashMap<K, V>{
+		private static final long serialVersionUID = 1L;
+		private final int _capacity;
+
+		Lru(int capacity) {
+			super(16, 0.75f, true);
+			this._capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > this._capacity;
+		}
+	}
+
+	private final ConnectionPool _pool;
+	private final long _pollMs;
+	private final boolean _enabled;
+	private final Lru<String, Department> _departments;
+	private final Lru<Integer, Records.Doctor> _doctors;
+	private final Lru<Integer, String> _hospitals;
+	private final Thread _listener;
+	private volatile boolean _listening = false;
+	private volatile boolean _closed = false;
+
+	//guarded by this; bumped by every invalidation so a load that raced one is not stored
+	private long _generation = 0;
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _invalidations = 0;
+
+	public ReferenceCache(ConnectionPool pool) throws SQLException {
+		this(pool,
+			!"false".equals(System.getProperty("dbproject.cache")),
+			Integer.getInteger("dbproject.cache.maxEntries", 10000),
+			Long.getLong("dbproject.cache.pollMs", 250L));
+	}
+
+	public ReferenceCache(ConnectionPool pool, boolean enabled, int maxEntries, long pollMs) throws SQLException {
+		this._pool = pool;
+		this._pollMs = Math.max(10L, pollMs);
+		this._departments = new Lru<String, Department>(maxEntries);
+		this._doctors = new Lru<Integer, Records.Doctor>(maxEntries);
+		this._hospitals = new Lru<Integer, String>(maxEntries);
+		if (enabled && !triggersInstalled()){
+			System.err.println("Reference cache disabled: the reference_change triggers of code/sql/post_load.sql are missing.");
+			enabled = false;
+		}//end if
+		this._enabled = enabled;
+		if (!enabled){
+			this._listener = null;
+			return;
+		}//end if
+		final Connection first = listen();
+		this._listener = new Thread(new Runnable(){
+			public void run() { poll(first); }
+		}, "reference-cache-listener");
+		this._listener.setDaemon(true);
+		this._listener.start();
+	}
+
+	/**
+	 * @return true when lookups are cached, false when every lookup goes to
+	 *         the database
+	 */
+	public boolean isEnabled() {
+		return this._enabled;
+	}
+
+	/**
+	 * Method to look up the departments called name and their doctors.
+	 *
+	 * @param name the department name, e.g. Cardiology
+	 * @return the departments, with empty arrays when there is none
+	 * @throws java.sql.SQLException when the lookup failed
+	 */
+	public Department department(final String name) throws SQLException {
+		long gen;
+		synchronized (this){
+			Department d = this._departments.get(name);
+			if (d != null){
+				this._hits++;
+				return d;
+			}//end if
+			this._misses++;
+			gen = this._generation;
+		}
+		Department d = this._pool.execute(new ConnectionPool.Callback<Department>(){
+			public Department run(PooledConnection conn) throws SQLException {
+				PreparedStatement stmt = conn.prepare(DEPARTMENT_SQL);
+				StatementCache.bind(stmt, name);
+				List<Integer> depts = new ArrayList<Integer>();
+				List<Integer> doctors = new ArrayList<Integer>();
+				ResultSet rs = stmt.executeQuery();
+				try{
+					while (rs.next()){
+						Integer dept = rs.getInt(1);
+						if (depts.isEmpty() || !depts.get(depts.size() - 1).equals(dept)) depts.add(dept);
+						int doctor = rs.getInt(2);
+						if (!rs.wasNull()) doctors.add(doctor);
+					}//end while
+				}finally{
+					rs.close();
+				}
+				return new Department(name, depts.toArray(new Integer[0]), doctors.toArray(new Integer[0]));
+			}
+		});
+		store(gen, this._departments, name, d);
+		return d;
+	}
+
+	/**
+	 * Method to look up a doctor.
+	 *
+	 * @param doctorId the doctor_ID
+	 * @return the doctor row, or null when there is no such doctor
+	 * @throws java.sql.SQLException when the lookup failed
+	 */
+	public Records.Doctor doctor(final int doctorId) throws SQLException {
+		long gen;
+		synchronized (this){
+			Records.Doctor d = this._doctors.get(doctorId);
+			if (d != null){
+				this._hits++;
+				return d;
+			}//end if
+			this._misses++;
+			gen = this._generation;
+		}
+		Records.Doctor d = this._pool.execute(new ConnectionPool.Callback<Records.Doctor>(){
+			public Records.Doctor run(PooledConnection conn) throws SQLException {
+				PreparedStatement stmt = conn.prepare(DOCTOR_SQL);
+				StatementCache.bind(stmt, doctorId);
+				ResultSet rs = stmt.executeQuery();
+				try{
+					if (!rs.next()) return null;
+					return new Records.Doctor(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4));
+				}finally{
+					rs.close();
+				}
+			}
+		});
+		store(gen, this._doctors, doctorId, d);
+		return d;
+	}
+
+	/**
+	 * Method to look up the name of a hospital.
+	 *
+	 * @param hospitalId the hospital_ID
+	 * @return the name, or null when there is no such hospital
+	 * @throws java.sql.SQLException when the lookup failed
+	 */
+	public String hospitalName(final int hospitalId) throws SQLException {
+		long gen;
+		synchronized (this){
+			String name = this._hospitals.get(hospitalId);
+			if (name != null){
+				this._hits++;
+				return name;
+			}//end if
+			this._misses++;
+			gen = this._generation;
+		}
+		String name = this._pool.execute(new ConnectionPool.Callback<String>(){
+			public String run(PooledConnection conn) throws SQLException {
+				PreparedStatement stmt = conn.prepare(HOSPITAL_SQL);
+				StatementCache.bind(stmt, hospitalId);
+				ResultSet rs = stmt.executeQuery();
+				try{
+					return rs.next() ? rs.getString(1) : null;
+				}finally{
+					rs.close();
+				}
+			}
+		});
+		store(gen, this._hospitals, hospitalId, name);
+		return name;
+	}
+
+	/**
+	 * Method to drop the entries named by one reference_change notice:
+	 * 'doctor:7', 'hospital:1', or a bare table name for the whole table.
+	 *
+	 * @param payload the notice payload
+	 */
+	public synchronized void invalidate(String payload) {
+		this._generation++;
+		this._invalidations++;
+		int colon = payload.indexOf(':');
+		String table = colon < 0 ? payload : payload.substring(0, colon);
+		Integer key = null;
+		if (colon >= 0){
+			try{
+				key = Integer.valueOf(payload.substring(colon + 1));
+			}catch (NumberFormatException e){
+				// ignored, the whole table is dropped.
+			}//end try
+		}//end if
+		if (table.equals("department")){
+			this._departments.clear();
+		}else if (table.equals("doctor")){
+			// the doctor may have moved between departments
+			this._departments.clear();
+			if (key == null) this._doctors.clear();
+			else this._doctors.remove(key);
+		}else if (table.equals("hospital")){
+			if (key == null) this._hospitals.clear();
+			else this._hospitals.remove(key);
+		}else{
+			invalidateAll();
+		}//end if
+	}
+
+	/**
+	 * Method to drop every cached entry.
+	 */
+	public synchronized void invalidateAll() {
+		this._generation++;
+		this._departments.clear();
+		this._doctors.clear();
+		this._hospitals.clear();
+	}
+
+	/**
+	 * Method to stop the listener and drop every entry.
+	 */
+	public void close() {
+		this._closed = true;
+		this._listening = false;
+		if (this._listener != null){
+			this._listener.interrupt();
+			try{
+				this._listener.join(this._pollMs * 4);
+			}catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}//end try
+		}//end if
+		invalidateAll();
+	}
+
+	public synchronized long getHitCount() { return this._hits; }
+	public synchronized long getMissCount() { return this._misses; }
+	public synchronized long getInvalidationCount() { return this._invalidations; }
+
+	public synchronized String toString() {
+		if (!this._enabled) return "disabled";
+		return "hits=" + this._hits + " misses=" + this._misses + " invalidations=" + this._invalidations
+			+ " departments=" + this._departments.size() + " doctors=" + this._doctors.size() + " hospitals=" + this._hospitals.size();
+	}
+
+	private synchronized <K, V> void store(long gen, Map<K, V> map, K key, V value) {
+		if (value != null && this._listening && gen == this._generation) map.put(key, value);
+	}
+
+	private boolean triggersInstalled() throws SQLException {
+		return this._pool.execute(new ConnectionPool.Callback<Boolean>(){
+			public Boolean run(PooledConnection conn) throws SQLException {
+				PreparedStatement stmt = conn.prepare("SELECT COUNT(DISTINCT tgname) FROM pg_trigger WHERE tgname IN (?, ?, ?)");
+				StatementCache.bind(stmt, (Object[]) TRIGGERS);
+				ResultSet rs = stmt.executeQuery();
+				try{
+					return rs.next() && rs.getInt(1) == TRIGGERS.length;
+				}finally{
+					rs.close();
+				}
+			}
+		});
+	}
+
+	//opens the listening session; entries may be stored from here on
+	private Connection listen() throws SQLException {
+		Connection c = this._pool.openDedicated();
+		try{
+			Statement stmt = c.createStatement();
+			stmt.execute("LISTEN " + CHANNEL);
+			stmt.close();
+		}catch (SQLException e){
+			c.close();
+			throw e;
+		}//end try
+		this._listening = true;
+		return c;
+	}
+
+	private void poll(Connection c) {
+		while (!this._closed){
+			try{
+				if (c == null){
+					c = listen();
+					// notices sent while we were away are lost
+					invalidateAll();
+				}//end if
+				// any round trip delivers the notices queued for this session
+				Statement stmt = c.createStatement();
+				stmt.execute("SELECT 1");
+				stmt.close();
+				PGNotification[] notices = c.unwrap(PGConnection.class).getNotifications();
+				if (notices != null){
+					for (PGNotification n : notices) invalidate(n.getParameter());
+				}//end if
+				Thread.sleep(this._pollMs);
+			}catch (InterruptedException e){
+				break;
+			}catch (SQLException e){
+				this._listening = false;
+				invalidateAll();
+				if (c != null){
+					try{
+						c.close();
+					}catch (SQLException ignored){
+						// ignored.
+					}//end try
+					c = null;
+				}//end if
+				try{
+					Thread.sleep(this._pollMs * 4);
+				}catch (InterruptedException ie){
+					break;
+				}//end try
+			}//end try
+		}//end while
+		this._listening = false;
+		if (c != null){
+			try{
+				c.close();
+			}catch (SQLException e){
+				// ignored.
+			}//end try
+		}//end if
+	}
+}//end ReferenceCache
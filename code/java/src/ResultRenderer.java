@@ -0,0 +1,330 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes query results as TSV, CSV, JSON Lines or an aligned
+ * table through one large buffered writer, so a listing costs a few
+ * writes instead of one per cell.  The header is written even when there
+ * are no rows and SQL NULL is written as an empty cell (null in JSON).
+ *
+ * A renderer is a Row.ColumnHandler, so it can be handed straight to
+ * DBproject.executeQueryAndStream; values can also be written with
+ * begin() and row().
+ *
+ */
+
+public abstract class ResultRenderer implements Row.ColumnHandler, AutoCloseable{
+	/**
+	 * The output formats.
+	 */
+	public enum Format{
+		TSV,
+		CSV,
+		JSONL,
+		TABLE
+	}
+
+	//bytes buffered before a write reaches the file or console
+	static final int BUFFER = 1 << 16;
+
+	protected final Writer _out;
+	private final boolean _closeOut;
+	protected String[] _columns = new String[0];
+	protected boolean[] _numeric = new boolean[0];
+	private String[] _values = new String[0];
+
+	protected ResultRenderer(Writer out, boolean closeOut) {
+		this._out = out;
+		this._closeOut = closeOut;
+	}
+
+	/**
+	 * Method to create a renderer that writes to standard out.  Standard out
+	 * is flushed, not closed, by close().
+	 *
+	 * @param format the output format
+	 * @return the renderer
+	 */
+	public static ResultRenderer toConsole(Format format) {
+		return create(format, new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER), false);
+	}
+
+	/**
+	 * Method to create a renderer that writes a file, replacing it.
+	 *
+	 * @param format the output format
+	 * @param file the file to write
+	 * @return the renderer
+	 * @throws java.io.IOException when the file cannot be created
+	 */
+	public static ResultRenderer toFile(Format format, File file) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		return create(format, new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), BUFFER), true);
+	}
+
+	/**
+	 * @return the format named by -Ddbproject.format, TSV by default
+	 */
+	public static Format defaultFormat() {
+		return Format.valueOf(System.getProperty("dbproject.format", "tsv").toUpperCase());
+	}
+
+	static ResultRenderer create(Format format, Writer out, boolean closeOut) {
+		switch (format){
+			case CSV: return new Csv(out, closeOut);
+			case JSONL: return new JsonLines(out, closeOut);
+			case TABLE: return new Table(out, closeOut);
+			default: return new Tsv(out, closeOut);
+		}//end switch
+	}
+
+	/**
+	 * Method to start the output with the column names.
+	 *
+	 * @param columns the column names
+	 * @param numeric for each column whether its values are numbers
+	 */
+	public void begin(String[] columns, boolean[] numeric) throws IOException {
+		this._columns = columns;
+		this._numeric = numeric;
+		this._values = new String[columns.length];
+		header();
+	}
+
+	/**
+	 * Method to write one row.
+	 *
+	 * @param values the cell values in column order, null for SQL NULL
+	 */
+	public abstract void row(String[] values) throws IOException;
+
+	/**
+	 * Method to write whatever is still held back and flush.
+	 */
+	public void end() throws IOException {
+		this._out.flush();
+	}
+
+	public void close() throws IOException {
+		end();
+		if (this._closeOut) this._out.close();
+	}
+
+	public void columns(Row row) throws SQLException {
+		int n = row.getColumnCount();
+		String[] columns = new String[n];
+		boolean[] numeric = new boolean[n];
+		for (int i = 0; i < n; i++){
+			columns[i] = row.getColumnName(i + 1);
+			numeric[i] = isNumeric(row.getColumnType(i + 1));
+		}//end for
+		try{
+			begin(columns, numeric);
+		}catch (IOException e){
+			throw new UncheckedIOException(e);
+		}//end try
+	}
+
+	public void handle(Row row) throws SQLException {
+		for (int i = 0; i < this._values.length; i++) this._values[i] = row.getString(i + 1);
+		try{
+			row(this._values);
+		}catch (IOException e){
+			throw new UncheckedIOException(e);
+		}//end try
+	}
+
+	protected abstract void header() throws IOException;
+
+	static boolean isNumeric(int type) {
+		switch (type){
+			case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+			case Types.NUMERIC: case Types.DECIMAL: case Types.REAL: case Types.DOUBLE:
+				return true;
+			default:
+				return false;
+		}//end switch
+	}
+
+	//tab separated, tabs, newlines and backslashes escaped as in COPY text format
+	private static final class Tsv extends ResultRenderer{
+		Tsv(Writer out, boolean closeOut) {
+			super(out, closeOut);
+		}
+
+		protected void header() throws IOException {
+			row(this._columns);
+		}
+
+		public void row(String[] values) throws IOException {
+			for (int i = 0; i < values.length; i++){
+				if (i > 0) this._out.write('\t');
+				String v = values[i];
+				if (v == null) continue;
+				for (int c = 0; c < v.length(); c++){
+					char ch = v.charAt(c);
+					switch (ch){
+						case '\t': this._out.write("\\t"); break;
+						case '\n': this._out.write("\\n"); break;
+						case '\r': this._out.write("\\r"); break;
+						case '\\': this._out.write("\\\\"); break;
+						default: this._out.write(ch);
+					}//end switch
+				}//end for
+			}//end for
+			this._out.write('\n');
+		}
+	}
+
+	//RFC 4180: fields with a comma, quote or line break are quoted
+	private static final class Csv extends ResultRenderer{
+		Csv(Writer out, boolean closeOut) {
+			super(out, closeOut);
+		}
+
+		protected void header() throws IOException {
+			row(this._columns);
+		}
+
+		public void row(String[] values) throws IOException {
+			for (int i = 0; i < values.length; i++){
+				if (i > 0) this._out.write(',');
+				String v = values[i];
+				if (v == null) continue;
+				boolean quote = false;
+				for (int c = 0; c < v.length() && !quote; c++){
+					char ch = v.charAt(c);
+					quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+				}//end for
+				if (!quote){
+					this._out.write(v);
+					continue;
+				}//end if
+				this._out.write('"');
+				this._out.write(v.replace("\"", "\"\""));
+				this._out.write('"');
+			}//end for
+			this._out.write("\r\n");
+		}
+	}
+
+	//one JSON object per row, keyed by column name
+	private static final class JsonLines extends ResultRenderer{
+		private final StringBuilder _line = new StringBuilder(256);
+
+		JsonLines(Writer out, boolean closeOut) {
+			super(out, closeOut);
+		}
+
+		protected void header() {
+			// the keys carry the column names
+		}
+
+		public void row(String[] values) throws IOException {
+			StringBuilder sb = this._line;
+			sb.setLength(0);
+			sb.append('{');
+			for (int i = 0; i < values.length; i++){
+				if (i > 0) sb.append(',');
+				JsonLine.quote(this._columns[i], sb);
+				sb.append(':');
+				if (values[i] != null && this._numeric[i]) sb.append(values[i]);
+				else JsonLine.quote(values[i], sb);
+			}//end for
+			sb.append("}\n");
+			this._out.append(sb);
+		}
+	}
+
+	/**
+	 * Columns padded to a common width, numbers right aligned.  The widths
+	 * come from the first dbproject.format.tableRows rows (default 1000),
+	 * which are held back until then; later rows are streamed and a wider
+	 * value just pushes its line out of alignment.
+	 */
+	private static final class Table extends ResultRenderer{
+		private final int _sampleRows = Integer.getInteger("dbproject.format.tableRows", 1000);
+		private final List<String[]> _held = new ArrayList<String[]>();
+		private int[] _widths = null;
+
+		Table(Writer out, boolean closeOut) {
+			super(out, closeOut);
+		}
+
+		protected void header() {
+			this._held.clear();
+			this._widths = null;
+		}
+
+		public void row(String[] values) throws IOException {
+			if (this._widths != null){
+				line(values);
+				return;
+			}//end if
+			this._held.add(values.clone());
+			if (this._held.size() >= this._sampleRows) release();
+		}
+
+		public void end() throws IOException {
+			if (this._widths == null) release();
+			super.end();
+		}
+
+		private void release() throws IOException {
+			int[] widths = new int[this._columns.length];
+			for (int i = 0; i < widths.length; i++) widths[i] = this._columns[i].length();
+			for (String[] r : this._held){
+				for (int i = 0; i < widths.length; i++) widths[i] = Math.max(widths[i], r[i] == null ? 0 : r[i].length());
+			}//end for
+			this._widths = widths;
+			line(this._columns);
+			for (int i = 0; i < widths.length; i++){
+				if (i > 0) this._out.write("-+-");
+				for (int w = 0; w < widths[i]; w++) this._out.write('-');
+			}//end for
+			this._out.write('\n');
+			for (String[] r : this._held) line(r);
+			this._held.clear();
+		}
+
+		private void line(String[] values) throws IOException {
+			for (int i = 0; i < values.length; i++){
+				if (i > 0) this._out.write(" | ");
+				String v = values[i] == null ? "" : values[i];
+				int pad = this._widths[i] - v.length();
+				if (this._numeric[i] && values != this._columns) pad(pad);
+				this._out.write(v);
+				if ((!this._numeric[i] || values == this._columns) && i < values.length - 1) pad(pad);
+			}//end for
+			this._out.write('\n');
+		}
+
+		private void pad(int n) throws IOException {
+			for (int i = 0; i < n; i++) this._out.write(' ');
+		}
+	}
+}//end ResultRenderer
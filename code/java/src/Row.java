@@ -0,0 +1,82 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * This class gives typed, read-only access to the current row of a
+ * streamed query.  The same instance is reused for every row, so handlers
+ * must copy out whatever they want to keep.
+ *
+ */
+
+public class Row{
+	/**
+	 * Receives the rows of a streamed query one at a time.
+	 */
+	public interface Handler{
+		void handle(Row row) throws SQLException;
+	}
+
+	/**
+	 * A handler that is also told the columns, once and before the first
+	 * row, so it can write a header even when there are no rows.
+	 */
+	public interface ColumnHandler extends Handler{
+		void columns(Row row) throws SQLException;
+	}
+
+	private final ResultSet _rs;
+	private final ResultSetMetaData _meta;
+	private long _number = 0;
+
+	Row(ResultSet rs) throws SQLException {
+		this._rs = rs;
+		this._meta = rs.getMetaData();
+	}
+
+	//moves to the next row of the cursor
+	boolean next() throws SQLException {
+		if (!this._rs.next()) return false;
+		this._number++;
+		return true;
+	}
+
+	/**
+	 * @return the 1-based number of the current row
+	 */
+	public long getRowNumber() { return this._number; }
+
+	public int getColumnCount() throws SQLException { return this._meta.getColumnCount(); }
+	public String getColumnName(int col) throws SQLException { return this._meta.getColumnName(col); }
+	public int getColumnType(int col) throws SQLException { return this._meta.getColumnType(col); }
+
+	public int getInt(int col) throws SQLException { return this._rs.getInt(col); }
+	public int getInt(String col) throws SQLException { return this._rs.getInt(col); }
+	public long getLong(int col) throws SQLException { return this._rs.getLong(col); }
+	public long getLong(String col) throws SQLException { return this._rs.getLong(col); }
+	public String getString(int col) throws SQLException { return this._rs.getString(col); }
+	public String getString(String col) throws SQLException { return this._rs.getString(col); }
+	public java.sql.Date getDate(int col) throws SQLException { return this._rs.getDate(col); }
+	public java.sql.Date getDate(String col) throws SQLException { return this._rs.getDate(col); }
+
+	/**
+	 * @return true when the column of the current row is SQL NULL
+	 */
+	public boolean isNull(int col) throws SQLException {
+		this._rs.getObject(col);
+		return this._rs.wasNull();
+	}
+}//end Row
@@ -0,0 +1,136 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps a least-recently-used set of prepared statements for a
+ * single physical connection.  Statements are keyed by their SQL template
+ * (the text with '?' placeholders) so the same template is parsed and
+ * planned by the server once and then reused with new parameter values.
+ *
+ */
+
+public class StatementCache{
+	//default number of templates kept open per connection
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final Connection _connection;
+	private final int _capacity;
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+
+	public StatementCache(Connection connection, int capacity) {
+		this._connection = connection;
+		this._capacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+		// access ordered so the eldest entry is always the least recently used
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+	}
+
+	/**
+	 * Method to fetch the prepared statement for a SQL template, preparing
+	 * it on the connection the first time the template is seen.  The least
+	 * recently used statement is closed when the cache is full.
+	 *
+	 * @param sql the SQL template with '?' placeholders
+	 * @return an open prepared statement with its parameters cleared
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public synchronized PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = this._statements.get(sql);
+		if (stmt != null && !stmt.isClosed()){
+			this._hits++;
+			stmt.clearParameters();
+			return stmt;
+		}//end if
+
+		this._misses++;
+		stmt = this._connection.prepareStatement(sql);
+		this._statements.put(sql, stmt);
+
+		// evict the least recently used templates beyond the capacity
+		Iterator<Map.Entry<String, PreparedStatement>> it = this._statements.entrySet().iterator();
+		while (this._statements.size() > this._capacity && it.hasNext()){
+			Map.Entry<String, PreparedStatement> eldest = it.next();
+			if (eldest.getValue() == stmt) continue;
+			it.remove();
+			this._evictions++;
+			closeQuietly(eldest.getValue());
+		}//end while
+		return stmt;
+	}
+
+	/**
+	 * Method to bind positional parameters onto a prepared statement using
+	 * the JDBC setter that matches each value's Java type.
+	 *
+	 * @param stmt the statement to bind
+	 * @param params the values for the '?' placeholders in order
+	 * @throws java.sql.SQLException when a value cannot be bound
+	 */
+	public static void bind(PreparedStatement stmt, Object... params) throws SQLException {
+		if (params == null) return;
+		for (int i = 0; i < params.length; i++){
+			Object p = params[i];
+			int idx = i + 1;
+			if (p == null) stmt.setNull(idx, Types.NULL);
+			else if (p instanceof Integer) stmt.setInt(idx, (Integer) p);
+			else if (p instanceof Long) stmt.setLong(idx, (Long) p);
+			else if (p instanceof String) stmt.setString(idx, (String) p);
+			else if (p instanceof java.sql.Date) stmt.setDate(idx, (java.sql.Date) p);
+			else if (p instanceof java.sql.Timestamp) stmt.setTimestamp(idx, (java.sql.Timestamp) p);
+			else if (p instanceof Boolean) stmt.setBoolean(idx, (Boolean) p);
+			else if (p instanceof Double) stmt.setDouble(idx, (Double) p);
+			else if (p instanceof Integer[]) stmt.setArray(idx, stmt.getConnection().createArrayOf("int4", (Integer[]) p));
+			else stmt.setObject(idx, p);
+		}//end for
+	}
+
+	public synchronized long getHits() { return this._hits; }
+	public synchronized long getMisses() { return this._misses; }
+	public synchronized long getEvictions() { return this._evictions; }
+	public synchronized int size() { return this._statements.size(); }
+
+	/**
+	 * Method to close every cached statement.  Called before the owning
+	 * connection is closed.
+	 */
+	public synchronized void clear() {
+		for (PreparedStatement stmt : this._statements.values()){
+			closeQuietly(stmt);
+		}//end for
+		this._statements.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "statements=" + this._statements.size() + "/" + this._capacity + " hits=" + this._hits + " misses=" + this._misses + " evictions=" + this._evictions;
+	}
+
+	private static void closeQuietly(PreparedStatement stmt) {
+		try{
+			stmt.close();
+		}catch (SQLException e){
+			// ignored.
+		}//end try
+	}
+}//end StatementCache
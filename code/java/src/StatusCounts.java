@@ -0,0 +1,109 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class accumulates the number of appointments per status for one
+ * doctor at a time in primitive arrays, and ranks the statuses by count.
+ * Option 7 feeds it rows of a single query grouped by doctor and status
+ * and ordered by doctor, so only one doctor is held in memory at once.
+ *
+ */
+
+public class StatusCounts{
+	//statuses in the order used to break ties
+	public static final String[] STATUSES = names();
+
+	private final int[] _counts = new int[STATUSES.length];
+	private final int[] _order = new int[STATUSES.length];
+	private int _doctorId = -1;
+	private boolean _empty = true;
+
+	/**
+	 * Method to start counting for another doctor.
+	 *
+	 * @param doctorId the doctor the following counts belong to
+	 */
+	public void reset(int doctorId) {
+		this._doctorId = doctorId;
+		this._empty = false;
+		for (int i = 0; i < this._counts.length; i++) this._counts[i] = 0;
+	}
+
+	/**
+	 * Method to add the count of one status for the current doctor.  Unknown
+	 * or null statuses are ignored.
+	 */
+	public void add(String status, int count) {
+		int idx = indexOf(status);
+		if (idx >= 0) this._counts[idx] += count;
+	}
+
+	/**
+	 * @return the count of the status at index idx of STATUSES
+	 */
+	public int getCount(int idx) {
+		return this._counts[idx];
+	}
+
+	public int getDoctorId() {
+		return this._doctorId;
+	}
+
+	public boolean isEmpty() {
+		return this._empty;
+	}
+
+	/**
+	 * Method to order the status indexes by descending count.  The sort is
+	 * stable so equal counts keep the PA, AC, AV, WL order.
+	 *
+	 * @return the status indexes, highest count first
+	 */
+	public int[] rank() {
+		for (int i = 0; i < this._order.length; i++){
+			int cur = i;
+			int j = i - 1;
+			while (j >= 0 && this._counts[this._order[j]] < this._counts[cur]){
+				this._order[j + 1] = this._order[j];
+				j--;
+			}//end while
+			this._order[j + 1] = cur;
+		}//end for
+		return this._order;
+	}
+
+	/**
+	 * Method to format the current doctor the way option 7 prints it:
+	 * "DoctorID id count status count status ..." in descending order.
+	 */
+	public String format() {
+		StringBuilder sb = new StringBuilder(48);
+		sb.append("DoctorID ").append(this._doctorId);
+		for (int idx : rank()){
+			sb.append(' ').append(this._counts[idx]).append(' ').append(STATUSES[idx]);
+		}//end for
+		return sb.toString();
+	}
+
+	private static int indexOf(String status) {
+		AppointmentStatus s = AppointmentStatus.of(status);
+		return s == null ? -1 : s.ordinal();
+	}
+
+	private static String[] names() {
+		AppointmentStatus[] values = AppointmentStatus.values();
+		String[] names = new String[values.length];
+		for (int i = 0; i < values.length; i++) names[i] = values[i].name();
+		return names;
+	}
+}//end StatusCounts
@@ -0,0 +1,97 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class checks and repairs doctor_status_summary, the appointment
+ * counts per doctor and status that options 7 and 8 read (see the SUMMARY
+ * section of post_load.sql).  The triggers keep it current; verify() compares
+ * it with has_appointment and Appointment and rebuild() recomputes it.
+ *
+ */
+
+public final class StatusSummary{
+	//the triggers that keep the table current
+	static final String[] TRIGGERS = { "summary_has_appointment_insert_trg", "summary_has_appointment_delete_trg", "summary_has_appointment_update_trg", "summary_has_appointment_truncate_trg", "summary_appointment_update_trg" };
+
+	static final String COUNT_SQL = "SELECT H.doctor_id, A.status, COUNT(*) AS n FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id WHERE A.status IS NOT NULL GROUP BY 1, 2";
+
+	//doctor, status, counted from the base tables, stored in the summary
+	static final String VERIFY_SQL =
+		"SELECT COALESCE(b.doctor_id, s.doctor_id), COALESCE(b.status, s.status), COALESCE(b.n, 0), COALESCE(s.appt_count, 0) " +
+		"FROM (" + COUNT_SQL + ") b FULL JOIN doctor_status_summary s ON s.doctor_id = b.doctor_id AND s.status = b.status " +
+		"WHERE COALESCE(b.n, 0) <> COALESCE(s.appt_count, 0) ORDER BY 1, 2";
+
+	private StatusSummary() {
+	}
+
+	/**
+	 * Method to tell whether the summary table and all of its triggers
+	 * exist, i.e. whether the reports may read it.
+	 *
+	 * @param esql the database session
+	 * @return true when the summary is maintained
+	 * @throws java.sql.SQLException when the catalog could not be read
+	 */
+	public static boolean isInstalled(DBproject esql) throws SQLException {
+		return esql.count("SELECT DISTINCT tgname FROM pg_trigger WHERE tgname = ANY (string_to_array(?, ','))", String.join(",", TRIGGERS)) == TRIGGERS.length;
+	}
+
+	/**
+	 * Method to print every doctor and status whose stored count differs
+	 * from the base tables.
+	 *
+	 * @param esql the database session
+	 * @return the number of differences
+	 * @throws java.sql.SQLException when the tables could not be read
+	 */
+	public static long verify(DBproject esql) throws SQLException {
+		final List<String> diffs = new ArrayList<String>();
+		esql.executeQueryAndStream(VERIFY_SQL, row -> diffs.add("DoctorID " + row.getInt(1) + " " + row.getString(2) + ": counted " + row.getLong(3) + ", summary " + row.getLong(4)));
+		for (String d : diffs) System.out.println(d);
+		System.out.println(diffs.isEmpty() ? "Summary is consistent." : diffs.size() + " differences, run \"summary rebuild\".");
+		return diffs.size();
+	}
+
+	/**
+	 * Method to recompute the summary from the base tables.  Writes to
+	 * has_appointment and Appointment wait until it is done.
+	 *
+	 * @param esql the database session
+	 * @return the number of summary rows written
+	 * @throws java.sql.SQLException when the rebuild failed; nothing changed
+	 */
+	public static int rebuild(DBproject esql) throws SQLException {
+		return esql.withConnection(conn -> {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			Statement stmt = c.createStatement();
+			try{
+				stmt.execute("LOCK TABLE has_appointment, Appointment IN SHARE MODE");
+				stmt.execute("DELETE FROM doctor_status_summary");
+			}finally{
+				stmt.close();
+			}
+			PreparedStatement insert = conn.prepare("INSERT INTO doctor_status_summary (doctor_id, status, appt_count) " + COUNT_SQL);
+			int rows = insert.executeUpdate();
+			c.commit();
+			return rows;
+		});
+	}
+}//end StatusSummary
@@ -0,0 +1,308 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * This class generates a synthetic hospital data set for every table of
+ * create.sql.  The same seed and scale always produce the same rows.  Rows
+ * are written one at a time in the comma separated COPY format used by
+ * code/data, either to files or straight into COPY FROM STDIN, so nothing
+ * is held in memory regardless of the scale.
+ *
+ * Scale 1 produces 10 hospitals, 500 departments, 5000 staff, 10000
+ * doctors, 1 million patients and 2 million appointments.  Bookings are
+ * skewed: a few doctors take most of the appointments and the first days
+ * of each week and of the booking window are the busiest.
+ *
+ */
+
+public class SyntheticDataGenerator{
+	private static final String[] FIRST = { "Alvin", "Carrie", "Calvin", "Wyatt", "Armand", "Alberto", "Camille", "Lindsey", "Maria", "Jose", "Wei", "Priya", "Omar", "Grace", "Hannah", "Luis", "Mei", "Ivan", "Fatima", "Noah" };
+	private static final String[] LAST = { "Saunders", "Cortez", "Morrison", "Ruoff", "Enderle", "Scarlett", "Holmes", "Sullivan", "Newton", "Garcia", "Nguyen", "Patel", "Kim", "Chen", "Lopez", "Smith", "Khan", "Ivanova", "Brown", "Okafor" };
+	private static final String[] STREETS = { "Chapel Drive", "Bald Hill Street", "Campfire Ave.", "Oak Lane", "Maple Court", "Sunset Blvd.", "Canyon Road", "Mission Street" };
+	private static final String[] CITIES = { "Melbourne", "Baton Rouge", "Cockeysville", "Riverside", "Fresno", "Oakland", "Pasadena", "Irvine" };
+	private static final String[] DEPARTMENTS = { "Cardiology", "Finance", "Gastroenterology", "Neurology", "Oncology", "Pediatric", "Radiology", "Orthopedics", "Dermatology", "Urology", "Allergy and Immunology", "Obstetrics/Gynecology", "Emergency", "Psychiatry", "Ophthalmology", "Nephrology" };
+	private static final String[] SPECIALTIES = { "Allergist", "Cardiologist", "Dermatologist", "Neurologist", "Oncologist", "Pediatrician", "Radiologist", "Surgeon", "Urologist", "Psychiatrist" };
+	private static final String[] SLOTS = { "8:00-10:00", "10:00-12:00", "12:00-14:00", "14:00-16:00", "16:00-18:00" };
+	private static final String[] HOSPITAL_KINDS = { "Medical Center", "General Hospital", "Community Hospital", "Clinic" };
+
+	//first day of the generated appointment window; days before TODAY are in the past
+	private static final long FIRST_DAY = java.time.LocalDate.of(2020, 1, 1).toEpochDay();
+	private static final int DAYS = 3 * 365;
+	private static final int TODAY = 2 * 365;
+
+	private final long _seed;
+	private final int _hospitals;
+	private final int _departments;
+	private final int _staff;
+	private final int _doctors;
+	private final int _patients;
+	private final int _appointments;
+	private final int _searches;
+
+	public SyntheticDataGenerator(long seed, double scale) {
+		if (scale <= 0) throw new IllegalArgumentException("scale must be positive");
+		this._seed = seed;
+		this._hospitals = Math.max(1, (int) Math.round(10 * scale));
+		this._departments = this._hospitals * 50;
+		this._staff = this._hospitals * 500;
+		this._doctors = this._hospitals * 1000;
+		this._patients = Math.max(1, (int) Math.round(1000000 * scale));
+		this._appointments = Math.max(1, (int) Math.round(2000000 * scale));
+		this._searches = Math.max(1, this._appointments / 4);
+	}
+
+	/**
+	 * Method to write every row of one table.
+	 *
+	 * @param table the table to generate
+	 * @param out receives the rows in COPY text format
+	 * @return the number of rows written
+	 * @throws java.io.IOException when writing failed
+	 */
+	public long write(BulkLoader.TableSpec table, Writer out) throws IOException {
+		// each table has its own random stream so tables can be generated in any order or in parallel
+		SplittableRandom r = new SplittableRandom(this._seed * 31 + table.name.hashCode());
+		StringBuilder row = new StringBuilder(128);
+		long n = 0;
+		switch (table.name){
+			case "Hospital":
+				for (int i = 0; i < this._hospitals; i++, n++){
+					row.setLength(0);
+					row.append(i).append(',').append(pick(r, CITIES)).append(' ').append(pick(r, HOSPITAL_KINDS)).append(' ').append(i);
+					line(out, row);
+				}//end for
+				break;
+			case "Department":
+				for (int i = 0; i < this._departments; i++, n++){
+					row.setLength(0);
+					row.append(i).append(',').append(DEPARTMENTS[i % DEPARTMENTS.length]).append(',').append(i / 50);
+					line(out, row);
+				}//end for
+				break;
+			case "Staff":
+				for (int i = 0; i < this._staff; i++, n++){
+					row.setLength(0);
+					row.append(i).append(',').append(pick(r, FIRST)).append(' ').append(pick(r, LAST)).append(',').append(i / 500);
+					line(out, row);
+				}//end for
+				break;
+			case "Doctor":
+				for (int i = 0; i < this._doctors; i++, n++){
+					row.setLength(0);
+					row.append(i).append(',').append(pick(r, FIRST)).append(' ').append(pick(r, LAST)).append(',').append(pick(r, SPECIALTIES)).append(',').append(r.nextInt(this._departments));
+					line(out, row);
+				}//end for
+				break;
+			case "Patient":
+				for (int i = 0; i < this._patients; i++, n++){
+					row.setLength(0);
+					row.append(i).append(',').append(pick(r, FIRST)).append(' ').append(pick(r, LAST))
+						.append(',').append(r.nextBoolean() ? 'M' : 'F')
+						.append(',').append(1 + r.nextInt(95))
+						.append(',').append(1 + r.nextInt(9999)).append(' ').append(pick(r, STREETS)).append(' ').append(pick(r, CITIES))
+						.append(',').append(skewed(r, 20, 2.0));
+					line(out, row);
+				}//end for
+				break;
+			case "Appointment":
+				for (int i = 0; i < this._appointments; i++, n++){
+					int day = busyDay(r);
+					row.setLength(0);
+					row.append(i).append(',').append(java.time.LocalDate.ofEpochDay(FIRST_DAY + day)).append(',').append(pick(r, SLOTS)).append(',').append(status(r, day));
+					line(out, row);
+				}//end for
+				break;
+			case "has_appointment":
+				// every appointment belongs to one doctor, hot doctors take most of them
+				for (int i = 0; i < this._appointments; i++, n++){
+					row.setLength(0);
+					row.append(i).append(',').append(skewed(r, this._doctors, 3.0));
+					line(out, row);
+				}//end for
+				break;
+			case "request_maintenance":
+				for (int i = 0; i < this._doctors; i++, n++){
+					row.setLength(0);
+					row.append(1 + r.nextInt(8)).append(',').append(pick(r, DEPARTMENTS)).append(',').append(pick(r, SLOTS)).append(',').append(i).append(',').append(r.nextInt(this._staff));
+					line(out, row);
+				}//end for
+				break;
+			case "searches":
+				// one search per appointment id keeps (hid, pid, aid) unique
+				for (int i = 0; i < this._searches; i++, n++){
+					row.setLength(0);
+					row.append(r.nextInt(this._hospitals)).append(',').append(r.nextInt(this._patients)).append(',').append(i);
+					line(out, row);
+				}//end for
+				break;
+			case "schedules":
+				for (int i = 0; i < this._appointments; i += 2, n++){
+					row.setLength(0);
+					row.append(i).append(',').append(r.nextInt(this._staff));
+					line(out, row);
+				}//end for
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown table " + table.name);
+		}//end switch
+		out.flush();
+		return n;
+	}
+
+	/**
+	 * Method to write one CSV file per table into a directory, using the
+	 * file names of code/data.
+	 *
+	 * @param dir the target directory
+	 * @throws java.io.IOException when a file could not be written
+	 */
+	public void writeFiles(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Unable to create " + dir.getPath());
+		for (BulkLoader.TableSpec t : BulkLoader.TABLES){
+			long start = System.nanoTime();
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(dir, t.file)), StandardCharsets.UTF_8), 1 << 16);
+			long rows;
+			try{
+				rows = write(t, out);
+			}finally{
+				out.close();
+			}
+			System.out.println(String.format("%-20s %10d rows %8d ms", t.name, rows, (System.nanoTime() - start) / 1000000L));
+		}//end for
+	}
+
+	/**
+	 * Method to use the generator as the source of the bulk loader, so rows
+	 * go straight from the generator into COPY FROM STDIN.
+	 *
+	 * @return a factory producing one source per table
+	 */
+	public BulkLoader.SourceFactory asSources() {
+		return table -> (copy, copySql) -> {
+			CopyInWriter out = new CopyInWriter(copy, copySql);
+			try{
+				write(table, out);
+				return out.finish();
+			}finally{
+				out.abortIfOpen();
+			}
+		};
+	}
+
+	private static void line(Writer out, StringBuilder row) throws IOException {
+		row.append('\n');
+		out.append(row);
+	}
+
+	private static String pick(SplittableRandom r, String[] values) {
+		return values[r.nextInt(values.length)];
+	}
+
+	//a value in [0, bound) where low values are much more likely the larger the skew
+	private static int skewed(SplittableRandom r, int bound, double skew) {
+		return Math.min(bound - 1, (int) (bound * Math.pow(r.nextDouble(), skew)));
+	}
+
+	//a day of the window; Mondays and Tuesdays and the days right after TODAY are busiest
+	private static int busyDay(SplittableRandom r) {
+		int day = r.nextInt(DAYS);
+		if (r.nextInt(4) == 0) day = TODAY + skewed(r, DAYS - TODAY, 2.0);
+		int dow = (int) ((FIRST_DAY + day + 3) % 7); // 0 = Monday
+		if (dow >= 5 && r.nextInt(3) != 0) day = Math.max(0, day - dow);
+		return day;
+	}
+
+	private static AppointmentStatus status(SplittableRandom r, int day) {
+		if (day < TODAY) return AppointmentStatus.PA;
+		int p = r.nextInt(10);
+		if (p < 5) return AppointmentStatus.AV;
+		if (p < 9) return AppointmentStatus.AC;
+		return AppointmentStatus.WL;
+	}
+
+	/**
+	 * A Writer that encodes characters as UTF-8 and hands them to a running
+	 * COPY FROM STDIN in large chunks.
+	 */
+	private static final class CopyInWriter extends Writer{
+		private final CopyIn _copy;
+		private final byte[] _buf = new byte[1 << 16];
+		private int _len = 0;
+
+		CopyInWriter(CopyManager copy, String copySql) throws SQLException {
+			this._copy = copy.copyIn(copySql);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			byte[] bytes = new String(cbuf, off, len).getBytes(StandardCharsets.UTF_8);
+			if (this._len + bytes.length > this._buf.length) flushBuffer();
+			if (bytes.length > this._buf.length){
+				send(bytes, bytes.length);
+				return;
+			}//end if
+			System.arraycopy(bytes, 0, this._buf, this._len, bytes.length);
+			this._len += bytes.length;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushBuffer();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flushBuffer();
+		}
+
+		long finish() throws IOException, SQLException {
+			flushBuffer();
+			return this._copy.endCopy();
+		}
+
+		void abortIfOpen() {
+			try{
+				if (this._copy.isActive()) this._copy.cancelCopy();
+			}catch (SQLException e){
+				// ignored.
+			}//end try
+		}
+
+		private void flushBuffer() throws IOException {
+			if (this._len == 0) return;
+			send(this._buf, this._len);
+			this._len = 0;
+		}
+
+		private void send(byte[] bytes, int len) throws IOException {
+			try{
+				this._copy.writeToCopy(bytes, 0, len);
+			}catch (SQLException e){
+				throw new IOException(e.getMessage(), e);
+			}//end try
+		}
+	}//end CopyInWriter
+}//end SyntheticDataGenerator
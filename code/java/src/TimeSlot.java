@@ -0,0 +1,91 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An appointment time slot such as "8:00-10:30", held as minutes since
+ * midnight.  parse() accepts the H:MM-H:MM text of the time_slot columns,
+ * and toString() gives it back in the same form, so parsing also
+ * normalizes input such as "08:00 - 10:30".  The start must not be after
+ * the end, the same rule time_slot_range() of sql/compact.sql applies.
+ *
+ */
+
+public final class TimeSlot{
+	//the pattern the time slots are checked with before sql/compact.sql changes anything
+	private static final Pattern SLOT = Pattern.compile("^ *([0-9]{1,2}):([0-5][0-9]) *- *([0-9]{1,2}):([0-5][0-9]) *$");
+
+	private final int _start;
+	private final int _end;
+
+	public TimeSlot(int startMinute, int endMinute) {
+		if (startMinute < 0 || endMinute > 24 * 60 || startMinute > endMinute)
+			throw new IllegalArgumentException("invalid time slot: " + startMinute + "-" + endMinute);
+		this._start = startMinute;
+		this._end = endMinute;
+	}
+
+	/**
+	 * Method to read a time slot.
+	 *
+	 * @param text the slot as H:MM-H:MM, with spaces around the times
+	 * @return the slot
+	 * @throws IllegalArgumentException when text is not a valid slot
+	 */
+	public static TimeSlot parse(String text) {
+		if (text == null) throw new IllegalArgumentException("missing time slot");
+		Matcher m = SLOT.matcher(text);
+		if (!m.matches()) throw new IllegalArgumentException("invalid time slot: " + text);
+		int start = Integer.parseInt(m.group(1)) * 60 + Integer.parseInt(m.group(2));
+		int end = Integer.parseInt(m.group(3)) * 60 + Integer.parseInt(m.group(4));
+		if (end > 24 * 60) throw new IllegalArgumentException("invalid time slot: " + text);
+		if (start > end) throw new IllegalArgumentException("time slot ends before it starts: " + text);
+		return new TimeSlot(start, end);
+	}
+
+	public int getStartMinute() { return this._start; }
+	public int getEndMinute() { return this._end; }
+
+	/**
+	 * @return true when both slots share some time; touching slots such as
+	 *         8:00-10:00 and 10:00-12:00 do not overlap
+	 */
+	public boolean overlaps(TimeSlot other) {
+		return this._start < other._end && other._start < this._end;
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof TimeSlot)) return false;
+		TimeSlot other = (TimeSlot) o;
+		return this._start == other._start && this._end == other._end;
+	}
+
+	public int hashCode() {
+		return this._start * 1441 + this._end;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(11);
+		append(sb, this._start);
+		sb.append('-');
+		append(sb, this._end);
+		return sb.toString();
+	}
+
+	private static void append(StringBuilder sb, int minute) {
+		sb.append(minute / 60).append(':');
+		if (minute % 60 < 10) sb.append('0');
+		sb.append(minute % 60);
+	}
+}//end TimeSlot
@@ -0,0 +1,348 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class serves the waitlist table of create.sql: the patients waiting
+ * for a booked appointment, first in first out.  BookingEngine adds the
+ * entries; cancel() frees a booked appointment and gives it to the oldest
+ * waiting entry, and promote() does the same for freed (AV) appointments
+ * that still have waiting entries, e.g. ones freed by sync or by hand.
+ *
+ * Every promotion holds the lock of the appointment row, so one
+ * appointment is never promoted twice.  promote() takes those locks with
+ * FOR UPDATE SKIP LOCKED, so several workers drain a backlog side by side,
+ * each one passing over the appointments another worker or a booking holds
+ * instead of waiting for them.
+ *
+ */
+
+public class WaitlistEngine{
+	static final String IS_INSTALLED_SQL = "SELECT 1 FROM pg_class WHERE oid = to_regclass('waitlist')";
+
+	// locks the appointment to cancel, waiting for a booking that holds it, and reads
+	// what the availability index needs to list it once it is free
+	static final String LOCK_SQL =
+		"SELECT A.status, A.adate, A.time_slot, ARRAY(SELECT DISTINCT D.did FROM has_appointment H JOIN Doctor D ON D.doctor_ID = H.doctor_id WHERE H.appt_id = A.appnt_ID) " +
+		"FROM Appointment A WHERE A.appnt_ID = ? FOR UPDATE OF A";
+	static final String FREE_SQL = "UPDATE Appointment SET status = 'AV' WHERE appnt_ID = ?";
+
+	// freed appointments with waiting entries, passing over those locked by others
+	static final String CLAIM_SQL =
+		"SELECT A.appnt_ID FROM Appointment A WHERE A.status = 'AV' " +
+		"AND A.appnt_ID IN (SELECT appt_id FROM waitlist WHERE promoted_at IS NULL) " +
+		"ORDER BY A.appnt_ID LIMIT ? FOR UPDATE SKIP LOCKED";
+
+	// promotes the oldest waiting entry of each locked appointment; the appointment
+	// stays WL while more entries wait.  The window counts before the promotion.
+	static final String PROMOTE_SQL =
+		"WITH head AS (SELECT DISTINCT ON (appt_id) entry_id, appt_id, patient_id, doctor_id, COUNT(*) OVER (PARTITION BY appt_id) AS waiting " +
+		"FROM waitlist WHERE appt_id = ANY (?) AND promoted_at IS NULL ORDER BY appt_id, enqueued_at, entry_id), " +
+		"p AS (UPDATE waitlist W SET promoted_at = clock_timestamp() FROM head H WHERE W.entry_id = H.entry_id RETURNING H.appt_id, H.patient_id, H.doctor_id, H.waiting) " +
+		"UPDATE Appointment A SET status = CASE WHEN p.waiting > 1 THEN 'WL' ELSE 'AC' END FROM p WHERE A.appnt_ID = p.appt_id " +
+		"RETURNING A.appnt_ID, p.patient_id, p.doctor_id, A.status, p.waiting - 1";
+
+	/**
+	 * What happened to a cancelled appointment.
+	 */
+	public enum Outcome{
+		FREED("Appointment cancelled and available again."),
+		PROMOTED("Appointment cancelled and given to the first patient on the waitlist."),
+		NOT_BOOKED("Appointment is not booked. Nothing to cancel.");
+
+		public final String message;
+
+		Outcome(String message) {
+			this.message = message;
+		}
+	}//end Outcome
+
+	/**
+	 * One waiting entry that got its appointment.
+	 */
+	public static final class Promotion{
+		public final int appointmentId;
+		public final int patientId;
+		public final int doctorId;
+		public final String status;
+		public final int stillWaiting;
+
+		Promotion(int appointmentId, int patientId, int doctorId, String status, int stillWaiting) {
+			this.appointmentId = appointmentId;
+			this.patientId = patientId;
+			this.doctorId = doctorId;
+			this.status = status;
+			this.stillWaiting = stillWaiting;
+		}
+	}//end Promotion
+
+	/**
+	 * Result of one cancellation.
+	 */
+	public static final class Result{
+		public final Outcome outcome;
+		public final String previousStatus;
+		public final Promotion promotion;
+
+		Result(Outcome outcome, String previousStatus, Promotion promotion) {
+			this.outcome = outcome;
+			this.previousStatus = previousStatus;
+			this.promotion = promotion;
+		}
+	}//end Result
+
+	private final ConnectionPool _pool;
+	private final int _batchSize;
+	private volatile BookingEngine.Listener _listener = null;
+	private volatile QueryMetrics _metrics = null;
+	private final AtomicLong _cancellations = new AtomicLong();
+	private final AtomicLong _promotions = new AtomicLong();
+
+	public WaitlistEngine(ConnectionPool pool) {
+		this(pool, Integer.getInteger("dbproject.waitlist.batchSize", 50));
+	}
+
+	/**
+	 * @param batchSize how many appointments a worker promotes per transaction
+	 */
+	public WaitlistEngine(ConnectionPool pool, int batchSize) {
+		if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+		this._pool = pool;
+		this._batchSize = batchSize;
+	}
+
+	/**
+	 * Method to tell whether the waitlist table exists.
+	 *
+	 * @param esql the database session
+	 * @return true when create.sql made it
+	 * @throws java.sql.SQLException when the catalog could not be read
+	 */
+	public static boolean isInstalled(DBproject esql) throws SQLException {
+		return esql.exists(IS_INSTALLED_SQL);
+	}
+
+	/**
+	 * Method to cancel the booking of an appointment.  The oldest waiting
+	 * entry gets it in the same transaction; without one it is AV again.
+	 *
+	 * @param appointmentId the appnt_ID
+	 * @return the outcome
+	 * @throws java.sql.SQLException when the transaction failed; nothing changed
+	 */
+	public Result cancel(int appointmentId) throws SQLException {
+		int attempt = 0;
+		while (true){
+			attempt++;
+			PooledConnection conn = this._pool.borrow();
+			try{
+				return cancelOnce(conn, appointmentId);
+			}catch (SQLException e){
+				if (!BookingEngine.isRetryable(e) || attempt > 5) throw e;
+			}finally{
+				this._pool.release(conn);
+			}
+		}//end while
+	}
+
+	private Result cancelOnce(PooledConnection conn, int appointmentId) throws SQLException {
+		Connection c = conn.getConnection();
+		c.setAutoCommit(false);
+		String status = null;
+		java.sql.Date date = null;
+		String timeSlot = null;
+		Integer[] deptIds = new Integer[0];
+		PreparedStatement lock = conn.prepare(LOCK_SQL);
+		StatementCache.bind(lock, appointmentId);
+		long start = System.nanoTime();
+		ResultSet rs = lock.executeQuery();
+		try{
+			if (rs.next()){
+				status = rs.getString(1);
+				date = rs.getDate(2);
+				timeSlot = rs.getString(3);
+				java.sql.Array depts = rs.getArray(4);
+				if (depts != null) deptIds = (Integer[]) depts.getArray();
+			}//end if
+		}finally{
+			rs.close();
+		}
+		record(LOCK_SQL, start, status == null ? 0 : 1);
+		AppointmentStatus current = AppointmentStatus.of(status);
+		if (current != AppointmentStatus.AC && current != AppointmentStatus.WL){
+			c.rollback();
+			return new Result(Outcome.NOT_BOOKED, status, null);
+		}//end if
+
+		PreparedStatement free = conn.prepare(FREE_SQL);
+		StatementCache.bind(free, appointmentId);
+		start = System.nanoTime();
+		free.executeUpdate();
+		record(FREE_SQL, start, 1);
+		List<Promotion> promoted = promote(conn, new Integer[] { appointmentId });
+		c.commit();
+
+		this._cancellations.incrementAndGet();
+		Promotion promotion = promoted.isEmpty() ? null : promoted.get(0);
+		BookingEngine.Listener listener = this._listener;
+		if (listener != null && promotion == null){
+			listener.statusChanged(appointmentId, -1, status, AppointmentStatus.AV.name());
+			listener.slotFreed(appointmentId, date, timeSlot, deptIds);
+		}else if (listener != null && !promotion.status.equals(status)){
+			listener.statusChanged(appointmentId, promotion.doctorId, status, promotion.status);
+		}//end if
+		return new Result(promotion == null ? Outcome.FREED : Outcome.PROMOTED, status, promotion);
+	}
+
+	/**
+	 * Method to promote the waiting entries of every freed appointment with
+	 * several workers, each committing batchSize appointments at a time.  A
+	 * worker stops when it finds nothing left that is not locked by another.
+	 *
+	 * @param workers the number of workers, each with its own connection
+	 * @return the promotions, in no particular order
+	 * @throws java.sql.SQLException when a worker failed; the batches the
+	 *         workers committed before stay promoted
+	 */
+	public List<Promotion> promote(int workers) throws SQLException, InterruptedException {
+		if (workers <= 1) return drain();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try{
+			List<Future<List<Promotion>>> running = new ArrayList<Future<List<Promotion>>>(workers);
+			for (int i = 0; i < workers; i++) running.add(pool.submit(this::drain));
+			List<Promotion> all = new ArrayList<Promotion>();
+			SQLException failure = null;
+			for (Future<List<Promotion>> f : running){
+				try{
+					all.addAll(f.get());
+				}catch (ExecutionException e){
+					if (failure == null) failure = e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+				}//end try
+			}//end for
+			if (failure != null) throw failure;
+			return all;
+		}finally{
+			pool.shutdownNow();
+		}
+	}
+
+	//one worker: claims and promotes batches until none is left
+	private List<Promotion> drain() throws SQLException {
+		List<Promotion> all = new ArrayList<Promotion>();
+		int failures = 0;
+		while (true){
+			List<Promotion> batch;
+			PooledConnection conn = this._pool.borrow();
+			try{
+				batch = promoteBatch(conn);
+			}catch (SQLException e){
+				if (!BookingEngine.isRetryable(e) || ++failures > 5) throw e;
+				continue;
+			}finally{
+				this._pool.release(conn);
+			}
+			if (batch == null) return all;
+			all.addAll(batch);
+		}//end while
+	}
+
+	/**
+	 * Method to run one promotion transaction.
+	 *
+	 * @return the promotions, or null when there was nothing to claim
+	 */
+	private List<Promotion> promoteBatch(PooledConnection conn) throws SQLException {
+		Connection c = conn.getConnection();
+		c.setAutoCommit(false);
+		List<Integer> claimed = new ArrayList<Integer>(this._batchSize);
+		PreparedStatement claim = conn.prepare(CLAIM_SQL);
+		StatementCache.bind(claim, this._batchSize);
+		long start = System.nanoTime();
+		ResultSet rs = claim.executeQuery();
+		try{
+			while (rs.next()) claimed.add(rs.getInt(1));
+		}finally{
+			rs.close();
+		}
+		record(CLAIM_SQL, start, claimed.size());
+		if (claimed.isEmpty()){
+			c.rollback();
+			return null;
+		}//end if
+		List<Promotion> promoted = promote(conn, claimed.toArray(new Integer[0]));
+		c.commit();
+		BookingEngine.Listener listener = this._listener;
+		if (listener != null){
+			for (Promotion p : promoted) listener.statusChanged(p.appointmentId, p.doctorId, AppointmentStatus.AV.name(), p.status);
+		}//end if
+		return promoted;
+	}
+
+	//promotes the head of each queue; the caller holds the appointment locks
+	private List<Promotion> promote(PooledConnection conn, Integer[] appointmentIds) throws SQLException {
+		List<Promotion> promoted = new ArrayList<Promotion>(appointmentIds.length);
+		PreparedStatement stmt = conn.prepare(PROMOTE_SQL);
+		StatementCache.bind(stmt, (Object) appointmentIds);
+		long start = System.nanoTime();
+		ResultSet rs = stmt.executeQuery();
+		try{
+			while (rs.next()){
+				promoted.add(new Promotion(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getInt(5)));
+			}//end while
+		}finally{
+			rs.close();
+		}
+		record(PROMOTE_SQL, start, promoted.size());
+		this._promotions.addAndGet(promoted.size());
+		return promoted;
+	}
+
+	/**
+	 * Method to set who is told about the status changes of committed
+	 * cancellations and promotions, e.g. the availability index.
+	 *
+	 * @param listener the listener, or null for none
+	 */
+	public void setListener(BookingEngine.Listener listener) {
+		this._listener = listener;
+	}
+
+	/**
+	 * Method to set where the latencies of the waitlist statements are
+	 * recorded.
+	 *
+	 * @param metrics the metrics, or null for none
+	 */
+	public void setMetrics(QueryMetrics metrics) {
+		this._metrics = metrics;
+	}
+
+	private void record(String sql, long start, long rows) {
+		QueryMetrics metrics = this._metrics;
+		if (metrics != null) metrics.query(sql, start, rows, false);
+	}
+
+	public long getCancellationCount() { return this._cancellations.get(); }
+	public long getPromotionCount() { return this._promotions.get(); }
+}//end WaitlistEngine
@@ -0,0 +1,69 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests of AppointmentStatus.
+ *
+ */
+
+public class AppointmentStatusTest{
+	@Test
+	public void bookingMovesAvailableToActiveAndTheRestToWaitlisted() {
+		assertSame(AppointmentStatus.AC, AppointmentStatus.AV.afterBooking());
+		assertSame(AppointmentStatus.WL, AppointmentStatus.AC.afterBooking());
+		assertSame(AppointmentStatus.WL, AppointmentStatus.WL.afterBooking());
+		assertNull(AppointmentStatus.PA.afterBooking());
+	}
+
+	@Test
+	public void ofReadsOnlyStoredCodes() {
+		for (AppointmentStatus s : AppointmentStatus.values()) assertSame(s, AppointmentStatus.of(s.name()));
+		assertNull(AppointmentStatus.of(null));
+		assertNull(AppointmentStatus.of(""));
+		assertNull(AppointmentStatus.of("ac"));
+		assertNull(AppointmentStatus.of("AC "));
+		assertNull(AppointmentStatus.of("XX"));
+	}
+
+	@Test
+	public void parseAcceptsTypedCodes() {
+		assertSame(AppointmentStatus.AC, AppointmentStatus.parse("ac"));
+		assertSame(AppointmentStatus.WL, AppointmentStatus.parse(" Wl "));
+		assertSame(AppointmentStatus.PA, AppointmentStatus.parse("PA"));
+	}
+
+	@Test
+	public void parseRejectsOtherText() {
+		for (String text : new String[] { null, "", "A", "ACT", "XX" }){
+			try{
+				AppointmentStatus.parse(text);
+				fail("parsed " + text);
+			}catch (IllegalArgumentException e){
+				assertEquals("invalid appointment status: " + text + " (PA, AC, AV or WL)", e.getMessage());
+			}//end try
+		}//end for
+	}
+
+	@Test
+	public void orderMatchesTheEnumOfCompactSql() {
+		AppointmentStatus[] values = AppointmentStatus.values();
+		assertEquals("PA AC AV WL", values[0] + " " + values[1] + " " + values[2] + " " + values[3]);
+	}
+}//end AppointmentStatusTest
@@ -0,0 +1,111 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of AvailabilityIndex kept up to date by add(), the booking engine
+ * and the waitlist engine, without a database.
+ *
+ */
+
+public class AvailabilityIndexTest{
+	private static final Date DAY = Date.valueOf("2026-11-02");
+	private static final Date NEXT_DAY = Date.valueOf("2026-11-03");
+	private static final Integer[] CARDIOLOGY = { 1 };
+	private static final Integer[] BOTH = { 1, 2 };
+
+	//appointments 1..9 in department 1 and 11..19 in department 2 on DAY, 100 in department 1 on NEXT_DAY
+	private static AvailabilityIndex index() {
+		AvailabilityIndex index = new AvailabilityIndex(null);
+		for (int i = 1; i <= 9; i++){
+			index.add(i, DAY, "8:00-10:00", new Integer[] { 1 });
+			index.add(10 + i, DAY, "10:00-12:00", new Integer[] { 2 });
+		}//end for
+		index.add(100, NEXT_DAY, "8:00-10:00", new Integer[] { 1 });
+		return index;
+	}
+
+	@Test
+	public void pagesForwardAcrossDepartments() {
+		AvailabilityIndex index = index();
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, ids(index.page(BOTH, DAY, true, Integer.MIN_VALUE, 4)));
+		assertArrayEquals(new int[] { 8, 9, 11, 12 }, ids(index.page(BOTH, DAY, true, 7, 4)));
+		assertArrayEquals(new int[] { 18, 19 }, ids(index.page(BOTH, DAY, true, 17, 4)));
+		assertArrayEquals(new int[0], ids(index.page(BOTH, DAY, true, 19, 4)));
+	}
+
+	@Test
+	public void pagesBackwardInDescendingOrder() {
+		AvailabilityIndex index = index();
+		assertArrayEquals(new int[] { 19, 18, 17 }, ids(index.page(BOTH, DAY, false, Integer.MAX_VALUE, 3)));
+		assertArrayEquals(new int[] { 11, 9, 8 }, ids(index.page(BOTH, DAY, false, 12, 3)));
+		assertArrayEquals(new int[] { 2, 1 }, ids(index.page(BOTH, DAY, false, 3, 3)));
+	}
+
+	@Test
+	public void pagesOnlyTheGivenDepartmentsAndDate() {
+		AvailabilityIndex index = index();
+		assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, ids(index.page(CARDIOLOGY, DAY, true, 0, 20)));
+		assertArrayEquals(new int[] { 100 }, ids(index.page(BOTH, NEXT_DAY, true, 0, 20)));
+		assertArrayEquals(new int[0], ids(index.page(new Integer[] { 3 }, DAY, true, 0, 20)));
+		assertEquals("8:00-10:00", index.page(CARDIOLOGY, DAY, true, 0, 1).get(0).timeSlot);
+	}
+
+	@Test
+	public void anAppointmentOfSeveralDepartmentsIsListedOnce() {
+		AvailabilityIndex index = new AvailabilityIndex(null);
+		index.add(7, DAY, "8:00-10:00", BOTH);
+		index.add(8, DAY, "8:00-10:00", new Integer[] { 2 });
+		assertArrayEquals(new int[] { 7, 8 }, ids(index.page(BOTH, DAY, true, 0, 10)));
+		assertArrayEquals(new int[] { 8, 7 }, ids(index.page(BOTH, DAY, false, 100, 10)));
+		assertArrayEquals(new int[] { 7, 8 }, ids(index.available(BOTH, DAY)));
+		index.remove(7);
+		assertArrayEquals(new int[] { 8 }, ids(index.page(BOTH, DAY, true, 0, 10)));
+		assertArrayEquals(new int[0], ids(index.page(CARDIOLOGY, DAY, true, 0, 10)));
+	}
+
+	@Test
+	public void bookingRemovesAndCancellingAddsBack() {
+		AvailabilityIndex index = index();
+		index.statusChanged(3, 42, "AV", "AC");
+		// changes that do not leave AV are not in the index
+		index.statusChanged(4, 42, "AC", "WL");
+		index.statusChanged(5, 42, "WL", "WL");
+		assertArrayEquals(new int[] { 1, 2, 4, 5 }, ids(index.page(CARDIOLOGY, DAY, true, 0, 4)));
+		index.slotFreed(3, DAY, "8:00-10:00", CARDIOLOGY);
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, ids(index.page(CARDIOLOGY, DAY, true, 0, 4)));
+	}
+
+	@Test
+	public void slotsWithoutDateOrDepartmentAreNotListed() {
+		AvailabilityIndex index = new AvailabilityIndex(null);
+		index.add(1, null, "8:00-10:00", CARDIOLOGY);
+		index.add(2, DAY, "8:00-10:00", new Integer[0]);
+		assertTrue(index.available(BOTH, DAY).isEmpty());
+		assertTrue(index.toString().endsWith("days=0 appointments=0"));
+	}
+
+	private static int[] ids(List<AvailabilityIndex.Slot> slots) {
+		int[] ids = new int[slots.size()];
+		for (int i = 0; i < ids.length; i++) ids[i] = slots.get(i).appointmentId;
+		return ids;
+	}
+}//end AvailabilityIndexTest
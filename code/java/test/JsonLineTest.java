@@ -0,0 +1,126 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests of JsonLine, which reads the lines of the batch and sync commands
+ * and the bodies of the HTTP service.
+ *
+ */
+
+public class JsonLineTest{
+	@Test
+	public void readsEveryKindOfValue() {
+		JsonLine j = JsonLine.parse("{\"op\":\"AddDoctor\",\"doctor_ID\":7,\"fee\":-12.5e2,\"active\":true,\"note\":null}");
+		assertEquals("AddDoctor", j.getString("op"));
+		assertEquals(7, j.requireInt("doctor_ID"));
+		assertEquals("-12.5e2", j.getString("fee"));
+		assertEquals("true", j.getString("active"));
+		assertNull(j.getString("note"));
+		assertFalse(j.has("note"));
+		assertFalse(j.has("missing"));
+		assertTrue(j.has("op"));
+	}
+
+	@Test
+	public void skipsWhiteSpace() {
+		JsonLine j = JsonLine.parse(" \t{ \"a\" : 1 ,\t\"b\" :\"x y\" }\r\n");
+		assertEquals(1, j.requireInt("a"));
+		assertEquals("x y", j.getString("b"));
+	}
+
+	@Test
+	public void readsAnEmptyObject() {
+		assertFalse(JsonLine.parse("{}").has("a"));
+		assertFalse(JsonLine.parse(" { } ").has("a"));
+	}
+
+	@Test
+	public void unescapesStrings() {
+		JsonLine j = JsonLine.parse("{\"s\":\"a\\\"b\\\\c\\/d\\n\\t\\r\\b\\f\\u00e9\\u0041\"}");
+		assertEquals("a\"b\\c/d\n\t\r\b\f\u00e9A", j.getString("s"));
+	}
+
+	@Test
+	public void theLastOfRepeatedKeysWins() {
+		assertEquals("2", JsonLine.parse("{\"a\":1,\"a\":2}").getString("a"));
+	}
+
+	@Test
+	public void quoteRoundTrips() {
+		String text = "Ann \"Lee\"\\\n\t\r\u0001 \u00e9";
+		StringBuilder out = new StringBuilder("{\"name\":");
+		JsonLine.quote(text, out);
+		out.append(",\"none\":");
+		JsonLine.quote(null, out);
+		out.append('}');
+		assertEquals("{\"name\":\"Ann \\\"Lee\\\"\\\\\\n\\t\\r\\u0001 \u00e9\",\"none\":null}", out.toString());
+		JsonLine j = JsonLine.parse(out.toString());
+		assertEquals(text, j.getString("name"));
+		assertNull(j.getString("none"));
+	}
+
+	@Test
+	public void requiredFieldsMustBePresent() {
+		JsonLine j = JsonLine.parse("{\"a\":null,\"b\":\"x\"}");
+		assertRejected("missing field a", () -> j.requireString("a"));
+		assertRejected("missing field c", () -> j.requireInt("c"));
+		try{
+			j.requireInt("b");
+			fail("read x as a number");
+		}catch (NumberFormatException e){
+			// expected.
+		}//end try
+	}
+
+	@Test
+	public void rejectsWhatIsNotAFlatObject() {
+		String[] lines = {
+			"", "   ", "[1,2]", "\"a\"", "{", "{\"a\"}", "{\"a\":}", "{\"a\":1", "{\"a\":1,}", "{a:1}",
+			"{\"a\":{\"b\":1}}", "{\"a\":[1]}", "{\"a\":tru}", "{\"a\":01x}", "{\"a\":\"x}", "{\"a\":\"\\u12\"}",
+			"{\"a\":1 \"b\":2}", "{\"a\":1} x", "{}{}", "{\"a\":1}}"
+		};
+		for (String line : lines){
+			try{
+				JsonLine.parse(line);
+				fail("parsed " + line);
+			}catch (IllegalArgumentException e){
+				// expected.
+			}//end try
+		}//end for
+	}
+
+	@Test
+	public void errorsNameTheColumn() {
+		assertRejected("expected ':' at column 6", () -> JsonLine.parse("{\"a\" 1}"));
+		assertRejected("expected ',' or '}' at column 8", () -> JsonLine.parse("{\"a\":1 \"b\":2}"));
+		assertRejected("unexpected text after the object at column 9", () -> JsonLine.parse("{\"a\":1} x"));
+		assertRejected("unexpected end of line at column 7", () -> JsonLine.parse("{\"a\":1"));
+	}
+
+	private static void assertRejected(String message, Runnable r) {
+		try{
+			r.run();
+			fail("accepted, expected: " + message);
+		}catch (IllegalArgumentException e){
+			assertEquals(message, e.getMessage());
+		}//end try
+	}
+}//end JsonLineTest
@@ -0,0 +1,153 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests of KeysetPager over rows held in memory.
+ *
+ */
+
+public class KeysetPagerTest{
+	/**
+	 * Pages over the keys of a map the way the SQL templates do: the rows
+	 * after the key ascending or before it descending, up to limit.
+	 */
+	static class MapPager extends KeysetPager{
+		final NavigableMap<Integer, String> rows;
+		final List<Integer> limits = new ArrayList<Integer>();
+
+		MapPager(NavigableMap<Integer, String> rows, int pageSize) {
+			super(pageSize);
+			this.rows = rows;
+		}
+
+		protected void fetch(boolean forward, int key, int limit, Sink sink) {
+			this.limits.add(limit);
+			sink.columns(new String[] { "appnt_id", "time_slot" }, new boolean[] { true, false });
+			Map<Integer, String> side = forward ? this.rows.tailMap(key, false) : this.rows.headMap(key, false).descendingMap();
+			int n = 0;
+			for (Map.Entry<Integer, String> e : side.entrySet()){
+				if (n++ == limit) break;
+				sink.row(e.getKey(), new String[] { String.valueOf(e.getKey()), e.getValue() });
+			}//end for
+		}
+	}
+
+	//keys 10, 20, ... count * 10
+	private static MapPager pager(int count, int pageSize) {
+		NavigableMap<Integer, String> rows = new TreeMap<Integer, String>();
+		for (int i = 1; i <= count; i++) rows.put(i * 10, "8:00-10:00");
+		return new MapPager(rows, pageSize);
+	}
+
+	@Test
+	public void walksForwardAndBack() throws Exception {
+		MapPager p = pager(25, 10);
+		assertTrue(p.first());
+		assertPage(p, 10, 100, false, true);
+		assertTrue(p.next());
+		assertPage(p, 110, 200, true, true);
+		assertTrue(p.next());
+		assertPage(p, 210, 250, true, false);
+		assertFalse(p.next());
+		assertPage(p, 210, 250, true, false);
+		assertTrue(p.previous());
+		assertPage(p, 110, 200, true, true);
+		assertTrue(p.previous());
+		assertPage(p, 10, 100, false, true);
+		assertFalse(p.previous());
+		assertPage(p, 10, 100, false, true);
+	}
+
+	@Test
+	public void aFullLastPageHasNoNext() throws Exception {
+		MapPager p = pager(20, 10);
+		p.first();
+		assertTrue(p.next());
+		assertPage(p, 110, 200, true, false);
+	}
+
+	@Test
+	public void lastPageHoldsTheLastRows() throws Exception {
+		MapPager p = pager(25, 10);
+		assertTrue(p.last());
+		assertPage(p, 160, 250, true, false);
+		assertTrue(p.previous());
+		assertPage(p, 60, 150, true, true);
+		assertTrue(p.previous());
+		assertPage(p, 10, 50, false, true);
+		assertEquals(5, p.getRows().size());
+	}
+
+	@Test
+	public void seeksFromAKey() throws Exception {
+		MapPager p = pager(25, 10);
+		p.after(95);
+		assertPage(p, 100, 190, true, true);
+		p.before(95);
+		assertPage(p, 10, 90, false, true);
+		p.after(250);
+		assertTrue(p.getRows().isEmpty());
+		assertFalse(p.hasNext());
+		assertFalse(p.hasPrevious());
+	}
+
+	@Test
+	public void emptyListingHasNoPages() throws Exception {
+		MapPager p = pager(0, 10);
+		assertFalse(p.first());
+		assertFalse(p.hasNext());
+		assertFalse(p.hasPrevious());
+		assertFalse(p.next());
+		assertFalse(p.last());
+	}
+
+	@Test
+	public void fetchesOneRowMoreThanAPage() throws Exception {
+		MapPager p = pager(25, 10);
+		p.first();
+		p.next();
+		p.previous();
+		for (int limit : p.limits) assertEquals(11, limit);
+		assertEquals(10, p.getRows().size());
+		assertArrayEquals(new String[] { "appnt_id", "time_slot" }, p.getColumns());
+		assertArrayEquals(new boolean[] { true, false }, p.getNumeric());
+		assertArrayEquals(new String[] { "10", "8:00-10:00" }, p.getRows().get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void pageSizeMustBePositive() {
+		pager(5, 0);
+	}
+
+	private static void assertPage(KeysetPager p, int firstKey, int lastKey, boolean hasPrevious, boolean hasNext) {
+		assertEquals("first key", firstKey, p.getFirstKey());
+		assertEquals("last key", lastKey, p.getLastKey());
+		assertEquals("rows", (lastKey - firstKey) / 10 + 1, p.getRows().size());
+		assertEquals(String.valueOf(firstKey), p.getRows().get(0)[0]);
+		assertEquals("has previous", hasPrevious, p.hasPrevious());
+		assertEquals("has next", hasNext, p.hasNext());
+	}
+}//end KeysetPagerTest
@@ -0,0 +1,95 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the latency histogram of QueryStats.
+ *
+ */
+
+public class QueryStatsTest{
+	@Test
+	public void smallLatenciesHaveOneBucketPerMicrosecond() {
+		for (int us = 0; us < 8; us++){
+			assertEquals(us, QueryStats.bucketOf(us));
+			assertEquals(us + 1, QueryStats.upperMicrosOf(us));
+		}//end for
+		assertEquals(0, QueryStats.bucketOf(-5));
+	}
+
+	@Test
+	public void bucketBoundsHoldTheLatencyWithinAnEighth() {
+		for (long us = 0; us < 1 << 20; us++) checkBucket(us);
+		for (int exp = 3; exp < 41; exp++){
+			checkBucket((1L << exp) - 1);
+			checkBucket(1L << exp);
+			checkBucket((1L << exp) + 1);
+		}//end for
+	}
+
+	@Test
+	public void bucketsFollowTheLatencies() {
+		int previous = -1;
+		for (long us = 0; us < 1 << 20; us++){
+			int bucket = QueryStats.bucketOf(us);
+			assertTrue(bucket == previous || bucket == previous + 1);
+			previous = bucket;
+		}//end for
+		for (int b = 1; b <= QueryStats.bucketOf(Long.MAX_VALUE); b++){
+			assertTrue(QueryStats.upperMicrosOf(b) > QueryStats.upperMicrosOf(b - 1));
+			assertEquals(b, QueryStats.bucketOf(QueryStats.upperMicrosOf(b - 1)));
+		}//end for
+	}
+
+	@Test
+	public void hugeLatenciesLandInTheLastBucket() {
+		int last = QueryStats.bucketOf(Long.MAX_VALUE);
+		assertEquals(last, QueryStats.bucketOf(1L << 41));
+		assertEquals(last, QueryStats.bucketOf((1L << 41) - 1));
+		assertEquals(1L << 41, QueryStats.upperMicrosOf(last));
+	}
+
+	@Test
+	public void percentilesComeFromTheHistogram() {
+		QueryStats stats = new QueryStats("test");
+		assertEquals(0.0, stats.getP50Millis(), 0.0);
+		for (int ms = 1; ms <= 100; ms++) stats.record(ms * 1000000L, 1, ms == 100);
+		assertEquals(100, stats.getCount());
+		assertEquals(1, stats.getErrorCount());
+		assertEquals(100, stats.getRowCount());
+		assertEquals(50.5, stats.getMeanMillis(), 1e-9);
+		assertEquals(100.0, stats.getMaxMillis(), 0.0);
+		assertBetween(50.0, 50.0 * 1.125, stats.getP50Millis());
+		assertBetween(90.0, 90.0 * 1.125, stats.getP90Millis());
+		// never above the largest latency recorded
+		assertEquals(100.0, stats.percentileMillis(1.0), 0.0);
+		stats.reset();
+		assertEquals(0, stats.getCount());
+		assertEquals(0.0, stats.getP99Millis(), 0.0);
+	}
+
+	//the bucket of us ends above it by at most an eighth of it
+	private static void checkBucket(long us) {
+		long upper = QueryStats.upperMicrosOf(QueryStats.bucketOf(us));
+		assertTrue(us + " us below " + upper, us < upper);
+		assertTrue(us + " us far below " + upper, upper - us <= us / 8 + 1);
+	}
+
+	private static void assertBetween(double low, double high, double value) {
+		assertTrue(value + " not in [" + low + ", " + high + "]", value >= low && value <= high);
+	}
+}//end QueryStatsTest
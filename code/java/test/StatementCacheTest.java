@@ -0,0 +1,161 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of StatementCache on a stand-in connection that records what is
+ * done to the statements it prepares.
+ *
+ */
+
+public class StatementCacheTest{
+	/**
+	 * What a stand-in statement was asked to do.
+	 */
+	static final class Calls{
+		final String sql;
+		boolean closed = false;
+		int clears = 0;
+		final List<String> binds = new ArrayList<String>();
+
+		Calls(String sql) {
+			this.sql = sql;
+		}
+	}//end Calls
+
+	private final Map<PreparedStatement, Calls> _calls = new HashMap<PreparedStatement, Calls>();
+	private int _prepares = 0;
+
+	private final Connection _connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+		if (method.getName().equals("prepareStatement")){
+			this._prepares++;
+			return statement((String) args[0]);
+		}//end if
+		throw new UnsupportedOperationException(method.getName());
+	});
+
+	private PreparedStatement statement(String sql) {
+		final Calls calls = new Calls(sql);
+		PreparedStatement stmt = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+			String name = method.getName();
+			switch (name){
+				case "isClosed": return calls.closed;
+				case "close": calls.closed = true; return null;
+				case "clearParameters": calls.clears++; return null;
+				case "hashCode": return System.identityHashCode(proxy);
+				case "equals": return proxy == args[0];
+				default:
+					if (!name.startsWith("set")) throw new UnsupportedOperationException(name);
+					calls.binds.add(name + " " + args[0] + " " + args[1]);
+					return null;
+			}//end switch
+		});
+		this._calls.put(stmt, calls);
+		return stmt;
+	}
+
+	@Test
+	public void reusesThePreparedStatementOfATemplate() throws SQLException {
+		StatementCache cache = new StatementCache(this._connection, 4);
+		PreparedStatement first = cache.prepare("SELECT 1");
+		PreparedStatement again = cache.prepare("SELECT 1");
+		assertSame(first, again);
+		assertEquals(1, this._prepares);
+		assertEquals(1, this._calls.get(first).clears);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyUsedTemplate() throws SQLException {
+		StatementCache cache = new StatementCache(this._connection, 2);
+		PreparedStatement a = cache.prepare("A");
+		PreparedStatement b = cache.prepare("B");
+		// using A makes B the least recently used
+		cache.prepare("A");
+		PreparedStatement c = cache.prepare("C");
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertTrue(this._calls.get(b).closed);
+		assertFalse(this._calls.get(a).closed);
+		assertFalse(this._calls.get(c).closed);
+		assertSame(a, cache.prepare("A"));
+		assertSame(c, cache.prepare("C"));
+		assertNotSame(b, cache.prepare("B"));
+		assertEquals(2, cache.getEvictions());
+		assertTrue(this._calls.get(a).closed);
+	}
+
+	@Test
+	public void preparesAgainWhenTheStatementWasClosed() throws SQLException {
+		StatementCache cache = new StatementCache(this._connection, 4);
+		PreparedStatement first = cache.prepare("SELECT 1");
+		first.close();
+		PreparedStatement second = cache.prepare("SELECT 1");
+		assertNotSame(first, second);
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void clearClosesEveryStatement() throws SQLException {
+		StatementCache cache = new StatementCache(this._connection, 4);
+		PreparedStatement a = cache.prepare("A");
+		PreparedStatement b = cache.prepare("B");
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertTrue(this._calls.get(a).closed);
+		assertTrue(this._calls.get(b).closed);
+	}
+
+	@Test
+	public void capacityDefaultsWhenNotPositive() throws SQLException {
+		StatementCache cache = new StatementCache(this._connection, 0);
+		for (int i = 0; i < StatementCache.DEFAULT_CAPACITY + 1; i++) cache.prepare("SELECT " + i);
+		assertEquals(StatementCache.DEFAULT_CAPACITY, cache.size());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void bindUsesTheSetterOfEachType() throws SQLException {
+		PreparedStatement stmt = new StatementCache(this._connection, 4).prepare("INSERT");
+		java.sql.Date day = java.sql.Date.valueOf("2026-11-02");
+		StatementCache.bind(stmt, 7, 8L, "x", day, true, 1.5, null);
+		List<String> binds = this._calls.get(stmt).binds;
+		assertEquals("setInt 1 7", binds.get(0));
+		assertEquals("setLong 2 8", binds.get(1));
+		assertEquals("setString 3 x", binds.get(2));
+		assertEquals("setDate 4 2026-11-02", binds.get(3));
+		assertEquals("setBoolean 5 true", binds.get(4));
+		assertEquals("setDouble 6 1.5", binds.get(5));
+		assertEquals("setNull 7 " + java.sql.Types.NULL, binds.get(6));
+		StatementCache.bind(stmt, (Object[]) null);
+		assertEquals(7, binds.size());
+	}
+}//end StatementCacheTest
@@ -0,0 +1,91 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of StatusCounts, which option 7 prints its rows with.
+ *
+ */
+
+public class StatusCountsTest{
+	private static final int PA = 0, AC = 1, AV = 2, WL = 3;
+
+	@Test
+	public void statusesAreTheAppointmentStatuses() {
+		assertArrayEquals(new String[] { "PA", "AC", "AV", "WL" }, StatusCounts.STATUSES);
+	}
+
+	@Test
+	public void rankOrdersByDescendingCount() {
+		StatusCounts counts = doctor(1, 3, 7, 0, 5);
+		assertArrayEquals(new int[] { AC, WL, PA, AV }, counts.rank());
+		assertEquals("DoctorID 1 7 AC 5 WL 3 PA 0 AV", counts.format());
+	}
+
+	@Test
+	public void equalCountsKeepTheStatusOrder() {
+		assertArrayEquals(new int[] { PA, AC, AV, WL }, doctor(1, 0, 0, 0, 0).rank());
+		assertArrayEquals(new int[] { AV, WL, PA, AC }, doctor(2, 1, 1, 4, 4).rank());
+		assertArrayEquals(new int[] { WL, PA, AC, AV }, doctor(3, 2, 2, 2, 9).rank());
+	}
+
+	@Test
+	public void resetStartsTheNextDoctorFromZero() {
+		StatusCounts counts = new StatusCounts();
+		assertTrue(counts.isEmpty());
+		counts.reset(1);
+		counts.add("WL", 9);
+		counts.rank();
+		counts.reset(2);
+		assertFalse(counts.isEmpty());
+		assertEquals(2, counts.getDoctorId());
+		counts.add("AV", 1);
+		assertEquals(0, counts.getCount(WL));
+		assertEquals("DoctorID 2 1 AV 0 PA 0 AC 0 WL", counts.format());
+	}
+
+	@Test
+	public void countsOfAStatusAddUp() {
+		StatusCounts counts = new StatusCounts();
+		counts.reset(4);
+		counts.add("AC", 2);
+		counts.add("AC", 3);
+		assertEquals(5, counts.getCount(AC));
+	}
+
+	@Test
+	public void unknownStatusesAreIgnored() {
+		StatusCounts counts = new StatusCounts();
+		counts.reset(5);
+		counts.add(null, 4);
+		counts.add("XX", 4);
+		counts.add("ac", 4);
+		for (int i = 0; i < StatusCounts.STATUSES.length; i++) assertEquals(0, counts.getCount(i));
+	}
+
+	private static StatusCounts doctor(int doctorId, int pa, int ac, int av, int wl) {
+		StatusCounts counts = new StatusCounts();
+		counts.reset(doctorId);
+		counts.add("PA", pa);
+		counts.add("AC", ac);
+		counts.add("AV", av);
+		counts.add("WL", wl);
+		return counts;
+	}
+}//end StatusCountsTest
@@ -0,0 +1,108 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests of TimeSlot, among them that parse() accepts exactly the slots the
+ * check of sql/compact.sql lets through.
+ *
+ */
+
+public class TimeSlotTest{
+	//slots on both sides of every rule of the check
+	private static final String[] SLOTS = {
+		"8:00-10:00", "08:00-10:30", "8:00 - 10:30", "  8:00-10:00  ", "0:00-24:00", "24:00-24:00", "8:00-8:00",
+		"10:00-8:00", "23:00-24:30", "7:00-25:00", "99:00-99:00",
+		"8:60-9:00", "8:5-9:00", "8:005-9:00", "+8:00-9:00", "008:00-9:00", "-1:00-9:00",
+		"8:00\t-9:00", "\t8:00-9:00", "8:00-9:00\n", "8:00-", "-9:00", "8-9", "8:00 9:00", "8:00--9:00",
+		"8:00-9:00-10:00", "", " ", "٨:00-9:00"
+	};
+
+	@Test
+	public void parseAgreesWithCompactSql() throws IOException {
+		Pattern check = compactSqlPattern();
+		for (String slot : SLOTS){
+			assertEquals("slot '" + slot + "'", acceptedByCompactSql(check, slot), parses(slot));
+		}//end for
+	}
+
+	@Test
+	public void parseNormalizes() {
+		assertEquals("8:00-10:30", TimeSlot.parse("08:00 - 10:30").toString());
+		assertEquals("0:05-24:00", TimeSlot.parse("0:05-24:00").toString());
+		TimeSlot slot = TimeSlot.parse("9:15-11:45");
+		assertEquals(9 * 60 + 15, slot.getStartMinute());
+		assertEquals(11 * 60 + 45, slot.getEndMinute());
+		assertEquals(slot, TimeSlot.parse(slot.toString()));
+		assertEquals(slot.hashCode(), TimeSlot.parse(slot.toString()).hashCode());
+	}
+
+	@Test
+	public void parseRejectsNull() {
+		try{
+			TimeSlot.parse(null);
+			fail("null parsed");
+		}catch (IllegalArgumentException e){
+			assertEquals("missing time slot", e.getMessage());
+		}//end try
+	}
+
+	@Test
+	public void touchingSlotsDoNotOverlap() {
+		TimeSlot morning = TimeSlot.parse("8:00-10:00");
+		assertFalse(morning.overlaps(TimeSlot.parse("10:00-12:00")));
+		assertFalse(TimeSlot.parse("6:00-8:00").overlaps(morning));
+		assertTrue(morning.overlaps(TimeSlot.parse("9:59-12:00")));
+		assertTrue(morning.overlaps(TimeSlot.parse("8:30-9:00")));
+		assertTrue(TimeSlot.parse("7:00-13:00").overlaps(morning));
+	}
+
+	private static boolean parses(String slot) {
+		try{
+			TimeSlot.parse(slot);
+			return true;
+		}catch (IllegalArgumentException e){
+			return false;
+		}//end try
+	}
+
+	//the WHERE clause that fills bad_time_slot, negated; matches() as PostgreSQL's $ does not match before a final newline
+	private static boolean acceptedByCompactSql(Pattern check, String slot) {
+		Matcher m = check.matcher(slot);
+		if (!m.matches()) return false;
+		int start = Integer.parseInt(m.group(1)) * 60 + Integer.parseInt(m.group(2));
+		int end = Integer.parseInt(m.group(3)) * 60 + Integer.parseInt(m.group(4));
+		return start <= end && end <= 24 * 60;
+	}
+
+	//the regexp_match pattern of sql/compact.sql, read from the script so the two cannot drift apart
+	private static Pattern compactSqlPattern() throws IOException {
+		String sql = new String(Files.readAllBytes(new File("../sql/compact.sql").toPath()), StandardCharsets.UTF_8);
+		Matcher m = Pattern.compile("regexp_match\\(time_slot, '([^']*)'\\)").matcher(sql);
+		assertTrue("compact.sql checks the time slots with regexp_match", m.find());
+		return Pattern.compile(m.group(1));
+	}
+}//end TimeSlotTest
@@ -0,0 +1,16 @@
+#! /bin/bash
+# Like createPostgreDB.sh, but the CSV files are streamed from this machine with
+# "DBproject ... load" (COPY FROM STDIN), so nothing is copied to the server's
+# data directory. Compile the program first (../java/compile.sh).
+echo "creating db named ... "$USER"_DB"
+createdb -h localhost -p $PGPORT $USER"_DB"
+pg_ctl status
+
+echo "Creating tables .. "
+psql -h localhost -p $PGPORT $USER"_DB" -v ON_ERROR_STOP=1 -f ../sql/schema.sql || exit 1
+
+echo "Loading csv files .. "
+(cd ../java && java -cp "lib/*:bin/" DBproject $USER"_DB" $PGPORT $USER load ../data) || exit 1
+
+echo "Creating indexes and triggers .. "
+psql -h localhost -p $PGPORT $USER"_DB" -f ../sql/post_load.sql
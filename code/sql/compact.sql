@@ -0,0 +1,72 @@
+-- Stores the appointment status as an enum and indexes the time slots as
+-- timestamp ranges.  Optional, run once on a database built by create.sql
+-- (after partition.sql when both are used):
+--   psql -d $DBNAME -f compact.sql
+--
+-- appointment_status replaces the VARCHAR(2) _STATUS domain in Appointment
+-- and doctor_status_summary.  It keeps the 'PA', 'AC', 'AV', 'WL' codes, so
+-- queries and the CSV files are unchanged; comparisons are on the enum's
+-- sort order instead of collated text and the CHECK of the domain is gone.
+-- DBproject sends string parameters untyped (stringtype=unspecified), so
+-- "status = ?" is read as the enum; the assignment casts cover clients that
+-- write varchar values and CASE expressions, which come out as text.
+--
+-- time_slot_range(adate, time_slot) turns '8:00-10:30' of a date into the
+-- tsrange [2021-06-01 08:00, 2021-06-01 10:30), and appointment_slot_idx, a
+-- GiST index on it, answers overlap (&&) and containment (@>) queries such
+-- as the overlapping listing of "DBproject ... export".  time_slot stays the
+-- stored text, so the index also rejects a slot that is not H:MM-H:MM or
+-- ends before it starts.  Such slots are looked for first: the script
+-- stops with the first of them before it changes anything, so they can be
+-- fixed (UPDATE Appointment SET time_slot = ...) and the script run again.
+-- The statuses need no check, the CHECK of _STATUS only admits the codes.
+
+BEGIN;
+
+DO $$
+DECLARE
+	n BIGINT;
+	sample TEXT;
+BEGIN
+	CREATE TEMP TABLE bad_time_slot ON COMMIT DROP AS
+	SELECT appnt_ID, time_slot FROM (
+		SELECT appnt_ID, time_slot, regexp_match(time_slot, '^ *([0-9]{1,2}):([0-5][0-9]) *- *([0-9]{1,2}):([0-5][0-9]) *$') AS m
+		FROM Appointment WHERE time_slot IS NOT NULL) s
+	WHERE m IS NULL
+		OR m[1]::int * 60 + m[2]::int > m[3]::int * 60 + m[4]::int
+		OR m[3]::int * 60 + m[4]::int > 24 * 60;
+	SELECT COUNT(*) INTO n FROM bad_time_slot;
+	IF n > 0 THEN
+		SELECT string_agg(format('%s %L', appnt_ID, time_slot), ', ') INTO sample
+		FROM (SELECT appnt_ID, time_slot FROM bad_time_slot ORDER BY appnt_ID LIMIT 10) b;
+		RAISE EXCEPTION '% appointments have a time_slot that is not H:MM-H:MM or ends before it starts, e.g. %', n, sample
+			USING HINT = 'Fix or remove them, then run compact.sql again; nothing was changed.';
+	END IF;
+END;
+$$;
+
+CREATE TYPE appointment_status AS ENUM ('PA', 'AC', 'AV', 'WL'); --Past, Active, Available, Waitlisted
+CREATE CAST (varchar AS appointment_status) WITH INOUT AS ASSIGNMENT;
+CREATE CAST (text AS appointment_status) WITH INOUT AS ASSIGNMENT;
+
+-- the partial index is rebuilt below with an enum predicate
+DROP INDEX IF EXISTS appointment_available_adate_idx;
+ALTER TABLE Appointment ALTER COLUMN status TYPE appointment_status USING status::text::appointment_status;
+ALTER TABLE doctor_status_summary ALTER COLUMN status TYPE appointment_status USING status::text::appointment_status;
+CREATE INDEX appointment_available_adate_idx ON Appointment (adate, appnt_ID) WHERE status = 'AV';
+
+-- H:MM-H:MM of a day as a half-open timestamp range; integer parsing only,
+-- so it is immutable and can be indexed
+CREATE OR REPLACE FUNCTION time_slot_range(day DATE, slot TEXT) RETURNS tsrange AS $$
+	SELECT tsrange(
+		day + make_time(split_part(split_part(slot, '-', 1), ':', 1)::int, split_part(split_part(slot, '-', 1), ':', 2)::int, 0),
+		day + make_time(split_part(split_part(slot, '-', 2), ':', 1)::int, split_part(split_part(slot, '-', 2), ':', 2)::int, 0),
+		'[)')
+$$ LANGUAGE sql IMMUTABLE STRICT;
+
+CREATE INDEX appointment_slot_idx ON Appointment USING gist (time_slot_range(adate, time_slot));
+
+ANALYZE Appointment;
+ANALYZE doctor_status_summary;
+
+COMMIT;
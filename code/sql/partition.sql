@@ -0,0 +1,232 @@
+-- Moves Appointment and its has_appointment links to monthly range
+-- partitions on adate (PostgreSQL 12 or later).  Optional, run once on a
+-- database built by create.sql:
+--   psql -d $DBNAME -f partition.sql
+--
+-- Date-bounded queries (options 5 and 6) then read only the months they ask
+-- for, and each month has its own small indexes.
+--
+-- A partitioned table can only enforce keys that contain adate, so:
+--   * Appointment's primary key appointment_pkey is (appnt_ID, adate).
+--     appointment_key keeps appnt_ID unique across months, and the foreign
+--     keys of searches, schedules, waitlist and the links point at it.  An
+--     insert that reuses an appnt_ID on another date fails with a unique
+--     violation, and an appointment cannot move to another month while it
+--     has links.
+--   * The links live in appointment_link, which carries adate and is
+--     partitioned like Appointment.  has_appointment becomes a view of it
+--     whose INSTEAD OF trigger looks the date up, so inserts, deletes and
+--     COPY into has_appointment work as before.  Inserting a link that
+--     exists already is skipped, so it does not take a booking down.
+--
+-- create_appointment_partitions() adds months.  DBproject calls it at
+-- startup to keep dbproject.partitions.monthsAhead (default 12) months
+-- ready; "DBproject ... partitions maintain" does the same from cron.  A row
+-- whose month has no partition is rejected.
+-- archive_appointment_partitions() detaches the past months, see below.
+
+BEGIN;
+
+CREATE SCHEMA IF NOT EXISTS appointment_archive;
+
+CREATE TABLE appointment_key
+(
+	appnt_ID INTEGER NOT NULL,
+	adate DATE NOT NULL,
+	PRIMARY KEY (appnt_ID),
+	UNIQUE (appnt_ID, adate)
+);
+
+ALTER TABLE Appointment RENAME TO appointment_unpartitioned;
+ALTER TABLE appointment_unpartitioned RENAME CONSTRAINT appointment_pkey TO appointment_unpartitioned_pkey;
+ALTER TABLE has_appointment RENAME TO has_appointment_unpartitioned;
+ALTER INDEX IF EXISTS has_appointment_doctor_idx RENAME TO has_appointment_unpartitioned_doctor_idx;
+ALTER INDEX IF EXISTS appointment_status_adate_idx RENAME TO appointment_unpartitioned_status_adate_idx;
+ALTER INDEX IF EXISTS appointment_available_adate_idx RENAME TO appointment_unpartitioned_available_adate_idx;
+
+CREATE TABLE Appointment
+(
+	appnt_ID INTEGER NOT NULL,
+	adate DATE NOT NULL,
+	time_slot VARCHAR(11),
+	status _STATUS,
+	CONSTRAINT appointment_pkey PRIMARY KEY (appnt_ID, adate)
+) PARTITION BY RANGE (adate);
+
+CREATE TABLE appointment_link
+(
+	appt_id INTEGER NOT NULL,
+	doctor_id INTEGER NOT NULL,
+	adate DATE NOT NULL,
+	patient_id INTEGER,
+	PRIMARY KEY (appt_id, doctor_id, adate),
+	FOREIGN KEY (appt_id, adate) REFERENCES appointment_key (appnt_ID, adate) ON UPDATE CASCADE,
+	FOREIGN KEY (doctor_id) REFERENCES Doctor (doctor_ID),
+	FOREIGN KEY (patient_id) REFERENCES Patient (patient_ID)
+) PARTITION BY RANGE (adate);
+
+-- Creates the missing months of Appointment and appointment_link from the
+-- month of first_day through the month of last_day and returns how many it
+-- created.  Archived months are not created again.
+CREATE OR REPLACE FUNCTION create_appointment_partitions(first_day DATE, last_day DATE) RETURNS INTEGER AS $$
+DECLARE
+	m DATE := date_trunc('month', first_day)::date;
+	suffix TEXT;
+	created INTEGER := 0;
+BEGIN
+	WHILE m <= last_day LOOP
+		suffix := to_char(m, '"p"YYYYMM');
+		IF NOT EXISTS (SELECT 1 FROM pg_class WHERE relname = 'appointment_' || suffix AND relkind = 'r') THEN
+			EXECUTE format('CREATE TABLE %I PARTITION OF Appointment FOR VALUES FROM (%L) TO (%L)',
+				'appointment_' || suffix, m, (m + interval '1 month')::date);
+			EXECUTE format('CREATE TABLE %I PARTITION OF appointment_link FOR VALUES FROM (%L) TO (%L)',
+				'appointment_link_' || suffix, m, (m + interval '1 month')::date);
+			created := created + 1;
+		END IF;
+		m := (m + interval '1 month')::date;
+	END LOOP;
+	RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Detaches the months that end on or before cutoff and hold only past
+-- ('PA') appointments, with their links, and moves them to schema
+-- appointment_archive, or drops them when drop_them.  An archived month can
+-- be dumped with pg_dump -Fc (compressed) and dropped later.  Its counts
+-- leave doctor_status_summary; its appnt_IDs stay taken in appointment_key.
+-- Returns one row per month it looked at.
+CREATE OR REPLACE FUNCTION archive_appointment_partitions(cutoff DATE, drop_them BOOLEAN DEFAULT false)
+RETURNS TABLE (month_partition TEXT, appointments BIGINT, outcome TEXT) AS $$
+DECLARE
+	p RECORD;
+	link TEXT;
+	not_past BIGINT;
+BEGIN
+	FOR p IN
+		SELECT c.relname::text AS name, to_date(substr(c.relname, 14), 'YYYYMM') AS first_day
+		FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+		WHERE i.inhparent = 'appointment'::regclass AND c.relname ~ '^appointment_p[0-9]{6}$'
+		ORDER BY 2
+	LOOP
+		EXIT WHEN (p.first_day + interval '1 month')::date > cutoff + 1;
+		month_partition := p.name;
+		link := 'appointment_link_' || substr(p.name, 13);
+		EXECUTE format('SELECT COUNT(*), COUNT(*) FILTER (WHERE status IS DISTINCT FROM ''PA'') FROM %I', p.name)
+			INTO appointments, not_past;
+		IF not_past > 0 THEN
+			outcome := format('kept, %s appointments are not past', not_past);
+			RETURN NEXT;
+			CONTINUE;
+		END IF;
+		-- detaching fires no delete triggers: the month leaves the summary, and its
+		-- bookings stay in number_of_appts as legacy counts
+		EXECUTE format('UPDATE Patient P SET legacy_appts = P.legacy_appts + L.n '
+			'FROM (SELECT patient_id, COUNT(*) AS n FROM %I WHERE patient_id IS NOT NULL GROUP BY 1) L '
+			'WHERE P.patient_ID = L.patient_id', link);
+		EXECUTE format('INSERT INTO doctor_status_summary AS s (doctor_id, status, appt_count) '
+			'SELECT L.doctor_id, A.status, -COUNT(*) FROM %I L JOIN %I A ON A.appnt_ID = L.appt_id '
+			'WHERE A.status IS NOT NULL GROUP BY 1, 2 ORDER BY 1, 2 '
+			'ON CONFLICT (doctor_id, status) DO UPDATE SET appt_count = s.appt_count + EXCLUDED.appt_count', link, p.name);
+		EXECUTE format('ALTER TABLE appointment_link DETACH PARTITION %I', link);
+		EXECUTE format('ALTER TABLE Appointment DETACH PARTITION %I', p.name);
+		IF drop_them THEN
+			EXECUTE format('DROP TABLE %I, %I', link, p.name);
+			outcome := 'dropped';
+		ELSE
+			EXECUTE format('ALTER TABLE %I SET SCHEMA appointment_archive', link);
+			EXECUTE format('ALTER TABLE %I SET SCHEMA appointment_archive', p.name);
+			outcome := 'archived';
+		END IF;
+		RETURN NEXT;
+	END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- the months of the existing data through a year ahead
+SELECT create_appointment_partitions(
+	COALESCE((SELECT MIN(adate) FROM appointment_unpartitioned), current_date),
+	GREATEST((SELECT MAX(adate) FROM appointment_unpartitioned), (current_date + interval '12 months')::date));
+
+INSERT INTO appointment_key (appnt_ID, adate) SELECT appnt_ID, adate FROM appointment_unpartitioned;
+INSERT INTO Appointment (appnt_ID, adate, time_slot, status) SELECT appnt_ID, adate, time_slot, status FROM appointment_unpartitioned;
+INSERT INTO appointment_link (appt_id, doctor_id, adate, patient_id)
+SELECT H.appt_id, H.doctor_id, A.adate, H.patient_id FROM has_appointment_unpartitioned H JOIN appointment_unpartitioned A ON A.appnt_ID = H.appt_id;
+
+-- also drops the old foreign keys of searches, schedules and waitlist and the old summary and patient count triggers
+DROP TABLE has_appointment_unpartitioned, appointment_unpartitioned CASCADE;
+
+ALTER TABLE searches ADD FOREIGN KEY (aid) REFERENCES appointment_key (appnt_ID);
+ALTER TABLE schedules ADD FOREIGN KEY (appt_id) REFERENCES appointment_key (appnt_ID);
+ALTER TABLE IF EXISTS waitlist ADD FOREIGN KEY (appt_id) REFERENCES appointment_key (appnt_ID);
+
+-- the INDEXES of post_load.sql, now one per month
+CREATE INDEX has_appointment_doctor_idx ON appointment_link (doctor_id, appt_id);
+CREATE INDEX appointment_status_adate_idx ON Appointment (status, adate);
+CREATE INDEX appointment_available_adate_idx ON Appointment (adate, appnt_ID) WHERE status = 'AV';
+
+-- appointment_key follows the appointments written from now on
+CREATE OR REPLACE FUNCTION maintain_appointment_key() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP = 'INSERT' THEN
+		INSERT INTO appointment_key (appnt_ID, adate) VALUES (NEW.appnt_ID, NEW.adate);
+	ELSIF TG_OP = 'DELETE' THEN
+		DELETE FROM appointment_key WHERE appnt_ID = OLD.appnt_ID;
+	ELSIF (NEW.appnt_ID, NEW.adate) IS DISTINCT FROM (OLD.appnt_ID, OLD.adate) THEN
+		-- cascades to the links; an update that moves the row to another month
+		-- fires DELETE and INSERT instead and fails while links exist
+		UPDATE appointment_key SET appnt_ID = NEW.appnt_ID, adate = NEW.adate WHERE appnt_ID = OLD.appnt_ID;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER appointment_key_trg AFTER INSERT OR UPDATE OR DELETE ON Appointment
+	FOR EACH ROW EXECUTE PROCEDURE maintain_appointment_key();
+
+CREATE VIEW has_appointment AS SELECT appt_id, doctor_id, patient_id FROM appointment_link;
+
+CREATE OR REPLACE FUNCTION write_has_appointment() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP <> 'INSERT' THEN
+		DELETE FROM appointment_link WHERE appt_id = OLD.appt_id AND doctor_id = OLD.doctor_id;
+		IF TG_OP = 'DELETE' THEN
+			RETURN OLD;
+		END IF;
+	ELSIF EXISTS (SELECT 1 FROM appointment_link WHERE appt_id = NEW.appt_id AND doctor_id = NEW.doctor_id) THEN
+		RETURN NULL;
+	END IF;
+	INSERT INTO appointment_link (appt_id, doctor_id, adate, patient_id)
+	SELECT NEW.appt_id, NEW.doctor_id, K.adate, NEW.patient_id FROM appointment_key K WHERE K.appnt_ID = NEW.appt_id;
+	IF NOT FOUND THEN
+		RAISE foreign_key_violation USING MESSAGE = format('appointment %s does not exist', NEW.appt_id);
+	END IF;
+	RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER has_appointment_write_trg INSTEAD OF INSERT OR UPDATE OR DELETE ON has_appointment
+	FOR EACH ROW EXECUTE PROCEDURE write_has_appointment();
+
+-- the SUMMARY triggers of post_load.sql, on the new tables under the same names
+CREATE TRIGGER summary_has_appointment_insert_trg AFTER INSERT ON appointment_link
+	REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_has_appointment_delete_trg AFTER DELETE ON appointment_link
+	REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_has_appointment_update_trg AFTER UPDATE ON appointment_link
+	REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_has_appointment_truncate_trg AFTER TRUNCATE ON appointment_link
+	FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_appointment_update_trg AFTER UPDATE ON Appointment
+	REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+
+-- and those of PATIENT COUNTS
+CREATE TRIGGER patient_appts_insert_trg AFTER INSERT ON appointment_link
+	REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE record_patient_appts_delta();
+CREATE TRIGGER patient_appts_delete_trg AFTER DELETE ON appointment_link
+	REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE PROCEDURE record_patient_appts_delta();
+CREATE TRIGGER patient_appts_update_trg AFTER UPDATE ON appointment_link
+	REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE record_patient_appts_delta();
+
+COMMIT;
+
+ANALYZE;
@@ -0,0 +1,216 @@
+-- Indexes, triggers and derived tables, created once the tables of
+-- schema.sql hold their data: the indexes are built in one pass, the
+-- triggers do not fire for every loaded row and the summary and patient
+-- counts start from the loaded rows.
+
+-------------
+---INDEXES---
+-------------
+-- Built after the data is loaded. DBproject warns at startup when one is missing.
+
+-- options 5, 7, 8: appointments of a doctor
+CREATE INDEX has_appointment_doctor_idx ON has_appointment (doctor_id, appt_id);
+-- options 5, 8: appointments by status and date
+CREATE INDEX appointment_status_adate_idx ON Appointment (status, adate);
+-- option 6: only the available appointments of a date
+CREATE INDEX appointment_available_adate_idx ON Appointment (adate, appnt_ID) WHERE status = 'AV';
+-- option 6: department lookup by name
+CREATE INDEX department_name_idx ON Department (name);
+-- option 6: doctors of a department
+CREATE INDEX doctor_did_idx ON Doctor (did);
+
+--------------
+---TRIGGERS---
+--------------
+-- Reference data changes are announced on channel reference_change as
+-- 'table:key' (or just 'table') so DBproject can drop its cached copies.
+-- Created after the data is loaded so COPY does not announce every row.
+CREATE OR REPLACE FUNCTION notify_reference_change() RETURNS trigger AS $$
+BEGIN
+	IF TG_LEVEL = 'STATEMENT' THEN
+		PERFORM pg_notify('reference_change', lower(TG_TABLE_NAME));
+		RETURN NULL;
+	END IF;
+	IF TG_OP <> 'INSERT' THEN
+		PERFORM pg_notify('reference_change', lower(TG_TABLE_NAME) || ':' || (to_jsonb(OLD) ->> TG_ARGV[0]));
+	END IF;
+	IF TG_OP <> 'DELETE' THEN
+		PERFORM pg_notify('reference_change', lower(TG_TABLE_NAME) || ':' || (to_jsonb(NEW) ->> TG_ARGV[0]));
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- option 6 caches whole department names, so one notice per statement is enough
+CREATE TRIGGER department_notify_trg AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Department
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change();
+CREATE TRIGGER doctor_notify_trg AFTER INSERT OR UPDATE OR DELETE ON Doctor
+	FOR EACH ROW EXECUTE PROCEDURE notify_reference_change('doctor_id');
+CREATE TRIGGER doctor_truncate_notify_trg AFTER TRUNCATE ON Doctor
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change();
+CREATE TRIGGER hospital_notify_trg AFTER INSERT OR UPDATE OR DELETE ON Hospital
+	FOR EACH ROW EXECUTE PROCEDURE notify_reference_change('hospital_id');
+CREATE TRIGGER hospital_truncate_notify_trg AFTER TRUNCATE ON Hospital
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_change();
+
+-------------
+---SUMMARY---
+-------------
+-- Appointments per doctor and status for options 7 and 8, kept current by
+-- statement triggers on has_appointment and Appointment (PostgreSQL 10 or
+-- later for the transition tables).  Counts may drop to 0, rows stay.
+-- "DBproject ... summary verify|rebuild" reconciles it with the base tables.
+CREATE TABLE doctor_status_summary
+(
+	doctor_id INTEGER NOT NULL,
+	status _STATUS NOT NULL,
+	appt_count BIGINT NOT NULL,
+	PRIMARY KEY (doctor_id, status)
+);
+
+CREATE OR REPLACE FUNCTION maintain_doctor_status_summary() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP = 'TRUNCATE' THEN
+		DELETE FROM doctor_status_summary;
+		RETURN NULL;
+	END IF;
+	-- the deltas of this statement, applied in key order so concurrent writers lock alike
+	IF TG_TABLE_NAME = 'appointment' THEN
+		INSERT INTO doctor_status_summary AS s (doctor_id, status, appt_count)
+		SELECT doctor_id, status, SUM(delta) FROM (
+			SELECT H.doctor_id, o.status, -1 AS delta FROM old_rows o JOIN new_rows n ON n.appnt_ID = o.appnt_ID JOIN has_appointment H ON H.appt_id = n.appnt_ID WHERE o.status IS DISTINCT FROM n.status
+			UNION ALL
+			SELECT H.doctor_id, n.status, 1 FROM old_rows o JOIN new_rows n ON n.appnt_ID = o.appnt_ID JOIN has_appointment H ON H.appt_id = n.appnt_ID WHERE o.status IS DISTINCT FROM n.status
+		) d WHERE status IS NOT NULL GROUP BY doctor_id, status HAVING SUM(delta) <> 0 ORDER BY 1, 2
+		ON CONFLICT (doctor_id, status) DO UPDATE SET appt_count = s.appt_count + EXCLUDED.appt_count;
+	ELSIF TG_OP = 'INSERT' THEN
+		INSERT INTO doctor_status_summary AS s (doctor_id, status, appt_count)
+		SELECT n.doctor_id, A.status, COUNT(*) FROM new_rows n JOIN Appointment A ON A.appnt_ID = n.appt_id
+		WHERE A.status IS NOT NULL GROUP BY 1, 2 ORDER BY 1, 2
+		ON CONFLICT (doctor_id, status) DO UPDATE SET appt_count = s.appt_count + EXCLUDED.appt_count;
+	ELSIF TG_OP = 'DELETE' THEN
+		INSERT INTO doctor_status_summary AS s (doctor_id, status, appt_count)
+		SELECT o.doctor_id, A.status, -COUNT(*) FROM old_rows o JOIN Appointment A ON A.appnt_ID = o.appt_id
+		WHERE A.status IS NOT NULL GROUP BY 1, 2 ORDER BY 1, 2
+		ON CONFLICT (doctor_id, status) DO UPDATE SET appt_count = s.appt_count + EXCLUDED.appt_count;
+	ELSE
+		INSERT INTO doctor_status_summary AS s (doctor_id, status, appt_count)
+		SELECT doctor_id, status, SUM(delta) FROM (
+			SELECT o.doctor_id, A.status, -1 AS delta FROM old_rows o JOIN Appointment A ON A.appnt_ID = o.appt_id
+			UNION ALL
+			SELECT n.doctor_id, A.status, 1 FROM new_rows n JOIN Appointment A ON A.appnt_ID = n.appt_id
+		) d WHERE status IS NOT NULL GROUP BY doctor_id, status HAVING SUM(delta) <> 0 ORDER BY 1, 2
+		ON CONFLICT (doctor_id, status) DO UPDATE SET appt_count = s.appt_count + EXCLUDED.appt_count;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- a statement that both changes a status and links the same appointment would
+-- be counted twice, so BookingEngine sends those as separate statements
+CREATE TRIGGER summary_has_appointment_insert_trg AFTER INSERT ON has_appointment
+	REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_has_appointment_delete_trg AFTER DELETE ON has_appointment
+	REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_has_appointment_update_trg AFTER UPDATE ON has_appointment
+	REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_has_appointment_truncate_trg AFTER TRUNCATE ON has_appointment
+	FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+CREATE TRIGGER summary_appointment_update_trg AFTER UPDATE ON Appointment
+	REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE maintain_doctor_status_summary();
+
+INSERT INTO doctor_status_summary (doctor_id, status, appt_count)
+SELECT H.doctor_id, A.status, COUNT(*) FROM has_appointment H JOIN Appointment A ON A.appnt_ID = H.appt_id
+WHERE A.status IS NOT NULL GROUP BY 1, 2;
+
+--------------
+---WAITLIST---
+--------------
+-- Patients waiting for a booked (AC or WL) appointment, first in first out.
+-- Booking such an appointment adds an entry; when it is cancelled the
+-- oldest waiting entry is promoted and stamped with promoted_at.  Freed (AV)
+-- appointments that still have waiting entries are promoted by
+-- "DBproject ... promote", whose workers lock them with SKIP LOCKED.
+CREATE TABLE waitlist
+(
+	entry_id BIGSERIAL,
+	appt_id INTEGER NOT NULL,
+	patient_id INTEGER NOT NULL,
+	doctor_id INTEGER NOT NULL,
+	enqueued_at TIMESTAMP NOT NULL DEFAULT clock_timestamp(),
+	promoted_at TIMESTAMP,
+	PRIMARY KEY (entry_id),
+	FOREIGN KEY (appt_id) REFERENCES Appointment(appnt_ID),
+	FOREIGN KEY (patient_id) REFERENCES Patient(patient_ID),
+	FOREIGN KEY (doctor_id) REFERENCES Doctor(doctor_ID)
+);
+
+-- the queue of each appointment in order, only the entries still waiting
+CREATE INDEX waitlist_queue_idx ON waitlist (appt_id, enqueued_at, entry_id) WHERE promoted_at IS NULL;
+
+--------------------
+---PATIENT COUNTS---
+--------------------
+-- Patient.number_of_appts is legacy_appts, the count a patient was added
+-- with, plus the has_appointment links booked for the patient.  Linking
+-- appends a delta row instead of updating Patient, so bookings of the same
+-- patient do not wait for each other; "DBproject ... patients rollup" (also
+-- run in the background while booking) folds the deltas into Patient and
+-- "patients reconcile" recomputes every count from the links.
+-- patient_appointment_count adds the deltas not yet folded in.
+CREATE TABLE patient_appts_delta
+(
+	delta_id BIGSERIAL,
+	patient_id INTEGER NOT NULL,
+	delta INTEGER NOT NULL,
+	PRIMARY KEY (delta_id)
+);
+
+CREATE INDEX patient_appts_delta_patient_idx ON patient_appts_delta (patient_id);
+
+CREATE OR REPLACE FUNCTION record_patient_appts_delta() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP <> 'DELETE' THEN
+		INSERT INTO patient_appts_delta (patient_id, delta)
+		SELECT patient_id, COUNT(*) FROM new_rows WHERE patient_id IS NOT NULL GROUP BY 1;
+	END IF;
+	IF TG_OP <> 'INSERT' THEN
+		INSERT INTO patient_appts_delta (patient_id, delta)
+		SELECT patient_id, -COUNT(*) FROM old_rows WHERE patient_id IS NOT NULL GROUP BY 1;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- TRUNCATE records nothing, run "patients reconcile" after it
+CREATE TRIGGER patient_appts_insert_trg AFTER INSERT ON has_appointment
+	REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE record_patient_appts_delta();
+CREATE TRIGGER patient_appts_delete_trg AFTER DELETE ON has_appointment
+	REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE PROCEDURE record_patient_appts_delta();
+CREATE TRIGGER patient_appts_update_trg AFTER UPDATE ON has_appointment
+	REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE PROCEDURE record_patient_appts_delta();
+
+-- a count written from outside the rollup (option 2, load, sync, by hand)
+-- moves the baseline with it; the rollup and reconcile set dbproject.counting
+CREATE OR REPLACE FUNCTION maintain_legacy_appts() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP = 'INSERT' THEN
+		NEW.legacy_appts := COALESCE(NEW.number_of_appts, 0);
+	ELSIF current_setting('dbproject.counting', true) IS DISTINCT FROM 'on' THEN
+		NEW.legacy_appts := OLD.legacy_appts + COALESCE(NEW.number_of_appts, 0) - COALESCE(OLD.number_of_appts, 0);
+	END IF;
+	RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER patient_legacy_appts_trg BEFORE INSERT OR UPDATE OF number_of_appts ON Patient
+	FOR EACH ROW EXECUTE PROCEDURE maintain_legacy_appts();
+
+CREATE VIEW patient_appointment_count AS
+SELECT P.patient_ID, COALESCE(P.number_of_appts, 0) + COALESCE(D.delta, 0) AS number_of_appts
+FROM Patient P LEFT JOIN (SELECT patient_id, SUM(delta) AS delta FROM patient_appts_delta GROUP BY 1) D ON D.patient_id = P.patient_ID;
+
+-- the loaded counts are all legacy, the loaded links have no patient
+UPDATE Patient SET legacy_appts = COALESCE(number_of_appts, 0);
+
+ANALYZE;
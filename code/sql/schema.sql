@@ -0,0 +1,139 @@
+-- The tables of the database, empty.  create.sql runs it before data.sql
+-- and post_load.sql; ../postgresql/loadPostgreDB.sh runs it before
+-- "DBproject ... load" fills the tables from the client side.
+
+DROP TABLE IF EXISTS appointment_link CASCADE;--partition.sql, takes the has_appointment view along
+DROP TABLE IF EXISTS appointment_key CASCADE;--partition.sql
+DROP SCHEMA IF EXISTS appointment_archive CASCADE;--partition.sql
+DROP TABLE IF EXISTS Hospital CASCADE;--OK
+DROP TABLE IF EXISTS Patient CASCADE;--OK
+DROP TABLE IF EXISTS Department CASCADE;--OK
+DROP TABLE IF EXISTS Appointment CASCADE;--OK
+DROP TABLE IF EXISTS Doctor CASCADE;--OK
+DROP TABLE IF EXISTS Staff CASCADE;--OK
+DROP TABLE IF EXISTS has_appointment CASCADE;--OK
+DROP TABLE IF EXISTS request_maintenance CASCADE;--OK
+DROP TABLE IF EXISTS searches CASCADE;--OK
+DROP TABLE IF EXISTS schedules CASCADE;--OK
+DROP TABLE IF EXISTS doctor_status_summary CASCADE;--OK
+DROP TABLE IF EXISTS waitlist CASCADE;--OK
+DROP TABLE IF EXISTS patient_appts_delta CASCADE;--OK
+DROP TYPE IF EXISTS appointment_status CASCADE;--compact.sql
+
+
+-------------
+---DOMAINS---
+-------------
+CREATE DOMAIN _GENDER VARCHAR(1) CHECK (VALUE IN ( 'F' , 'M' ) );
+CREATE DOMAIN _PINTEGER AS int4 CHECK(VALUE > 0);
+CREATE DOMAIN _PZEROINTEGER AS int4 CHECK(VALUE >= 0);
+CREATE DOMAIN _STATUS VARCHAR(2) CHECK (VALUE IN ('PA', 'AC', 'AV', 'WL')); --Past, Active, Available, Waitlisted
+
+------------
+---TABLES---
+------------
+CREATE TABLE Patient
+(
+	patient_ID INTEGER NOT NULL,
+	name VARCHAR(128) NOT NULL,	
+	gtype _GENDER NOT NULL,
+	age INTEGER NOT NULL,
+	address VARCHAR(256),
+	number_of_appts INTEGER,
+	legacy_appts INTEGER NOT NULL DEFAULT 0, --number_of_appts not backed by has_appointment, see PATIENT COUNTS
+	PRIMARY KEY (patient_ID)
+);
+
+CREATE TABLE Hospital
+(
+	hospital_ID INTEGER NOT NULL,
+	name VARCHAR(64) NOT NULL,	
+	PRIMARY KEY (hospital_ID)
+);
+
+CREATE TABLE Department
+(
+	dept_ID INTEGER NOT NULL,
+	name VARCHAR(32) NOT NULL,
+	hid INTEGER NOT NULL,
+	PRIMARY KEY (dept_ID),
+	FOREIGN KEY (hid) REFERENCES Hospital(hospital_ID)
+);
+
+CREATE TABLE Staff
+(
+	staff_ID INTEGER NOT NULL,
+	name VARCHAR(128) NOT NULL,	
+	hid INTEGER NOT NULL,
+	PRIMARY KEY (staff_ID),
+	FOREIGN KEY (hid) REFERENCES Hospital(hospital_ID)
+);
+
+CREATE TABLE Doctor
+(
+	doctor_ID INTEGER NOT NULL,
+	name VARCHAR(128),
+	specialty VARCHAR(24),
+	did INTEGER NOT NULL,
+	PRIMARY KEY (doctor_ID),
+	FOREIGN KEY (did) REFERENCES Department(dept_ID)
+);
+
+
+CREATE TABLE Appointment
+(	
+	appnt_ID INTEGER NOT NULL,	
+	adate DATE NOT NULL,
+	time_slot VARCHAR(11),
+	status _STATUS,
+	PRIMARY KEY (appnt_ID)
+);
+
+
+
+---------------
+---RELATIONS---
+---------------
+
+CREATE TABLE request_maintenance
+(
+	patient_per_hour INTEGER NOT NULL,
+	dept_name VARCHAR(32) NOT NULL,
+	time_slot VARCHAR(11) NOT NULL,
+	did INTEGER NOT NULL,	
+	sid INTEGER NOT NULL,	
+	PRIMARY KEY (did,sid),
+	FOREIGN KEY (did) REFERENCES Doctor(doctor_ID),
+	FOREIGN KEY (sid) REFERENCES Staff(staff_ID)	
+);
+
+CREATE TABLE searches
+(
+	hid INTEGER NOT NULL,	
+	pid INTEGER NOT NULL,
+	aid INTEGER NOT NULL,
+	PRIMARY KEY (hid,pid,aid),
+	FOREIGN KEY (hid) REFERENCES Hospital(hospital_ID),
+	FOREIGN KEY (pid) REFERENCES Patient(patient_ID),
+	FOREIGN KEY (aid) REFERENCES Appointment(appnt_ID)
+);
+
+CREATE TABLE schedules
+(
+	appt_id INTEGER NOT NULL,
+	staff_id INTEGER NOT NULL,	
+	PRIMARY KEY (appt_id,staff_id),
+	FOREIGN KEY (appt_id) REFERENCES Appointment(appnt_ID),
+	FOREIGN KEY (staff_id) REFERENCES Staff(staff_ID)
+);
+
+CREATE TABLE has_appointment
+(
+	appt_id INTEGER NOT NULL,
+	doctor_id INTEGER NOT NULL,	
+	patient_id INTEGER, --who booked it, NULL for the loaded links
+	PRIMARY KEY (appt_id,doctor_id),
+	FOREIGN KEY (appt_id) REFERENCES Appointment(appnt_ID),
+	FOREIGN KEY (doctor_id) REFERENCES Doctor(doctor_ID),
+	FOREIGN KEY (patient_id) REFERENCES Patient(patient_ID)
+);